@@ -0,0 +1,170 @@
+package hudson.plugins.msbuild;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * MSBuild console logs used by the benchmarks.
+ * <p>
+ * The synthetic logs mimic the output of the different verbosities, of
+ * {@code /m} builds where the lines of several projects are interleaved and
+ * prefixed with the node number, and of builds printing very long lines. The
+ * {@code recorded} log repeats {@code sample.log}.
+ */
+final class ConsoleLogs {
+
+    /** Approximate size of each generated log. */
+    static final int SIZE = 8 * 1024 * 1024;
+
+    private static final String[] CODES = { "CS0168", "CS0219", "CS0618", "CS8602", "MSB3277", "C4996", "LNK4099" };
+
+    private ConsoleLogs() {
+    }
+
+    static byte[] get(String name) throws IOException {
+        switch (name) {
+        case "minimal":
+            return generate(new Random(1), 0, false, false);
+        case "normal":
+            return generate(new Random(2), 1, false, false);
+        case "detailed":
+            return generate(new Random(3), 2, false, false);
+        case "diagnostic":
+            return generate(new Random(4), 3, false, false);
+        case "multiproc":
+            return generate(new Random(5), 1, true, false);
+        case "longlines":
+            return generate(new Random(6), 1, false, true);
+        case "recorded":
+            return recorded();
+        default:
+            throw new IllegalArgumentException("Unknown log " + name);
+        }
+    }
+
+    private static byte[] recorded() throws IOException {
+        byte[] sample;
+        try (InputStream in = ConsoleLogs.class.getResourceAsStream("sample.log")) {
+            if (in == null) {
+                throw new IOException("sample.log is missing");
+            }
+            sample = in.readAllBytes();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(SIZE + sample.length);
+        while (out.size() < SIZE) {
+            out.write(sample);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] generate(Random random, int verbosity, boolean multiproc, boolean longLines) {
+        StringBuilder log = new StringBuilder(SIZE + 4096);
+        line(log, "Build started 16/10/2026 10:00:00.");
+        int project = 0;
+        int warnings = 0;
+        int errors = 0;
+        while (log.length() < SIZE) {
+            project++;
+            String name = "Project" + project;
+            String proj = "C:\\src\\" + name + "\\" + name + ".csproj";
+            String prefix = multiproc ? (1 + random.nextInt(16)) + ">" : "";
+            if (verbosity > 0) {
+                line(log, prefix + "Project \"C:\\src\\App.sln\" (1) is building \"" + proj + "\" (" + (project + 1)
+                        + ") on node 1 (default targets).");
+            }
+            if (verbosity > 2) {
+                line(log, prefix + "Initial Properties:");
+                for (int i = 0; i < 60; i++) {
+                    line(log, prefix + "Property" + i + " = " + "C:\\Program Files\\dotnet\\sdk\\8.0.100\\" + i);
+                }
+                line(log, prefix + "Property reassignment: $(MSBuildProjectExtensionsPath)=\"C:\\src\\" + name
+                        + "\\obj\\\" (previous value: \"obj\\\") at C:\\Program Files\\dotnet\\sdk\\8.0.100\\"
+                        + "Microsoft.Common.props (60,5)");
+            }
+            int targets = verbosity > 1 ? 20 : 4;
+            for (int t = 0; t < targets; t++) {
+                if (multiproc && random.nextInt(3) == 0) {
+                    prefix = (1 + random.nextInt(16)) + ">";
+                }
+                String target = t == targets - 1 ? "CoreCompile" : "Target" + t;
+                if (verbosity > 1) {
+                    line(log, prefix + "Target \"" + target + "\" in file \"C:\\Program Files\\dotnet\\sdk\\8.0.100\\"
+                            + "Microsoft.Common.CurrentVersion.targets\" from project \"" + proj + "\":");
+                    line(log, prefix + "Using \"Copy\" task from assembly \"Microsoft.Build.Tasks.Core, Version=15.1.0.0\".");
+                    line(log, prefix + "Task \"Copy\"");
+                    if (verbosity > 2) {
+                        line(log, prefix + "  Task Parameter:SourceFiles=C:\\src\\" + name + "\\obj\\Release\\" + name
+                                + ".dll");
+                        line(log, prefix + "  Output Item(s): FileWrites=C:\\src\\" + name + "\\bin\\Release\\" + name
+                                + ".dll");
+                    }
+                    line(log, prefix + "Done executing task \"Copy\".");
+                } else if (verbosity > 0) {
+                    line(log, prefix + target + ":");
+                }
+                if (target.equals("CoreCompile")) {
+                    if (verbosity > 0) {
+                        line(log, prefix + "  " + compilerCommandLine(name, longLines ? 4000 : 40));
+                    }
+                    if (longLines) {
+                        line(log, prefix + "  " + errorSubstrings(random));
+                    }
+                }
+                int diagnostics = random.nextInt(100);
+                if (diagnostics < 6) {
+                    String code = CODES[random.nextInt(CODES.length)];
+                    line(log, prefix + "C:\\src\\" + name + "\\Class" + t + ".cs(" + (1 + random.nextInt(500)) + ","
+                            + (1 + random.nextInt(80)) + "): warning " + code
+                            + ": The variable 'e' is declared but never used [" + proj + "]");
+                    warnings++;
+                } else if (diagnostics < 7) {
+                    line(log, prefix + "C:\\src\\" + name + "\\Class" + t + ".cs(" + (1 + random.nextInt(500)) + ","
+                            + (1 + random.nextInt(80)) + "): error CS0103: The name 'x' does not exist in the current "
+                            + "context [" + proj + "]");
+                    errors++;
+                }
+                if (verbosity > 1) {
+                    line(log, prefix + "Done building target \"" + target + "\" in project \"" + name + ".csproj\".");
+                }
+            }
+            line(log, prefix + "  " + name + " -> C:\\src\\" + name + "\\bin\\Release\\" + name + ".dll");
+            if (verbosity > 0) {
+                line(log, prefix + "Done Building Project \"" + proj + "\" (default targets).");
+            }
+        }
+        line(log, "");
+        line(log, errors > 0 ? "Build FAILED." : "Build succeeded.");
+        line(log, "");
+        line(log, "    " + warnings + " Warning(s)");
+        line(log, "    " + errors + " Error(s)");
+        line(log, "");
+        line(log, "Time Elapsed 00:12:34.56");
+        return log.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String compilerCommandLine(String name, int references) {
+        StringBuilder cmd = new StringBuilder("C:\\Program Files\\dotnet\\dotnet.exe exec \"C:\\Program Files\\dotnet\\"
+                + "sdk\\8.0.100\\Roslyn\\bincore\\csc.dll\" /noconfig /unsafe- /checked- /nowarn:1701,1702 "
+                + "/fullpaths /nostdlib+ /errorreport:prompt /warn:8 /define:TRACE;RELEASE;NET;NET8_0 ");
+        for (int i = 0; i < references; i++) {
+            cmd.append("/reference:C:\\Program Files\\dotnet\\packs\\Microsoft.NETCore.App.Ref\\8.0.0\\ref\\net8.0\\")
+                    .append("System.Assembly").append(i).append(".dll ");
+        }
+        return cmd.append("/out:obj\\Release\\").append(name).append(".dll").toString();
+    }
+
+    private static String errorSubstrings(Random random) {
+        StringBuilder message = new StringBuilder("Generated resource: ");
+        for (int i = 0; i < 20000; i++) {
+            message.append(random.nextBoolean() ? "error " : "Error").append(random.nextInt(10)).append(' ');
+        }
+        return message.toString();
+    }
+
+    private static void line(StringBuilder log, String line) {
+        log.append(line).append("\r\n");
+    }
+}
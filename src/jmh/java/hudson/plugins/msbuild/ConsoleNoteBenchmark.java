@@ -0,0 +1,45 @@
+package hudson.plugins.msbuild;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the note of one warning line: encoding the note every time
+ * against writing the bytes encoded once by {@link MsBuildEncodedNote}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConsoleNoteBenchmark {
+
+    private final MsBuildEncodedNote encoded = new MsBuildEncodedNote(new MSBuildWarningNote());
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    @Benchmark
+    public int encodeEachTime() throws IOException {
+        out.reset();
+        new MSBuildWarningNote().encodeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int preEncoded() throws IOException {
+        out.reset();
+        encoded.writeTo(out);
+        return out.size();
+    }
+}
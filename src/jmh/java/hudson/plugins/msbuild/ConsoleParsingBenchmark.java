@@ -0,0 +1,120 @@
+package hudson.plugins.msbuild;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the console parsing, one operation being a whole log.
+ * <p>
+ * Besides the operations per second, the {@code bytes} and {@code lines}
+ * secondary results give the processed bytes and lines per second. Run with
+ * {@code -prof gc} to get the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsoleParsingBenchmark {
+
+    @Param({ "minimal", "normal", "detailed", "diagnostic", "multiproc", "longlines", "recorded" })
+    public String log;
+
+    private byte[] bytes;
+    private String[] lines;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bytes = ConsoleLogs.get(log);
+        lines = new String(bytes, StandardCharsets.UTF_8).split("\r?\n");
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            lines = 0;
+        }
+    }
+
+    private void count(Counters counters) {
+        counters.bytes += bytes.length;
+        counters.lines += lines.length;
+    }
+
+    @Benchmark
+    public int processor(Counters counters) throws IOException {
+        MsBuildConsoleProcessor processor = new MsBuildConsoleProcessor(OutputStream.nullOutputStream(),
+                StandardCharsets.UTF_8);
+        processor.write(bytes);
+        processor.finish();
+        count(counters);
+        return processor.getNumberOfWarnings();
+    }
+
+    @Benchmark
+    public int parser(Counters counters) throws IOException {
+        MsBuildConsoleParser parser = new MsBuildConsoleParser(OutputStream.nullOutputStream(),
+                StandardCharsets.UTF_8);
+        parser.write(bytes);
+        parser.close();
+        count(counters);
+        return parser.getNumberOfWarnings();
+    }
+
+    @Benchmark
+    public int annotator(Counters counters) throws IOException {
+        MSBuildConsoleAnnotator annotator = new MSBuildConsoleAnnotator(OutputStream.nullOutputStream(),
+                StandardCharsets.UTF_8);
+        annotator.write(bytes);
+        annotator.close();
+        count(counters);
+        return annotator.getNumberOfWarnings();
+    }
+
+    @Benchmark
+    public int errorPattern(Counters counters) {
+        int matches = 0;
+        for (String line : lines) {
+            if (MSBuildErrorNote.PATTERN.matcher(line).matches()) {
+                matches++;
+            }
+        }
+        count(counters);
+        return matches;
+    }
+
+    @Benchmark
+    public int warningPattern(Counters counters) {
+        int matches = 0;
+        for (String line : lines) {
+            if (MSBuildWarningNote.PATTERN.matcher(line).matches()) {
+                matches++;
+            }
+        }
+        count(counters);
+        return matches;
+    }
+}
@@ -3,16 +3,31 @@ package hudson.plugins.msbuild;
 import hudson.console.LineTransformationOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.regex.Matcher;
 
 public class MSBuildConsoleAnnotator extends LineTransformationOutputStream {
+    // The notes have no state, so the same bytes are written for every line
+    private static final MsBuildEncodedNote ERROR_NOTE = new MsBuildEncodedNote(new MSBuildErrorNote());
+    private static final MsBuildEncodedNote WARNING_NOTE = new MsBuildEncodedNote(new MSBuildWarningNote());
+
     private final OutputStream out;
     private final Charset charset;
+    private boolean writeNotes = true;
 
     private int numberOfWarnings = 0;
     private int numberOfErrors = 0;
+    private int numberOfUniqueWarnings = 0;
+    private int numberOfUniqueErrors = 0;
+    private String lastErrorCode;
+
+    private final MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+
+    // Reset for each line instead of matching with new matchers
+    private final Matcher errorMatcher = MSBuildErrorNote.PATTERN.matcher("");
+    private final Matcher warningMatcher = MSBuildWarningNote.PATTERN.matcher("");
+    // Only needed when the annotator is used as a stream
+    private MsBuildLineDecoder decoder;
 
     public MSBuildConsoleAnnotator(OutputStream out, Charset charset) {
         this.out = out;
@@ -27,28 +42,99 @@ public class MSBuildConsoleAnnotator extends LineTransformationOutputStream {
         return numberOfErrors;
     }
 
+    /**
+     * @return the number of warnings, each repeated warning counting once
+     */
+    public int getNumberOfUniqueWarnings() {
+        return numberOfUniqueWarnings;
+    }
+
+    /**
+     * @return the number of errors, each repeated error counting once
+     */
+    public int getNumberOfUniqueErrors() {
+        return numberOfUniqueErrors;
+    }
+
+    /**
+     * @return the code of the last error, e.g. {@code "CS0103"}, or
+     *         {@code null} if it had none or there was no error
+     */
+    String getLastErrorCode() {
+        return lastErrorCode;
+    }
+
+    /**
+     * @param writeNotes false to only count the errors and warnings, e.g. when
+     *                   they are highlighted by
+     *                   {@link MsBuildConsoleAnnotatorFactory} instead
+     */
+    void setWriteNotes(boolean writeNotes) {
+        this.writeNotes = writeNotes;
+    }
+
+    /**
+     * @return the distinct errors and warnings seen so far
+     */
+    public MsBuildDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
     @Override
     protected void eol(byte[] b, int len) throws IOException {
-        String line = charset.decode(ByteBuffer.wrap(b, 0, len)).toString();
+        if (decoder == null) {
+            decoder = new MsBuildLineDecoder(charset);
+        }
+        annotateLine(decoder.decode(b, len));
 
-        // trim off CR/LF from the end
-        line = trimEOL(line);
+        out.write(b, 0, len);
+    }
+
+    /**
+     * Write the error or warning note for the given line, if any, and count it.
+     * The line itself is not written.
+     *
+     * @param line the decoded line, without its end of line characters, which
+     *             is not kept
+     */
+    void annotateLine(CharSequence line) throws IOException {
+        // Most lines contain neither keyword and do not need to be matched
+        int keywords = MsBuildKeywordFilter.scan(line);
 
         // Error messages handler
-        Matcher m = MSBuildErrorNote.PATTERN.matcher(line);
-        if (m.matches()) { // Match the number of warnings
-            new MSBuildErrorNote().encodeTo(out);
-            this.numberOfErrors++;
+        if ((keywords & MsBuildKeywordFilter.ERROR) != 0) {
+            Matcher m = errorMatcher.reset(line);
+            if (m.matches()) {
+                if (writeNotes) {
+                    ERROR_NOTE.writeTo(out);
+                }
+                this.numberOfErrors++;
+                lastErrorCode = m.group(2);
+                if (diagnostics.add(MsBuildDiagnostics.Severity.ERROR, m.group(1), lastErrorCode, m.group(4))) {
+                    numberOfUniqueErrors++;
+                }
+            }
         }
 
         // Warning messages handler
-        m = MSBuildWarningNote.PATTERN.matcher(line);
-        if (m.matches()) { // Match the number of warnings
-            new MSBuildWarningNote().encodeTo(out);
-            this.numberOfWarnings++;
+        if ((keywords & MsBuildKeywordFilter.WARNING) != 0) {
+            Matcher m = warningMatcher.reset(line);
+            if (m.matches()) {
+                if (writeNotes) {
+                    WARNING_NOTE.writeTo(out);
+                }
+                this.numberOfWarnings++;
+                // the origin ends with the position and its colon, e.g. "Foo.cs(12,5):"
+                int end = m.end(1);
+                while (line.charAt(end) != ')') {
+                    end++;
+                }
+                String origin = line.subSequence(0, end + 2).toString();
+                if (diagnostics.add(MsBuildDiagnostics.Severity.WARNING, origin, m.group(3), m.group(5))) {
+                    numberOfUniqueWarnings++;
+                }
+            }
         }
-
-        out.write(b, 0, len);
     }
 
     @Override
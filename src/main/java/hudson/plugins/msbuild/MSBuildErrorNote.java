@@ -14,12 +14,15 @@ import java.util.regex.Pattern;
  * Annotation for MSBuild and CSC error messages
  */
 public class MSBuildErrorNote extends ConsoleNote<Object> {
-    /** Pattern to identify error messages */
-
     @Serial
     private static final long serialVersionUID = 1L;
 
-    public final static Pattern PATTERN = Pattern.compile("(.*)[Ee]rror\\s(([A-Z]*)\\d+){0,1}:\\s(.*)");
+    /**
+     * Pattern to identify error messages.
+     * The code letters and digits are possessive: they never overlap with what
+     * follows them, so giving them back could not lead to another match.
+     */
+    public final static Pattern PATTERN = Pattern.compile("(.*)[Ee]rror\\s(([A-Z]*+)\\d++)?:\\s(.*)");
 
     public MSBuildErrorNote() {
     }
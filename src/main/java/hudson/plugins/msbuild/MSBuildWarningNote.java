@@ -12,12 +12,11 @@ import java.util.regex.Pattern;
  * Annotation for MSBuild warning messages
  */
 public class MSBuildWarningNote extends ConsoleNote<Object> {
-    /** Pattern to identify warning messages */
-
     @Serial
     private static final long serialVersionUID = 1L;
 
-    public final static Pattern PATTERN = Pattern.compile("(.*)\\(\\d+(,\\d+){0,1}\\):\\s[Ww]arning\\s(([A-Z]*)\\d+){0,1}:\\s(.*)");
+    /** Pattern to identify warning messages, possessive like {@link MSBuildErrorNote#PATTERN} */
+    public final static Pattern PATTERN = Pattern.compile("(.*)\\(\\d++(,\\d++)?\\):\\s[Ww]arning\\s(([A-Z]*+)\\d++)?:\\s(.*)");
 
     public MSBuildWarningNote() {
     }
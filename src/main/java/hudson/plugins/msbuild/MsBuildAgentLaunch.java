@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+
+/**
+ * Runs MSBuild on the agent and parses its output there, so that only the
+ * annotated output and the {@link MsBuildLaunchResult} are sent to the
+ * controller.
+ * <p>
+ * The process is started by a local launcher on the agent, so this is only
+ * used when enabled with {@link MsBuildBuilder.DescriptorImpl#setParseOnAgent}:
+ * it bypasses the decorations of the build launcher, e.g. by build wrappers.
+ */
+final class MsBuildAgentLaunch extends MasterToSlaveCallable<MsBuildLaunchResult, IOException> {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] cmds;
+    private final boolean[] masks;
+    private final EnvVars env;
+    private final String pwd;
+    private final String charset;
+    private final String binaryLog;
+    private final String sarifFile;
+    private final MsBuildConsoleOptions options;
+    private final TaskListener listener;
+
+    /**
+     * @param binaryLog the path of the binary log MSBuild was asked to write,
+     *                  or {@code null}
+     * @param sarifFile the path of the SARIF file to write, or {@code null}
+     */
+    MsBuildAgentLaunch(String[] cmds, boolean[] masks, EnvVars env, FilePath pwd, Charset charset,
+            String binaryLog, String sarifFile, MsBuildConsoleOptions options, TaskListener listener) {
+        this.cmds = cmds;
+        this.masks = masks;
+        this.env = env;
+        this.pwd = pwd.getRemote();
+        this.charset = charset.name();
+        this.binaryLog = binaryLog;
+        this.sarifFile = sarifFile;
+        this.options = options;
+        this.listener = listener;
+    }
+
+    @Override
+    public MsBuildLaunchResult call() throws IOException {
+        Launcher launcher = new Launcher.LocalLauncher(listener);
+        try {
+            return MsBuildLaunchResult.launch(launcher.launch().cmds(cmds).masks(masks).envs(env).pwd(pwd),
+                    listener, Charset.forName(charset), binaryLog == null ? null : new FilePath(new File(binaryLog)),
+                    sarifFile == null ? null : new FilePath(new File(sarifFile)), options);
+        } catch (InterruptedException e) {
+            // the build was aborted and the process killed
+            InterruptedIOException ex = new InterruptedIOException("MSBuild was interrupted");
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.model.Computer;
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The processors and memory of an agent, to decide how many MSBuild
+ * processes to run there at the same time.
+ */
+final class MsBuildAgentResources implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** How long the resources of an agent are reused, the free memory changing. */
+    static final long CACHE_MILLIS = 60_000;
+
+    /** The memory needed by each MSBuild process with its nodes and compilers. */
+    static final long MEMORY_PER_PROCESS = 2L * 1024 * 1024 * 1024;
+
+    private static final Map<Computer, MsBuildAgentResources> CACHE = new WeakHashMap<>();
+
+    private final int processors;
+    private final long totalMemory;
+    private final long freeMemory;
+    private final transient long time = System.currentTimeMillis();
+
+    MsBuildAgentResources(int processors, long totalMemory, long freeMemory) {
+        this.processors = processors;
+        this.totalMemory = totalMemory;
+        this.freeMemory = freeMemory;
+    }
+
+    /**
+     * @return the resources of the agent, cached per {@link Computer} for
+     *         {@link #CACHE_MILLIS}
+     */
+    static MsBuildAgentResources of(Computer computer, VirtualChannel channel)
+            throws IOException, InterruptedException {
+        synchronized (CACHE) {
+            MsBuildAgentResources cached = computer != null ? CACHE.get(computer) : null;
+            if (cached != null && System.currentTimeMillis() - cached.time < CACHE_MILLIS) {
+                return cached;
+            }
+        }
+        MsBuildAgentResources resources = channel.call(new Query());
+        // not the deserialized time of the agent
+        resources = new MsBuildAgentResources(resources.processors, resources.totalMemory, resources.freeMemory);
+        if (computer != null) {
+            synchronized (CACHE) {
+                CACHE.put(computer, resources);
+            }
+        }
+        return resources;
+    }
+
+    int getProcessors() {
+        return processors;
+    }
+
+    /**
+     * @return the physical memory in bytes, or 0 if unknown
+     */
+    long getTotalMemory() {
+        return totalMemory;
+    }
+
+    /**
+     * @return the free physical memory in bytes, or 0 if unknown
+     */
+    long getFreeMemory() {
+        return freeMemory;
+    }
+
+    /**
+     * @return how many of the given number of MSBuild processes can run at the
+     *         same time: one per processor, as long as there is
+     *         {@link #MEMORY_PER_PROCESS} for each of them, at least one
+     */
+    int getMaxProcesses(int wanted) {
+        long max = Math.min(wanted, processors);
+        if (freeMemory > 0) {
+            max = Math.min(max, freeMemory / MEMORY_PER_PROCESS);
+        }
+        return (int) Math.max(max, 1);
+    }
+
+    @Override
+    public String toString() {
+        return processors + " processor(s), " + freeMemory / (1024 * 1024) + " MB of " + totalMemory / (1024 * 1024)
+                + " MB free";
+    }
+
+    /**
+     * Runs on the agent.
+     */
+    static final class Query extends MasterToSlaveCallable<MsBuildAgentResources, RuntimeException> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public MsBuildAgentResources call() {
+            long total = 0;
+            long free = 0;
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                total = ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize();
+                free = ((com.sun.management.OperatingSystemMXBean) os).getFreeMemorySize();
+            }
+            return new MsBuildAgentResources(Runtime.getRuntime().availableProcessors(), total, free);
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader of the MSBuild binary logs written with {@code /bl}.
+ * <p>
+ * A binary log is a gzip stream holding the file format version followed by
+ * records, each one made of its kind and its length. The records are read one
+ * at a time and those that are not needed are skipped without being decoded,
+ * so the log is never loaded in memory. Only the string table of the log is
+ * kept, as the events refer to strings written before them; strings longer
+ * than {@link MsBuildDiagnostics#MAX_MESSAGE_LENGTH} are truncated.
+ * <p>
+ * Records are laid out as by the {@code BuildEventArgsWriter} of MSBuild,
+ * starting with the file format version 18 of MSBuild 17.8 where every record
+ * got a length so that readers can skip what they do not know.
+ */
+public final class MsBuildBinaryLogReader implements Closeable {
+
+    /** First file format version with the length of the records. */
+    static final int MIN_FILE_FORMAT_VERSION = 18;
+
+    // BinaryLogRecordKind
+    static final int END_OF_FILE = 0;
+    static final int PROJECT_STARTED = 3;
+    static final int PROJECT_FINISHED = 4;
+    static final int TARGET_STARTED = 5;
+    static final int TARGET_FINISHED = 6;
+    static final int ERROR = 9;
+    static final int WARNING = 10;
+    static final int NAME_VALUE_LIST = 23;
+    static final int STRING = 24;
+
+    // BuildEventArgsFieldFlags
+    static final int FLAG_BUILD_EVENT_CONTEXT = 1;
+    static final int FLAG_HELP_KEYWORD = 1 << 1;
+    static final int FLAG_MESSAGE = 1 << 2;
+    static final int FLAG_SENDER_NAME = 1 << 3;
+    static final int FLAG_THREAD_ID = 1 << 4;
+    static final int FLAG_TIMESTAMP = 1 << 5;
+    static final int FLAG_SUBCATEGORY = 1 << 6;
+    static final int FLAG_CODE = 1 << 7;
+    static final int FLAG_FILE = 1 << 8;
+    static final int FLAG_PROJECT_FILE = 1 << 9;
+    static final int FLAG_LINE_NUMBER = 1 << 10;
+    static final int FLAG_COLUMN_NUMBER = 1 << 11;
+    static final int FLAG_END_LINE_NUMBER = 1 << 12;
+    static final int FLAG_END_COLUMN_NUMBER = 1 << 13;
+    static final int FLAG_ARGUMENTS = 1 << 14;
+
+    /** Index of the first string record, the lower ones having a fixed meaning. */
+    static final int STRING_START_INDEX = 10;
+
+    /** .NET ticks at the Unix epoch. */
+    private static final long EPOCH_TICKS = 621355968000000000L;
+
+    /**
+     * An event of the build.
+     */
+    public static final class Event {
+        public enum Kind {
+            ERROR, WARNING, PROJECT_STARTED, PROJECT_FINISHED, TARGET_STARTED, TARGET_FINISHED
+        }
+
+        private final Kind kind;
+        private final long timestamp;
+        private final int nodeId;
+        private final int projectContextId;
+        private final int targetId;
+        private String message;
+        private String code;
+        private String file;
+        private String projectFile;
+        private String targetName;
+        private int line;
+        private int column;
+        private boolean succeeded;
+        private long duration = -1;
+
+        Event(Kind kind, long timestamp, int nodeId, int projectContextId, int targetId) {
+            this.kind = kind;
+            this.timestamp = timestamp;
+            this.nodeId = nodeId;
+            this.projectContextId = projectContextId;
+            this.targetId = targetId;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return when the event happened, in milliseconds since the epoch, or
+         *         0 if unknown
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getNodeId() {
+            return nodeId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * @return the file of an error or warning
+         */
+        public String getFile() {
+            return file;
+        }
+
+        public String getProjectFile() {
+            return projectFile;
+        }
+
+        public String getTargetName() {
+            return targetName;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * @return whether the project or target finished successfully
+         */
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        /**
+         * @return the duration of a finished target in milliseconds, or -1 if
+         *         its start was not seen
+         */
+        public long getDuration() {
+            return duration;
+        }
+    }
+
+    private final DataInputStream in;
+    private final int fileFormatVersion;
+    private final List<String> strings = new ArrayList<>();
+    /** Start time of the running targets, by context. */
+    private final Map<List<Integer>, Long> targetStarts = new HashMap<>();
+
+    private byte[] record = new byte[256];
+    private int recordLength;
+    private int position;
+    private boolean ended;
+
+    /**
+     * @param in the binary log, still compressed
+     * @throws IOException if this is not a binary log or its version is not
+     *                     supported
+     */
+    public MsBuildBinaryLogReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 65536), 65536));
+        this.fileFormatVersion = readInt32LittleEndian();
+        if (fileFormatVersion < MIN_FILE_FORMAT_VERSION) {
+            throw new IOException("Unsupported binary log version " + fileFormatVersion + ", at least "
+                    + MIN_FILE_FORMAT_VERSION + " (MSBuild 17.8) is required");
+        }
+        // the minimum version a reader must support, the records we do not know are skipped anyway
+        readInt32LittleEndian();
+    }
+
+    public int getFileFormatVersion() {
+        return fileFormatVersion;
+    }
+
+    /**
+     * @return the next event, or {@code null} at the end of the log
+     */
+    public Event next() throws IOException {
+        while (!ended) {
+            int kind;
+            try {
+                kind = read7BitEncodedInt(in);
+            } catch (EOFException e) {
+                // the log of an interrupted build
+                ended = true;
+                break;
+            }
+            switch (kind) {
+            case END_OF_FILE:
+                ended = true;
+                break;
+            case STRING:
+                readStringRecord();
+                break;
+            case ERROR:
+            case WARNING:
+                readRecord();
+                return readDiagnostic(kind == ERROR ? Event.Kind.ERROR : Event.Kind.WARNING);
+            case PROJECT_STARTED:
+                readRecord();
+                return readProjectStarted();
+            case PROJECT_FINISHED:
+                readRecord();
+                return readProjectFinished();
+            case TARGET_STARTED:
+                readRecord();
+                return readTargetStarted();
+            case TARGET_FINISHED:
+                readRecord();
+                return readTargetFinished();
+            default:
+                // NameValueList, ProjectImportArchive and the events we do not need
+                in.skipNBytes(read7BitEncodedInt(in));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the errors and warnings of a binary log.
+     */
+    public static MsBuildDiagnostics readDiagnostics(InputStream in) throws IOException {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        try (MsBuildBinaryLogReader reader = new MsBuildBinaryLogReader(in)) {
+            for (Event e = reader.next(); e != null; e = reader.next()) {
+                if (e.getKind() == Event.Kind.ERROR || e.getKind() == Event.Kind.WARNING) {
+                    diagnostics.add(e.getKind() == Event.Kind.ERROR ? MsBuildDiagnostics.Severity.ERROR
+                            : MsBuildDiagnostics.Severity.WARNING, e.getFile(), e.getLine(), e.getColumn(),
+                            e.getCode(), e.getProjectFile(), e.getMessage());
+                }
+            }
+        }
+        return diagnostics;
+    }
+
+    private void readStringRecord() throws IOException {
+        int length = read7BitEncodedInt(in);
+        // at most 4 bytes per char in UTF-8, the rest of a long string is not needed
+        int kept = Math.min(length, 4 * MsBuildDiagnostics.MAX_MESSAGE_LENGTH);
+        readFully(kept);
+        in.skipNBytes(length - kept);
+        String value = new String(record, 0, kept, StandardCharsets.UTF_8);
+        strings.add(value.length() > MsBuildDiagnostics.MAX_MESSAGE_LENGTH
+                ? value.substring(0, MsBuildDiagnostics.MAX_MESSAGE_LENGTH) : value);
+    }
+
+    private void readRecord() throws IOException {
+        readFully(read7BitEncodedInt(in));
+    }
+
+    private void readFully(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Corrupted binary log, record length " + length);
+        }
+        if (length > record.length) {
+            record = new byte[Math.max(length, record.length * 2)];
+        }
+        in.readFully(record, 0, length);
+        recordLength = length;
+        position = 0;
+    }
+
+    /**
+     * The fields common to all events, as written by
+     * {@code BuildEventArgsWriter.WriteBuildEventArgsFields}.
+     */
+    private final class Fields {
+        int flags;
+        String message;
+        int nodeId = -2;
+        int projectContextId = -2;
+        int targetId = -2;
+        long timestamp;
+        String code;
+        String file;
+        String projectFile;
+        int line;
+        int column;
+        List<String> arguments;
+
+        Fields() throws IOException {
+            flags = readInt();
+            if ((flags & FLAG_MESSAGE) != 0) {
+                message = readString();
+            }
+            if ((flags & FLAG_BUILD_EVENT_CONTEXT) != 0) {
+                nodeId = readInt();
+                projectContextId = readInt();
+                targetId = readInt();
+                readInt(); // task id
+                readInt(); // submission id
+                readInt(); // project instance id
+                readInt(); // evaluation id
+            }
+            if ((flags & FLAG_THREAD_ID) != 0) {
+                readInt();
+            }
+            if ((flags & FLAG_HELP_KEYWORD) != 0) {
+                readString();
+            }
+            if ((flags & FLAG_SENDER_NAME) != 0) {
+                readString();
+            }
+            if ((flags & FLAG_TIMESTAMP) != 0) {
+                long ticks = readInt64LittleEndian();
+                readInt(); // DateTimeKind
+                timestamp = ticks <= EPOCH_TICKS ? 0 : (ticks - EPOCH_TICKS) / 10000;
+            }
+            if ((flags & FLAG_SUBCATEGORY) != 0) {
+                readString();
+            }
+            if ((flags & FLAG_CODE) != 0) {
+                code = readString();
+            }
+            if ((flags & FLAG_FILE) != 0) {
+                file = readString();
+            }
+            if ((flags & FLAG_PROJECT_FILE) != 0) {
+                projectFile = readString();
+            }
+            if ((flags & FLAG_LINE_NUMBER) != 0) {
+                line = readInt();
+            }
+            if ((flags & FLAG_COLUMN_NUMBER) != 0) {
+                column = readInt();
+            }
+            if ((flags & FLAG_END_LINE_NUMBER) != 0) {
+                readInt();
+            }
+            if ((flags & FLAG_END_COLUMN_NUMBER) != 0) {
+                readInt();
+            }
+            if ((flags & FLAG_ARGUMENTS) != 0) {
+                int count = readInt();
+                arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(readString());
+                }
+            }
+        }
+
+        Event event(Event.Kind kind) {
+            return new Event(kind, timestamp, nodeId, projectContextId, targetId);
+        }
+    }
+
+    private Event readDiagnostic(Event.Kind kind) throws IOException {
+        Fields fields = new Fields();
+        // BuildEventArgsWriter.WriteDiagnosticFields
+        readString(); // subcategory
+        String code = readString();
+        String file = readString();
+        String projectFile = readString();
+        int line = readInt();
+        int column = readInt();
+
+        Event e = fields.event(kind);
+        e.message = format(fields.message, fields.arguments);
+        e.code = code;
+        e.file = file;
+        e.projectFile = projectFile;
+        e.line = line;
+        e.column = column;
+        return e;
+    }
+
+    private Event readProjectStarted() throws IOException {
+        Fields fields = new Fields();
+        if (readBoolean()) {
+            for (int i = 0; i < 7; i++) {
+                readInt(); // parent context
+            }
+        }
+        Event e = fields.event(Event.Kind.PROJECT_STARTED);
+        e.projectFile = readString();
+        return e;
+    }
+
+    private Event readProjectFinished() throws IOException {
+        Fields fields = new Fields();
+        Event e = fields.event(Event.Kind.PROJECT_FINISHED);
+        e.projectFile = readString();
+        e.succeeded = readBoolean();
+        return e;
+    }
+
+    private Event readTargetStarted() throws IOException {
+        Fields fields = new Fields();
+        Event e = fields.event(Event.Kind.TARGET_STARTED);
+        e.targetName = readString();
+        e.projectFile = readString();
+        targetStarts.put(List.of(fields.nodeId, fields.projectContextId, fields.targetId), fields.timestamp);
+        return e;
+    }
+
+    private Event readTargetFinished() throws IOException {
+        Fields fields = new Fields();
+        Event e = fields.event(Event.Kind.TARGET_FINISHED);
+        e.succeeded = readBoolean();
+        e.projectFile = readString();
+        readString(); // target file
+        e.targetName = readString();
+        Long start = targetStarts.remove(List.of(fields.nodeId, fields.projectContextId, fields.targetId));
+        if (start != null && start > 0 && fields.timestamp >= start) {
+            e.duration = fields.timestamp - start;
+        }
+        return e;
+    }
+
+    /**
+     * Replace the {@code {0}} like placeholders of a .NET format string.
+     */
+    static String format(String message, List<String> arguments) {
+        if (message == null || arguments == null || arguments.isEmpty()) {
+            return message;
+        }
+        StringBuilder formatted = new StringBuilder(message.length());
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            int close = c == '{' ? message.indexOf('}', i) : -1;
+            if (close > i + 1) {
+                try {
+                    int index = Integer.parseInt(message.substring(i + 1, close));
+                    if (index >= 0 && index < arguments.size()) {
+                        formatted.append(arguments.get(index));
+                        i = close;
+                        continue;
+                    }
+                } catch (NumberFormatException e) {
+                    // not a placeholder
+                }
+            }
+            formatted.append(c);
+        }
+        return formatted.toString();
+    }
+
+    private String readString() throws IOException {
+        int index = readInt();
+        if (index == 0) {
+            return null;
+        }
+        if (index == 1) {
+            return "";
+        }
+        index -= STRING_START_INDEX;
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Corrupted binary log, unknown string " + (index + STRING_START_INDEX));
+        }
+        return strings.get(index);
+    }
+
+    private boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    private int readByte() throws IOException {
+        if (position >= recordLength) {
+            throw new EOFException("Corrupted binary log, record too short");
+        }
+        return record[position++] & 0xFF;
+    }
+
+    /** 7-bit encoded int of the current record. */
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted binary log, invalid 7-bit encoded int");
+    }
+
+    private long readInt64LittleEndian() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 8) {
+            value |= (long) readByte() << shift;
+        }
+        return value;
+    }
+
+    private int readInt32LittleEndian() throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    static int read7BitEncodedInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted binary log, invalid 7-bit encoded int");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
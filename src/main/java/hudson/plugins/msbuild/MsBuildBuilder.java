@@ -26,20 +26,30 @@ package hudson.plugins.msbuild;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.*;
 import hudson.model.*;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.tools.ToolInstallation;
 import hudson.util.ArgumentListBuilder;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.StaplerRequest2;
+import net.sf.json.JSONObject;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.nio.charset.Charset;
 
 /**
@@ -136,7 +146,18 @@ public class MsBuildBuilder extends Builder {
     private transient boolean continueOnBuilFailure;
     private final boolean continueOnBuildFailure;
     private final boolean unstableIfWarnings;
+    private boolean unstableIfNewWarnings;
     private final boolean doNotUseChcpCommand;
+    private boolean useBinaryLog;
+    private boolean performanceSummary;
+    private int stopAfterErrors;
+    private String stopOnErrorCodes;
+    private String sarifFile;
+    private boolean skipUnchangedInputs;
+    private int shards;
+    private String configurations;
+    private boolean cancelOnFailure;
+    private boolean autoParallelism;
 
     /**
      * When this builder is created in the project configuration step,
@@ -215,10 +236,161 @@ public class MsBuildBuilder extends Builder {
         return unstableIfWarnings;
     }
 
+    public boolean getUnstableIfNewWarnings() {
+        return unstableIfNewWarnings;
+    }
+
+    /**
+     * @param unstableIfNewWarnings If true, job will be unstable if there are
+     *                              warnings that the last successful build did
+     *                              not have
+     */
+    @DataBoundSetter
+    public void setUnstableIfNewWarnings(boolean unstableIfNewWarnings) {
+        this.unstableIfNewWarnings = unstableIfNewWarnings;
+    }
+
     public boolean getDoNotUseChcpCommand() {
         return doNotUseChcpCommand;
     }
 
+    public boolean getUseBinaryLog() {
+        return useBinaryLog;
+    }
+
+    /**
+     * @param useBinaryLog If true, MSBuild writes a binary log and the errors
+     *                     and warnings are read from it instead of the console
+     */
+    @DataBoundSetter
+    public void setUseBinaryLog(boolean useBinaryLog) {
+        this.useBinaryLog = useBinaryLog;
+    }
+
+    public boolean getPerformanceSummary() {
+        return performanceSummary;
+    }
+
+    /**
+     * @param performanceSummary If true, MSBuild prints the time spent in each
+     *                           target and task, which is recorded with the
+     *                           build
+     */
+    @DataBoundSetter
+    public void setPerformanceSummary(boolean performanceSummary) {
+        this.performanceSummary = performanceSummary;
+    }
+
+    public int getStopAfterErrors() {
+        return stopAfterErrors;
+    }
+
+    /**
+     * @param stopAfterErrors The number of distinct errors after which MSBuild
+     *                        is stopped, 0 to let it run to the end
+     */
+    @DataBoundSetter
+    public void setStopAfterErrors(int stopAfterErrors) {
+        this.stopAfterErrors = Math.max(stopAfterErrors, 0);
+    }
+
+    public String getStopOnErrorCodes() {
+        return stopOnErrorCodes;
+    }
+
+    /**
+     * @param stopOnErrorCodes The codes of the errors on which MSBuild is
+     *                         stopped, e.g. {@code "CS0006, MSB3073"}
+     */
+    @DataBoundSetter
+    public void setStopOnErrorCodes(String stopOnErrorCodes) {
+        this.stopOnErrorCodes = Util.fixEmptyAndTrim(stopOnErrorCodes);
+    }
+
+    public String getSarifFile() {
+        return sarifFile;
+    }
+
+    /**
+     * @param sarifFile The path of a SARIF file to write the errors and
+     *                  warnings to, relative to the module root, or empty
+     */
+    @DataBoundSetter
+    public void setSarifFile(String sarifFile) {
+        this.sarifFile = Util.fixEmptyAndTrim(sarifFile);
+    }
+
+    public boolean getSkipUnchangedInputs() {
+        return skipUnchangedInputs;
+    }
+
+    /**
+     * @param skipUnchangedInputs If true, MSBuild is not run when its inputs
+     *                            and arguments are the same as in the last
+     *                            successful build in the same workspace,
+     *                            whose outputs are still there
+     */
+    @DataBoundSetter
+    public void setSkipUnchangedInputs(boolean skipUnchangedInputs) {
+        this.skipUnchangedInputs = skipUnchangedInputs;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @param shards The maximum number of MSBuild processes building the
+     *               independent parts of the solution or project at the same
+     *               time, 0 or 1 to build it in a single process
+     */
+    @DataBoundSetter
+    public void setShards(int shards) {
+        this.shards = Math.max(shards, 0);
+    }
+
+    public String getConfigurations() {
+        return configurations;
+    }
+
+    /**
+     * @param configurations The configurations to build at the same time, one
+     *                       per line, e.g. {@code Release|x64}, see
+     *                       {@link MsBuildConfiguration}
+     */
+    @DataBoundSetter
+    public void setConfigurations(String configurations) {
+        this.configurations = Util.fixEmptyAndTrim(configurations);
+    }
+
+    public boolean getCancelOnFailure() {
+        return cancelOnFailure;
+    }
+
+    /**
+     * @param cancelOnFailure If true, the MSBuild processes run at the same
+     *                        time are stopped as soon as one of them fails
+     */
+    @DataBoundSetter
+    public void setCancelOnFailure(boolean cancelOnFailure) {
+        this.cancelOnFailure = cancelOnFailure;
+    }
+
+    public boolean getAutoParallelism() {
+        return autoParallelism;
+    }
+
+    /**
+     * @param autoParallelism If true, the number of MSBuild nodes and of files
+     *                        compiled at the same time by the C++ compiler are
+     *                        chosen from the processors and memory of the
+     *                        agent, unless set in the arguments
+     */
+    @DataBoundSetter
+    public void setAutoParallelism(boolean autoParallelism) {
+        this.autoParallelism = autoParallelism;
+    }
+
     public MsBuildInstallation getMsBuild() {
         DescriptorImpl descriptor = (DescriptorImpl) getDescriptor();
         for (MsBuildInstallation i : descriptor.getInstallations()) {
@@ -235,39 +407,63 @@ public class MsBuildBuilder extends Builder {
         ArgumentListBuilder args = new ArgumentListBuilder();
         String execName = "msbuild.exe";
         MsBuildInstallation ai = getMsBuild();
+        EnvVars env = build.getEnvironment(listener);
 
-        if (ai == null) {
-            listener.getLogger().println("Path To MSBuild.exe: " + execName);
-            args.add(execName);
-        } else {
-            EnvVars env = build.getEnvironment(listener);
+        String toolHome = null;
+        if (ai != null) {
             Node node = Computer.currentComputer().getNode();
             if (node != null) {
                 ai = ai.forNode(node, listener);
                 ai = ai.forEnvironment(env);
-                String pathToMsBuild = getToolFullPath(launcher, ai.getHome(), execName);
-                FilePath exec = new FilePath(launcher.getChannel(), pathToMsBuild);
+                toolHome = ai.getHome() != null ? ai.getHome() : "";
+            }
+        }
 
-                try {
-                    if (!exec.exists()) {
-                        listener.fatalError(pathToMsBuild + " doesn't exist");
-                        return false;
-                    }
-                } catch (IOException e) {
-                    listener.fatalError("Failed checking for existence of " + pathToMsBuild);
-                    return false;
-                }
+        // If a msbuild file is specified, then add it as an argument, otherwise
+        // msbuild will search for any file that ends in .proj or .sln
+        String normalizedFile = null;
+        if (msBuildFile != null && !msBuildFile.trim().isEmpty()) {
+            normalizedFile = msBuildFile.replaceAll("[\t\r\n]+", " ");
+            normalizedFile = Util.replaceMacro(normalizedFile, env);
+            normalizedFile = Util.replaceMacro(normalizedFile, build.getBuildVariables());
+        }
 
-                listener.getLogger().println("Path To MSBuild.exe: " + pathToMsBuild);
-                args.add(pathToMsBuild);
+        // Everything needed from the agent's file system, in a single call
+        FilePath moduleRoot = build.getModuleRoot();
+        FilePath workspace = build.getWorkspace();
+        String binaryLogDir = useBinaryLog && workspace != null ? WorkspaceList.tempDir(workspace).getRemote() : null;
+        String sarifPath = sarifFile != null
+                ? Util.replaceMacro(Util.replaceMacro(sarifFile, env), build.getBuildVariables()) : null;
+        MsBuildPreflight.Result preflight;
+        try {
+            preflight = moduleRoot.act(new MsBuildPreflight(toolHome, execName,
+                    normalizedFile != null && !normalizedFile.isEmpty() ? normalizedFile : null,
+                    workspace != null ? workspace.getRemote() : null, binaryLogDir, sarifPath));
+        } catch (IOException e) {
+            Functions.printStackTrace(e, listener.fatalError("Failed checking for existence of "
+                    + (toolHome != null ? toolHome : execName)));
+            return false;
+        }
+        VirtualChannel channel = moduleRoot.getChannel();
 
-                if (ai.getDefaultArgs() != null) {
-                    args.add(tokenizeArgs(ai.getDefaultArgs()));
-                }
+        if (ai == null) {
+            listener.getLogger().println("Path To MSBuild.exe: " + execName);
+            args.add(execName);
+        } else if (toolHome != null) {
+            String pathToMsBuild = preflight.getMsBuildPath();
+            if (!preflight.isMsBuildFound()) {
+                listener.fatalError(pathToMsBuild + " doesn't exist");
+                return false;
+            }
+
+            listener.getLogger().println("Path To MSBuild.exe: " + pathToMsBuild);
+            args.add(pathToMsBuild);
+
+            if (ai.getDefaultArgs() != null) {
+                args.add(tokenizeArgs(ai.getDefaultArgs()));
             }
         }
 
-        EnvVars env = build.getEnvironment(listener);
         String normalizedArgs = cmdLineArgs.replaceAll("[\t\r\n]+", " ");
         normalizedArgs = Util.replaceMacro(normalizedArgs, env);
         normalizedArgs = Util.replaceMacro(normalizedArgs, build.getBuildVariables());
@@ -287,55 +483,154 @@ public class MsBuildBuilder extends Builder {
             args.add(parameters.toString());
         }
 
-        // If a msbuild file is specified, then add it as an argument, otherwise
-        // msbuild will search for any file that ends in .proj or .sln
-        String normalizedFile = null;
-        if (msBuildFile != null && !msBuildFile.trim().isEmpty()) {
-            normalizedFile = msBuildFile.replaceAll("[\t\r\n]+", " ");
-            normalizedFile = Util.replaceMacro(normalizedFile, env);
-            normalizedFile = Util.replaceMacro(normalizedFile, build.getBuildVariables());
-            if (!normalizedFile.isEmpty()) {
-                args.add(normalizedFile);
-            }
+        if (normalizedFile != null && normalizedFile.isEmpty()) {
+            normalizedFile = null;
+        }
+
+        List<MsBuildConfiguration> configurationList;
+        String expandedConfigurations = configurations == null ? null
+                : Util.replaceMacro(Util.replaceMacro(configurations, env), build.getBuildVariables());
+        try {
+            configurationList = new ArrayList<>(MsBuildConfiguration.parse(expandedConfigurations));
+        } catch (IllegalArgumentException e) {
+            listener.fatalError(e.getMessage());
+            return false;
+        }
+        if (configurationList.isEmpty()) {
+            configurationList.add(new MsBuildConfiguration(null, null, null));
         }
 
-        FilePath pwd = build.getModuleRoot();
+        // The command line without the temporary binary log, for the fingerprint of the inputs
+        List<String> commandLine = new ArrayList<>(args.toList());
         if (normalizedFile != null) {
-            FilePath msBuildFilePath = pwd.child(normalizedFile);
-            if (!msBuildFilePath.exists()) {
-                pwd = build.getWorkspace();
-            }
+            commandLine.add(normalizedFile);
+        }
+        if (expandedConfigurations != null) {
+            commandLine.add(expandedConfigurations);
         }
 
-        if (!launcher.isUnix()) {
-            if (!doNotUseChcpCommand) {
-                final int cpi = getCodePageIdentifier(build.getCharset());
-                if (cpi != 0) {
-                    args.prepend("chcp", String.valueOf(cpi), "&");
-                }
-            }
+        FilePath binaryLog = preflight.getBinaryLog() != null ? new FilePath(channel, preflight.getBinaryLog()) : null;
+        FilePath pwd = new FilePath(channel, preflight.getPwd());
 
-            args.prepend("cmd.exe", "/C", "\"");
-            args.add("\"", "&&", "exit", "%%ERRORLEVEL%%");
-        } else {
+        if (launcher.isUnix()) {
             listener.fatalError("Unable to use this plugin on this kind of operation system");
         }
 
         try {
-            listener.getLogger()
-                    .printf("Executing the command %s from %s%n", args.toStringWithQuote(), pwd);
-            // Parser to find the number of Warnings/Errors
-            MsBuildConsoleParser mbcp = new MsBuildConsoleParser(listener.getLogger(), build.getCharset());
-            MSBuildConsoleAnnotator annotator = new MSBuildConsoleAnnotator(listener.getLogger(), build.getCharset());
-            // Launch the msbuild.exe
-            int r = launcher.launch().cmds(args).envs(env).stdout(mbcp).stdout(annotator).pwd(pwd).join();
+            FilePath sarif = preflight.getSarifFile() != null ? new FilePath(channel, preflight.getSarifFile()) : null;
+            // One cache per solution, the steps building different ones in the same workspace not evicting each other
+            String inputsCache = skipUnchangedInputs && workspace != null ? WorkspaceList.tempDir(workspace)
+                    .child("msbuild-inputs-" + Integer.toHexString((pwd.getRemote() + '|' + normalizedFile).hashCode())
+                            + ".txt").getRemote() : null;
+            MsBuildInputs.Result inputs = null;
+            if (inputsCache != null) {
+                inputs = fingerprintInputs(normalizedFile, String.join("\n", commandLine), inputsCache, pwd, sarif,
+                        listener);
+                if (inputs != null && inputs.getUnchangedSince() != null) {
+                    listener.getLogger().printf("> Skipping MSBuild, the inputs and arguments did not change since "
+                            + "%s built them in this workspace.%n", inputs.getUnchangedSince());
+                    if (binaryLog != null) {
+                        binaryLog.delete();
+                    }
+                    return true;
+                }
+                // The outputs will no longer match the inputs of the last successful build if this one fails
+                new FilePath(channel, MsBuildInputs.lastFile(inputsCache)).delete();
+            }
+            MsBuildConsoleOptions options = getConsoleOptions(build);
+            // One launch per configuration and shard
+            List<String> files = new ArrayList<>();
+            List<MsBuildConfiguration> launchConfigurations = new ArrayList<>();
+            List<String> labels = new ArrayList<>();
+            List<String> shardProjects = new ArrayList<>();
+            Map<String, List<String>> splits = new HashMap<>();
+            boolean sharded = shards > 1;
+            List<String> unsupportedTargets = MsBuildShards.getUnsupportedTargets(args.toList());
+            if (sharded && !unsupportedTargets.isEmpty()) {
+                listener.getLogger().println("> Building as a whole, the shards cannot build the target(s) "
+                        + String.join(", ", unsupportedTargets) + ".");
+                sharded = false;
+            }
+            for (MsBuildConfiguration configuration : configurationList) {
+                String file = configuration.getProject() != null ? configuration.getProject() : normalizedFile;
+                List<String> split = Collections.emptyList();
+                if (sharded && file != null && workspace != null) {
+                    split = splits.get(file);
+                    if (split == null) {
+                        split = split(file, workspace, pwd, listener);
+                        splits.put(file, split);
+                        shardProjects.addAll(split);
+                    }
+                }
+                if (split.isEmpty()) {
+                    files.add(file);
+                    launchConfigurations.add(configuration);
+                    labels.add(configuration.toString());
+                }
+                for (int i = 0; i < split.size(); i++) {
+                    files.add(split.get(i));
+                    launchConfigurations.add(configuration);
+                    labels.add((configuration + " shard " + (i + 1)).trim());
+                }
+            }
+            MsBuildLaunchResult result;
+            long logLength = -1;
+            try {
+                ArgumentListBuilder launchArgs = autoParallelism
+                        ? withParallelism(args, files.size(), env, launcher, listener) : args;
+                if (files.size() == 1) {
+                    ArgumentListBuilder command = toCommand(launchArgs, launchConfigurations.get(0), files.get(0),
+                            binaryLog, build.getCharset(), launcher);
+                    listener.getLogger()
+                            .printf("Executing the command %s from %s%n", command.toStringWithQuote(), pwd);
+                    logLength = getLogLength(build, listener);
+                    // Launch the msbuild.exe
+                    result = launch(build, launcher, listener, command, env, pwd, binaryLog, sarif, options);
+                } else {
+                    result = launchConcurrently(build, launcher, listener, launchArgs, launchConfigurations, files,
+                            labels, env, pwd, binaryLog, sarif, options);
+                }
+            } finally {
+                for (String shardProject : shardProjects) {
+                    new FilePath(channel, shardProject).delete();
+                }
+            }
+            MsBuildDiagnostics diagnostics = result.getDiagnostics();
+            MsBuildDiagnosticsAction diagnosticsAction = MsBuildDiagnosticsAction.addTo(build, diagnostics);
+            listener.getLogger().flush();
+            if (!diagnosticsAction.addLogIndex(result.getLogIndex(), logLength)) {
+                listener.getLogger().println("> The errors and warnings were not found in the build log, they "
+                        + "will not be shown in context.");
+            }
+            MsBuildTrend.record(build.getParent(), build.getNumber(), diagnosticsAction.getErrors(),
+                    diagnosticsAction.getWarnings());
+            MsBuildPerformanceAction.addTo(build, result.getPerformanceSummary());
+            int repeated = diagnostics.rawCount(MsBuildDiagnostics.Severity.WARNING)
+                    + diagnostics.rawCount(MsBuildDiagnostics.Severity.ERROR) - diagnostics.size();
+            if (repeated > 0) {
+                listener.getLogger().printf("> %d warning(s) and %d error(s), not counting %d repeated line(s).%n",
+                        diagnostics.count(MsBuildDiagnostics.Severity.WARNING),
+                        diagnostics.count(MsBuildDiagnostics.Severity.ERROR), repeated);
+            }
             // Check the number of warnings
-            if (unstableIfWarnings && mbcp.getNumberOfWarnings() > 0) {
+            if (unstableIfWarnings && result.getNumberOfWarnings() > 0) {
                 listener.getLogger().println("> Set build UNSTABLE because there are warnings.");
                 build.setResult(Result.UNSTABLE);
             }
+            if (unstableIfNewWarnings) {
+                checkNewWarnings(build, diagnosticsAction, listener);
+            }
+            if (inputs != null && result.getExitCode() == 0
+                    && (build.getResult() == null || build.getResult().isBetterOrEqualTo(Result.SUCCESS))) {
+                try {
+                    pwd.act(new MsBuildInputs.Record(inputsCache, inputs.getFingerprint(), build.getFullDisplayName(),
+                            inputs.getOutputs()));
+                } catch (IOException e) {
+                    listener.getLogger().println("> Failed recording the inputs of MSBuild: " + e);
+                }
+            }
             // Return the result of the compilation
-            return continueOnBuildFailure || (r == 0);
+            return continueOnBuildFailure || (result.getExitCode() == 0);
         } catch (IOException e) {
             Util.displayIOException(e, listener);
             build.setResult(Result.FAILURE);
@@ -343,40 +638,254 @@ public class MsBuildBuilder extends Builder {
         }
     }
 
-    private Map<String, String> getPropertiesVariables(AbstractBuild<?, ?> build) {
+    /**
+     * @return how the output of MSBuild is processed, the build being marked
+     *         for its errors and warnings to be highlighted when its log is
+     *         shown if no notes are written
+     */
+    MsBuildConsoleOptions getConsoleOptions(Run<?, ?> build) {
+        DescriptorImpl descriptor = (DescriptorImpl) getDescriptor();
+        // Notes encoded on the agent are not signed with the key of the controller, which then ignores them
+        boolean writeNotes = !descriptor.isAnnotateWhenRendered() && !descriptor.isParseOnAgent();
+        if (!writeNotes) {
+            MsBuildConsoleAnnotatorFactory.mark(build);
+        }
+        return new MsBuildConsoleOptions(descriptor.getConsoleBufferSize() * 1024, descriptor.getConsoleOverflow(),
+                descriptor.getMaxLineLength() * 1024, writeNotes, MsBuildFailFast.of(stopAfterErrors,
+                        stopOnErrorCodes));
+    }
 
-        Map<String, String> buildVariables = build.getBuildVariables();
+    /**
+     * @return the full command line running MSBuild on the given solution or
+     *         project
+     */
+    private ArgumentListBuilder toCommand(ArgumentListBuilder args, MsBuildConfiguration configuration, String file,
+            FilePath binaryLog, Charset charset, Launcher launcher) {
+        ArgumentListBuilder command = args.clone();
+        for (String argument : configuration.toArguments()) {
+            command.add(argument);
+        }
+        if (file != null) {
+            command.add(file);
+        }
+        if (binaryLog != null) {
+            command.add("/bl:" + binaryLog.getRemote());
+        }
+        if (performanceSummary) {
+            command.add("/clp:PerformanceSummary");
+        }
 
-        final Set<String> sensitiveBuildVariables = build.getSensitiveBuildVariables();
-        if (sensitiveBuildVariables == null || sensitiveBuildVariables.isEmpty()) {
-            return buildVariables;
+        if (!launcher.isUnix()) {
+            if (!doNotUseChcpCommand) {
+                final int cpi = getCodePageIdentifier(charset);
+                if (cpi != 0) {
+                    command.prepend("chcp", String.valueOf(cpi), "&");
+                }
+            }
+
+            command.prepend("cmd.exe", "/C", "\"");
+            command.add("\"", "&&", "exit", "%%ERRORLEVEL%%");
         }
+        return command;
+    }
 
-        for (String sensitiveBuildVariable : sensitiveBuildVariables) {
-            buildVariables.remove(sensitiveBuildVariable);
+    private MsBuildLaunchResult launch(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener,
+            ArgumentListBuilder command, EnvVars env, FilePath pwd, FilePath binaryLog, FilePath sarif,
+            MsBuildConsoleOptions options) throws IOException, InterruptedException {
+        DescriptorImpl descriptor = (DescriptorImpl) getDescriptor();
+        if (descriptor.isParseOnAgent()) {
+            return launcher.getChannel().call(new MsBuildAgentLaunch(command.toCommandArray(),
+                    command.toMaskArray(), env, pwd, build.getCharset(), binaryLog == null ? null
+                    : binaryLog.getRemote(), sarif == null ? null : sarif.getRemote(), options, listener));
         }
+        return MsBuildLaunchResult.launch(launcher.launch().cmds(command).envs(env).pwd(pwd), listener,
+                build.getCharset(), binaryLog, sarif, options);
+    }
 
-        return buildVariables;
+    /**
+     * Run the given configurations and shards at the same time, as many as the
+     * agent can run, see {@link MsBuildAgentResources#getMaxProcesses}.
+     *
+     * @return the merged results
+     */
+    private MsBuildLaunchResult launchConcurrently(AbstractBuild<?, ?> build, Launcher launcher,
+            BuildListener listener, ArgumentListBuilder args, List<MsBuildConfiguration> configurations,
+            List<String> files, List<String> labels, EnvVars env, FilePath pwd, FilePath binaryLog, FilePath sarif,
+            MsBuildConsoleOptions options) throws IOException, InterruptedException {
+        MsBuildAgentResources resources = MsBuildAgentResources.of(Computer.currentComputer(), launcher.getChannel());
+        int maxConcurrent = resources.getMaxProcesses(files.size());
+        listener.getLogger().printf("> Running %d MSBuild processes, %d at most at the same time on %s.%n",
+                files.size(), maxConcurrent, resources);
+        List<Callable<MsBuildLaunchResult>> launches = new ArrayList<>();
+        List<String> sarifParts = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            FilePath launchLog = binaryLog == null ? null
+                    : i == 0 ? binaryLog : binaryLog.getParent().createTempFile("msbuild", ".binlog");
+            FilePath launchSarif = sarif == null ? null : withSuffix(sarif, "-" + (i + 1));
+            if (launchSarif != null) {
+                sarifParts.add(launchSarif.getRemote());
+            }
+            ArgumentListBuilder command = toCommand(args, configurations.get(i), files.get(i), launchLog,
+                    build.getCharset(), launcher);
+            String label = labels.get(i);
+            launches.add(() -> {
+                listener.getLogger().printf("Executing the command %s from %s%n", command.toStringWithQuote(), pwd);
+                return launch(build, launcher, listener, command, env, pwd, launchLog, launchSarif, options);
+            });
+        }
+        List<MsBuildLaunchResult> results = MsBuildConcurrentLaunch.run(launches, maxConcurrent, cancelOnFailure,
+                labels, listener);
+        for (int i = 0; i < results.size(); i++) {
+            MsBuildLaunchResult result = results.get(i);
+            if (result == null) {
+                listener.getLogger().printf("> %s: stopped.%n", labels.get(i));
+            } else {
+                listener.getLogger().printf("> %s: exit code %d, %d warning(s), %d error(s).%n", labels.get(i),
+                        result.getExitCode(), result.getNumberOfWarnings(), result.getNumberOfErrors());
+            }
+        }
+        if (sarif != null) {
+            try {
+                int runs = sarif.act(new MsBuildSarifWriter.Merge(sarifParts, labels));
+                listener.getLogger().printf("> Merged the errors and warnings of %d MSBuild process(es) into %s.%n",
+                        runs, sarif.getRemote());
+            } catch (IOException e) {
+                listener.getLogger().println("> Failed to merge the SARIF files into " + sarif.getRemote() + ": " + e);
+            }
+        }
+        return MsBuildLaunchResult.merge(results);
+    }
+
+    /**
+     * @param launches the number of MSBuild processes to run
+     * @return the arguments with the parallelism chosen for the agent, see
+     *         {@link MsBuildParallelism}, added to the ones not already set
+     */
+    private static ArgumentListBuilder withParallelism(ArgumentListBuilder args, int launches, EnvVars env,
+            Launcher launcher, BuildListener listener) throws InterruptedException {
+        MsBuildAgentResources resources;
+        try {
+            resources = MsBuildAgentResources.of(Computer.currentComputer(), launcher.getChannel());
+        } catch (IOException e) {
+            listener.getLogger().println("> Failed to get the processors and memory of the agent, the parallelism "
+                    + "of MSBuild is not set: " + e);
+            return args;
+        }
+        int processes = launches > 1 ? resources.getMaxProcesses(launches) : 1;
+        List<String> added = MsBuildParallelism.tune(args.toList(), env, resources, processes);
+        if (added.isEmpty()) {
+            listener.getLogger().println("> The parallelism of MSBuild is already set in its arguments.");
+            return args;
+        }
+        listener.getLogger().printf("> Parallelism of MSBuild for %s and %d process(es) at the same time: %s%n",
+                resources, processes, String.join(" ", added));
+        ArgumentListBuilder tuned = args.clone();
+        for (String argument : added) {
+            tuned.add(argument);
+        }
+        return tuned;
+    }
+
+    /**
+     * Split the solution or project in shards, see {@link MsBuildShards}.
+     *
+     * @return the projects building the shards, none to build it as a whole
+     */
+    private List<String> split(String msBuildFile, FilePath workspace, FilePath pwd, BuildListener listener)
+            throws InterruptedException {
+        try {
+            MsBuildShards.Result split = pwd.act(new MsBuildShards(msBuildFile, shards,
+                    WorkspaceList.tempDir(workspace).getRemote()));
+            listener.getLogger().printf("> %s: %d project(s) on %d level(s), %d on the longest chain of references, "
+                    + "read in %d ms.%n", msBuildFile, split.getProjectCount(), split.getLevels(),
+                    split.getCriticalPath(), split.getMillis());
+            if (split.getProjects().isEmpty()) {
+                listener.getLogger().println("> The projects all depend on each other, building them as a whole.");
+            } else {
+                listener.getLogger().printf("> Building %d independent shard(s) of %s project(s) at the same time.%n",
+                        split.getSizes().size(), split.getSizes());
+            }
+            return split.getProjects();
+        } catch (IOException e) {
+            listener.getLogger().println("> Failed splitting " + msBuildFile + ", building it as a whole: " + e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return the file with the given suffix before its extension
+     */
+    private static FilePath withSuffix(FilePath file, String suffix) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return file.getParent().child(dot > 0 ? name.substring(0, dot) + suffix + name.substring(dot)
+                : name + suffix);
+    }
+
+    /**
+     * @return the length of the build log, or -1 if it is not a plain file
+     */
+    private static long getLogLength(Run<?, ?> build, TaskListener listener) {
+        listener.getLogger().flush();
+        File log = build.getLogFile();
+        return log != null && log.isFile() ? log.length() : -1;
     }
 
     /**
-     * Get the full path of the tool to run.
-     * If given path is a directory, this will append the executable name.
+     * @return the fingerprint of the inputs of MSBuild, or {@code null} if it
+     *         could not be computed
      */
-    static String getToolFullPath(Launcher launcher, String pathToTool, String execName)
-            throws IOException, InterruptedException {
-        String fullPathToMsBuild = (pathToTool != null ? pathToTool : "");
-
-        FilePath exec = new FilePath(launcher.getChannel(), fullPathToMsBuild);
-        if (exec.isDirectory()) {
-            if (!fullPathToMsBuild.endsWith("\\")) {
-                fullPathToMsBuild = fullPathToMsBuild + "\\";
+    private static MsBuildInputs.Result fingerprintInputs(String msBuildFile, String commandLine, String cacheFile,
+            FilePath pwd, FilePath sarif, TaskListener listener) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        String computer = Computer.currentComputer() != null ? Computer.currentComputer().getName() : "";
+        try {
+            MsBuildInputs.Result inputs = pwd.act(new MsBuildInputs(msBuildFile == null || msBuildFile.isEmpty()
+                    ? null : msBuildFile, computer + '\n' + commandLine, cacheFile,
+                    sarif != null ? Collections.singleton(sarif.getRemote()) : Collections.emptySet()));
+            listener.getLogger().printf("> Checked %d input file(s) of MSBuild, %d of them read, in %d ms.%n",
+                    inputs.getFiles(), inputs.getHashed(), System.currentTimeMillis() - start);
+            if (inputs.getUnresolved() != null) {
+                listener.getLogger().println("> MSBuild will run, not all its inputs can be found: "
+                        + inputs.getUnresolved());
             }
+            return inputs;
+        } catch (IOException e) {
+            listener.getLogger().println("> Failed checking the inputs of MSBuild, it will run: " + e);
+            return null;
+        }
+    }
 
-            fullPathToMsBuild = fullPathToMsBuild + execName;
+    private static void checkNewWarnings(AbstractBuild<?, ?> build, MsBuildDiagnosticsAction diagnosticsAction,
+            BuildListener listener) {
+        MsBuildDiagnosticsAction reference = MsBuildDiagnosticsAction.getReference(build);
+        if (reference == null) {
+            listener.getLogger().println("> No successful build to compare the warnings with.");
+            return;
         }
+        int added = MsBuildFingerprints.countNew(diagnosticsAction.getWarningFingerprints(),
+                reference.getWarningFingerprints());
+        if (added > 0) {
+            listener.getLogger().printf("> Set build UNSTABLE because there are %d new warning(s) since %s.%n", added,
+                    reference.getRun().getDisplayName());
+            build.setResult(Result.UNSTABLE);
+        }
+    }
+
+    private Map<String, String> getPropertiesVariables(AbstractBuild<?, ?> build) {
+
+        Map<String, String> buildVariables = build.getBuildVariables();
 
-        return fullPathToMsBuild;
+        final Set<String> sensitiveBuildVariables = build.getSensitiveBuildVariables();
+        if (sensitiveBuildVariables == null || sensitiveBuildVariables.isEmpty()) {
+            return buildVariables;
+        }
+
+        for (String sensitiveBuildVariable : sensitiveBuildVariables) {
+            buildVariables.remove(sensitiveBuildVariable);
+        }
+
+        return buildVariables;
     }
 
     @Override
@@ -411,9 +920,20 @@ public class MsBuildBuilder extends Builder {
     @Symbol("msbuild")
     @SuppressFBWarnings(value = "VO_VOLATILE_REFERENCE_TO_ARRAY", justification = "untriaged")
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+        /** In KB. */
+        static final int DEFAULT_CONSOLE_BUFFER_SIZE = 1024;
+        /** In KB. */
+        static final int DEFAULT_MAX_LINE_LENGTH = MsBuildConsoleProcessor.DEFAULT_MAX_LINE_LENGTH / 1024;
+
         @CopyOnWrite
         private volatile MsBuildInstallation[] installations = new MsBuildInstallation[0];
 
+        private boolean parseOnAgent;
+        private int consoleBufferSize = DEFAULT_CONSOLE_BUFFER_SIZE;
+        private MsBuildConsolePump.Overflow consoleOverflow = MsBuildConsolePump.Overflow.BLOCK;
+        private int maxLineLength = DEFAULT_MAX_LINE_LENGTH;
+        private boolean annotateWhenRendered;
+
         public DescriptorImpl() {
             super(MsBuildBuilder.class);
             load();
@@ -438,6 +958,76 @@ public class MsBuildBuilder extends Builder {
             save();
         }
 
+        public boolean isParseOnAgent() {
+            return parseOnAgent;
+        }
+
+        /**
+         * @param parseOnAgent If true, MSBuild is started and its output parsed
+         *                     on the agent, see {@link MsBuildAgentLaunch}
+         */
+        @DataBoundSetter
+        public void setParseOnAgent(boolean parseOnAgent) {
+            this.parseOnAgent = parseOnAgent;
+        }
+
+        /**
+         * @return the size of the buffer between MSBuild and the build log in
+         *         KB, 0 if MSBuild writes to the build log directly
+         */
+        public int getConsoleBufferSize() {
+            return consoleBufferSize;
+        }
+
+        @DataBoundSetter
+        public void setConsoleBufferSize(int consoleBufferSize) {
+            this.consoleBufferSize = Math.max(0, consoleBufferSize);
+        }
+
+        public MsBuildConsolePump.Overflow getConsoleOverflow() {
+            return consoleOverflow;
+        }
+
+        @DataBoundSetter
+        public void setConsoleOverflow(MsBuildConsolePump.Overflow consoleOverflow) {
+            this.consoleOverflow = consoleOverflow == null ? MsBuildConsolePump.Overflow.BLOCK : consoleOverflow;
+        }
+
+        /**
+         * @return the maximum number of bytes of a line scanned for errors and
+         *         warnings in KB, 0 for no limit
+         */
+        public int getMaxLineLength() {
+            return maxLineLength;
+        }
+
+        @DataBoundSetter
+        public void setMaxLineLength(int maxLineLength) {
+            this.maxLineLength = Math.max(0, maxLineLength);
+        }
+
+        public boolean isAnnotateWhenRendered() {
+            return annotateWhenRendered;
+        }
+
+        /**
+         * @param annotateWhenRendered If true, the errors and warnings are
+         *                             highlighted when the build log is shown,
+         *                             see {@link MsBuildConsoleAnnotatorFactory},
+         *                             instead of by notes written in the log
+         */
+        @DataBoundSetter
+        public void setAnnotateWhenRendered(boolean annotateWhenRendered) {
+            this.annotateWhenRendered = annotateWhenRendered;
+        }
+
+        @Override
+        public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+            req.bindJSON(this, json);
+            save();
+            return true;
+        }
+
         public MsBuildInstallation.DescriptorImpl getToolDescriptor() {
             return ToolInstallation.all().get(MsBuildInstallation.DescriptorImpl.class);
         }
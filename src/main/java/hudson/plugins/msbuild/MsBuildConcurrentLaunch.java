@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several MSBuild processes of a step at the same time, each with its
+ * own console processing, and waits for all of them.
+ */
+final class MsBuildConcurrentLaunch {
+
+    private MsBuildConcurrentLaunch() {
+    }
+
+    /**
+     * @param maxConcurrent   the maximum number of processes running at the
+     *                        same time, the others waiting for them
+     * @param cancelOnFailure whether to stop the other processes, and not
+     *                        start the waiting ones, once one fails
+     * @param labels          the names of the launches in the log
+     * @return the results, in the order of the launches, {@code null} for
+     *         the launches cancelled because another one failed
+     * @throws InterruptedException if interrupted, all the launches being
+     *                              interrupted too
+     */
+    static List<MsBuildLaunchResult> run(List<Callable<MsBuildLaunchResult>> launches, int maxConcurrent,
+            boolean cancelOnFailure, List<String> labels, TaskListener listener)
+            throws IOException, InterruptedException {
+        AtomicInteger number = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxConcurrent,
+                launches.size())), r -> {
+                    Thread t = new Thread(r, "MSBuild launch #" + number.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        try {
+            CompletionService<MsBuildLaunchResult> completion = new ExecutorCompletionService<>(executor);
+            Map<Future<MsBuildLaunchResult>, Integer> futures = new LinkedHashMap<>();
+            // set by the failed launch itself, for its thread not to start the next one in the meantime
+            AtomicBoolean failedOne = new AtomicBoolean();
+            for (int i = 0; i < launches.size(); i++) {
+                Callable<MsBuildLaunchResult> launch = launches.get(i);
+                futures.put(completion.submit(() -> {
+                    if (cancelOnFailure && failedOne.get()) {
+                        return null;
+                    }
+                    boolean succeeded = false;
+                    try {
+                        MsBuildLaunchResult result = launch.call();
+                        succeeded = result.getExitCode() == 0;
+                        return result;
+                    } finally {
+                        if (!succeeded && !Thread.currentThread().isInterrupted()) {
+                            failedOne.set(true);
+                        }
+                    }
+                }), i);
+            }
+            MsBuildLaunchResult[] results = new MsBuildLaunchResult[launches.size()];
+            Exception failure = null;
+            boolean cancelled = false;
+            for (int done = 0; done < launches.size(); done++) {
+                Future<MsBuildLaunchResult> future;
+                try {
+                    future = completion.take();
+                } catch (InterruptedException e) {
+                    cancelAll(futures.keySet());
+                    throw e;
+                }
+                int i = futures.get(future);
+                boolean failed;
+                try {
+                    results[i] = get(future);
+                    failed = results[i] != null && results[i].getExitCode() != 0;
+                } catch (CancellationException e) {
+                    continue;
+                } catch (IOException | RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    failed = true;
+                }
+                if (failed && cancelOnFailure && !cancelled) {
+                    cancelled = true;
+                    listener.getLogger().printf("> Stopping the other MSBuild processes because %s failed.%n",
+                            labels.get(i));
+                    cancelAll(futures.keySet());
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return Arrays.asList(results);
+        } finally {
+            executor.shutdownNow();
+            // the processes of the cancelled launches are killed by their threads
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                listener.getLogger().println("> Some MSBuild processes did not stop within a minute.");
+            }
+        }
+    }
+
+    private static void cancelAll(Collection<Future<MsBuildLaunchResult>> futures) {
+        for (Future<MsBuildLaunchResult> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static MsBuildLaunchResult get(Future<MsBuildLaunchResult> future)
+            throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One of the configurations an MSBuild step builds at the same time as the
+ * others, written on its own line as {@code Configuration|Platform},
+ * optionally preceded by a solution or project to build instead of the one of
+ * the step, e.g. {@code Release|x64} or {@code src/Tools.sln Debug}.
+ */
+final class MsBuildConfiguration {
+
+    /** A solution or project, optionally followed by the rest of the line. */
+    private static final Pattern PROJECT = Pattern.compile("(.*?\\.(?:sln|\\w*proj))(?:\\s+(.*))?",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String project;
+    private final String configuration;
+    private final String platform;
+
+    MsBuildConfiguration(String project, String configuration, String platform) {
+        this.project = project;
+        this.configuration = configuration;
+        this.platform = platform;
+    }
+
+    /**
+     * @param lines one configuration per line, empty lines and lines starting
+     *              with {@code #} being ignored
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    static List<MsBuildConfiguration> parse(String lines) {
+        if (lines == null) {
+            return Collections.emptyList();
+        }
+        List<MsBuildConfiguration> configurations = new ArrayList<>();
+        for (String line : lines.split("\r?\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String project = null;
+            String rest = line;
+            Matcher m = PROJECT.matcher(line);
+            if (m.matches()) {
+                project = m.group(1);
+                rest = m.group(2) != null ? m.group(2) : "";
+            } else if (rest.indexOf(' ') >= 0 && rest.indexOf('|') < 0) {
+                throw new IllegalArgumentException("Not a solution or project: " + line);
+            }
+            String configuration = rest;
+            String platform = null;
+            int bar = rest.indexOf('|');
+            if (bar >= 0) {
+                configuration = rest.substring(0, bar).trim();
+                platform = rest.substring(bar + 1).trim();
+                if (platform.isEmpty() || platform.indexOf('|') >= 0) {
+                    throw new IllegalArgumentException("Invalid platform in: " + line);
+                }
+            }
+            configurations.add(new MsBuildConfiguration(project, configuration.isEmpty() ? null : configuration,
+                    platform));
+        }
+        return configurations;
+    }
+
+    /**
+     * @return the solution or project to build instead of the one of the step,
+     *         or {@code null}
+     */
+    String getProject() {
+        return project;
+    }
+
+    String getConfiguration() {
+        return configuration;
+    }
+
+    String getPlatform() {
+        return platform;
+    }
+
+    /**
+     * @return the MSBuild arguments selecting the configuration and platform
+     */
+    List<String> toArguments() {
+        List<String> arguments = new ArrayList<>(2);
+        if (configuration != null) {
+            arguments.add("/p:Configuration=" + configuration);
+        }
+        if (platform != null) {
+            arguments.add("/p:Platform=" + platform);
+        }
+        return arguments;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        if (project != null) {
+            s.append(project);
+        }
+        if (configuration != null || platform != null) {
+            if (s.length() > 0) {
+                s.append(' ');
+            }
+            s.append(configuration != null ? configuration : "");
+            if (platform != null) {
+                s.append('|').append(platform);
+            }
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.Extension;
+import hudson.MarkupText;
+import hudson.console.ConsoleAnnotator;
+import hudson.console.ConsoleAnnotatorFactory;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.io.Serial;
+import java.util.regex.Matcher;
+
+/**
+ * Highlights the MSBuild errors and warnings when the build log is shown,
+ * instead of the {@link MSBuildErrorNote}s and {@link MSBuildWarningNote}s
+ * written in the log while MSBuild runs.
+ * <p>
+ * This is used for the builds marked with {@link Marker}, i.e. the ones built
+ * with {@link MsBuildBuilder.DescriptorImpl#setAnnotateWhenRendered} set: the
+ * log is then smaller and nothing is encoded at build time, the patterns only
+ * running on the lines actually shown.
+ * <p>
+ * Once the build is over, only the lines found by the MSBuild steps and
+ * recorded in their {@link MsBuildLogIndex} are highlighted, not the lines of
+ * the other steps that happen to look like MSBuild errors or warnings. While
+ * it runs, or if the index misses some of the lines, e.g. of MSBuild processes
+ * run at the same time, every matching line is, like the notes would have been.
+ */
+@Extension
+public class MsBuildConsoleAnnotatorFactory extends ConsoleAnnotatorFactory<Object> {
+
+    @Override
+    public ConsoleAnnotator<Object> newInstance(Object context) {
+        if (context instanceof Run && ((Run<?, ?>) context).getAction(Marker.class) != null) {
+            return new Annotator();
+        }
+        return null;
+    }
+
+    /**
+     * Mark a build for its MSBuild errors and warnings to be highlighted when
+     * its log is shown.
+     */
+    static void mark(Run<?, ?> run) {
+        if (run.getAction(Marker.class) == null) {
+            run.addAction(new Marker());
+        }
+    }
+
+    /**
+     * Added to the builds whose log has no notes for MSBuild errors and
+     * warnings.
+     */
+    public static final class Marker extends InvisibleAction {
+    }
+
+    /**
+     * @return the fingerprints of the lines the MSBuild steps of a finished
+     *         build found, or {@code null} to highlight every matching line
+     */
+    static MsBuildFingerprintSet getLineFingerprints(Object context) {
+        if (!(context instanceof Run) || ((Run<?, ?>) context).isBuilding()) {
+            return null;
+        }
+        MsBuildDiagnosticsAction action = ((Run<?, ?>) context).getAction(MsBuildDiagnosticsAction.class);
+        return action != null ? action.getLineFingerprints() : null;
+    }
+
+    /**
+     * Applies the same patterns and markup as the notes, to the lines found
+     * by the MSBuild steps.
+     */
+    static final class Annotator extends ConsoleAnnotator<Object> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // Kept for the lines of one request only, the annotator being serialized between requests
+        private transient Matcher errorMatcher;
+        private transient Matcher warningMatcher;
+        private transient boolean linesLoaded;
+        /** The lines to highlight, all the matching ones if {@code null}. */
+        private transient MsBuildFingerprintSet lines;
+
+        Annotator() {
+        }
+
+        Annotator(MsBuildFingerprintSet lines) {
+            this.lines = lines;
+            this.linesLoaded = true;
+        }
+
+        @Override
+        public ConsoleAnnotator<Object> annotate(Object context, MarkupText text) {
+            String line = text.getText();
+            int end = line.length();
+            while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+                end--;
+            }
+            int keywords = MsBuildKeywordFilter.scan(line);
+            if (keywords == 0) {
+                return this;
+            }
+            if (!linesLoaded) {
+                lines = getLineFingerprints(context);
+                linesLoaded = true;
+            }
+            if (lines != null && !lines.contains(MsBuildLogIndex.fingerprint(line.substring(0, end)))) {
+                return this;
+            }
+            if ((keywords & MsBuildKeywordFilter.ERROR) != 0) {
+                if (errorMatcher == null) {
+                    errorMatcher = MSBuildErrorNote.PATTERN.matcher("");
+                }
+                if (errorMatcher.reset(line).region(0, end).matches()) {
+                    text.addMarkup(0, text.length(), "<span class=error-inline>", "</span>");
+                }
+            }
+            if ((keywords & MsBuildKeywordFilter.WARNING) != 0) {
+                if (warningMatcher == null) {
+                    warningMatcher = MSBuildWarningNote.PATTERN.matcher("");
+                }
+                if (warningMatcher.reset(line).region(0, end).matches()) {
+                    text.addMarkup(0, text.length(), "<span class=warning-inline>", "</span>");
+                }
+            }
+            // keep annotating the next lines
+            return this;
+        }
+    }
+}
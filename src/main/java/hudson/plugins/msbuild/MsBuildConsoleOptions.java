@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.Serializable;
+
+/**
+ * How the output of MSBuild is processed, from the step and global
+ * configurations, see {@link MsBuildLaunchResult#launch}.
+ */
+final class MsBuildConsoleOptions implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int bufferSize;
+    private final MsBuildConsolePump.Overflow overflow;
+    private final int maxLineLength;
+    private final boolean writeNotes;
+    private final MsBuildFailFast failFast;
+
+    /**
+     * @param bufferSize    the size of the buffer between MSBuild and the build
+     *                      log, 0 to write to the build log directly
+     * @param overflow      what to do when that buffer is full
+     * @param maxLineLength the maximum number of bytes scanned per line, 0 for
+     *                      no limit
+     * @param writeNotes    whether to write the console notes of the errors and
+     *                      warnings, see {@link MsBuildConsoleAnnotatorFactory}
+     * @param failFast      when to stop MSBuild before it is done, or
+     *                      {@code null}
+     */
+    MsBuildConsoleOptions(int bufferSize, MsBuildConsolePump.Overflow overflow, int maxLineLength,
+            boolean writeNotes, MsBuildFailFast failFast) {
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.maxLineLength = maxLineLength;
+        this.writeNotes = writeNotes;
+        this.failFast = failFast;
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    MsBuildConsolePump.Overflow getOverflow() {
+        return overflow;
+    }
+
+    int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    boolean isWriteNotes() {
+        return writeNotes;
+    }
+
+    MsBuildFailFast getFailFast() {
+        return failFast;
+    }
+}
@@ -29,8 +29,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Parser to find the number of Warnings/Errors of MsBuild compilation
@@ -40,6 +40,8 @@ import java.util.regex.Pattern;
 public class MsBuildConsoleParser extends LineTransformationOutputStream {
     private final OutputStream out;
     private final Charset charset;
+    private final boolean asciiCompatible;
+    private final MsBuildSummaryMatcher matcher;
 
     private int numberOfWarnings = -1;
     private int numberOfErrors = -1;
@@ -47,6 +49,8 @@ public class MsBuildConsoleParser extends LineTransformationOutputStream {
     public MsBuildConsoleParser(OutputStream out, Charset charset) {
         this.out = out;
         this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.matcher = asciiCompatible ? MsBuildSummaryMatcher.forCharset(charset) : MsBuildSummaryMatcher.utf8();
     }
 
     public int getNumberOfWarnings() {
@@ -59,35 +63,50 @@ public class MsBuildConsoleParser extends LineTransformationOutputStream {
 
     @Override
     protected void eol(byte[] b, int len) throws IOException {
-        String line = charset.decode(ByteBuffer.wrap(b, 0, len)).toString();
+        parseLine(b, len);
 
-        // trim off CR/LF from the end
-        line = trimEOL(line);
-
-        Pattern patternWarnings = Pattern.compile(".*\\d+\\sWarning\\(s\\).*");
-        Pattern patternErrors = Pattern.compile(".*\\d+\\sError\\(s\\).*");
-
-        Matcher mWarnings = patternWarnings.matcher(line);
-        Matcher mErrors = patternErrors.matcher(line);
-
-        if (mWarnings.matches()) { // Match the number of warnings
-            String[] part = line.split(" ");
-            try {
-                numberOfWarnings = Integer.parseInt(part[4]);
-            } catch (NumberFormatException e) {
-
-            }
-        } else if (mErrors.matches()) { // Match the number of errors
-            String[] part = line.split(" ");
-            try {
-                numberOfErrors = Integer.parseInt(part[4]);
-            } catch (NumberFormatException e) {
+        // Write to output
+        out.write(b, 0, len);
+    }
 
-            }
+    /**
+     * Look for the "N Warning(s)" and "N Error(s)" summary lines, in any of the
+     * languages of {@link MsBuildSummaryMatcher}.
+     * <p>
+     * The raw bytes are scanned directly, so nothing is allocated for the lines
+     * which are not summary lines. Only the charsets which do not encode ASCII
+     * characters as single bytes need the line to be decoded first, and it is
+     * then scanned as UTF-8.
+     *
+     * @param b   the raw line, possibly with its end of line characters
+     * @param len the length of the line
+     */
+    void parseLine(byte[] b, int len) {
+        long found;
+        if (!asciiCompatible) {
+            byte[] utf8 = charset.decode(ByteBuffer.wrap(b, 0, len)).toString().getBytes(StandardCharsets.UTF_8);
+            found = matcher.find(utf8, utf8.length);
+        } else {
+            found = matcher.find(b, len);
+        }
+        if (found == MsBuildSummaryMatcher.NONE) {
+            return;
+        }
+        if (MsBuildSummaryMatcher.severity(found) == MsBuildDiagnostics.Severity.WARNING) {
+            numberOfWarnings = MsBuildSummaryMatcher.count(found);
+        } else {
+            numberOfErrors = MsBuildSummaryMatcher.count(found);
         }
+    }
 
-        // Write to output
-        out.write(b, 0, len);
+    /**
+     * Whether the ASCII characters are encoded as the same single bytes in the
+     * given charset, so that ASCII keywords can be searched in the raw output.
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        String ascii = "09 AZaz():";
+        return charset.canEncode()
+                && Arrays.equals(ascii.getBytes(charset), ascii.getBytes(StandardCharsets.US_ASCII));
     }
 
     @Override
@@ -0,0 +1,197 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.function.Consumer;
+
+/**
+ * Console filter for the MSBuild output.
+ * <p>
+ * Each line is split and decoded only once, see {@link MsBuildLineDecoder},
+ * then handed to the summary parser
+ * ({@link MsBuildConsoleParser}), to the annotator
+ * ({@link MSBuildConsoleAnnotator}) and to the performance summary parser
+ * ({@link MsBuildPerformanceParser}) before being written to the build log.
+ * <p>
+ * Only the first {@link #DEFAULT_MAX_LINE_LENGTH} bytes of a line are scanned
+ * unless told otherwise, see {@link MsBuildLineSplitter}: the rest of a longer
+ * line, e.g. a compiler command line at diagnostic verbosity, is written to
+ * the build log as is. An error or a warning is still found as long as its
+ * origin, severity and code are in the scanned part.
+ */
+public class MsBuildConsoleProcessor extends MsBuildLineSplitter {
+    /** The default maximum number of bytes scanned per line. */
+    static final int DEFAULT_MAX_LINE_LENGTH = 64 * 1024;
+
+    private final MsBuildLogIndex.Counter out;
+    private final MsBuildLineDecoder decoder;
+    /** The note of the current line, written along with it. */
+    private final ByteArrayOutputStream note = new ByteArrayOutputStream();
+
+    private final MsBuildConsoleParser parser;
+    private final MSBuildConsoleAnnotator annotator;
+    private final MsBuildPerformanceParser performance = new MsBuildPerformanceParser();
+    private final MsBuildLogIndex logIndex = new MsBuildLogIndex();
+
+    private MsBuildFailFast failFast;
+    private Consumer<String> onFailFast;
+
+    public MsBuildConsoleProcessor(OutputStream out, Charset charset) {
+        this(out, charset, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    /**
+     * @param maxLineLength the maximum number of bytes scanned per line, 0 for
+     *                      no limit
+     */
+    public MsBuildConsoleProcessor(OutputStream out, Charset charset, int maxLineLength) {
+        super(maxLineLength);
+        this.out = new MsBuildLogIndex.Counter(out);
+        this.decoder = new MsBuildLineDecoder(charset);
+        this.parser = new MsBuildConsoleParser(this.out, charset);
+        this.annotator = new MSBuildConsoleAnnotator(note, charset);
+    }
+
+    /**
+     * @return the number of warnings reported by the MSBuild summary, or the
+     *         number of distinct warnings seen if no summary was printed
+     */
+    public int getNumberOfWarnings() {
+        int summary = parser.getNumberOfWarnings();
+        return summary >= 0 ? summary : annotator.getNumberOfUniqueWarnings();
+    }
+
+    /**
+     * @return the number of errors reported by the MSBuild summary, or the
+     *         number of distinct errors seen if no summary was printed
+     */
+    public int getNumberOfErrors() {
+        int summary = parser.getNumberOfErrors();
+        return summary >= 0 ? summary : annotator.getNumberOfUniqueErrors();
+    }
+
+    /**
+     * @return the distinct errors and warnings seen so far, see
+     *         {@link MsBuildDiagnostics#rawCount} for the number of lines
+     */
+    public MsBuildDiagnostics getDiagnostics() {
+        return annotator.getDiagnostics();
+    }
+
+    /**
+     * @return the performance summary printed so far, empty unless MSBuild was
+     *         run with {@code /clp:PerformanceSummary}
+     */
+    public MsBuildPerformanceSummary getPerformanceSummary() {
+        return performance.getSummary();
+    }
+
+    /**
+     * @return where the error and warning lines are in the output written so
+     *         far
+     */
+    MsBuildLogIndex getLogIndex() {
+        logIndex.setHead(out.getHead());
+        return logIndex;
+    }
+
+    /**
+     * @param writeNotes false to leave the console notes of the errors and
+     *                   warnings out of the output
+     */
+    void setWriteNotes(boolean writeNotes) {
+        annotator.setWriteNotes(writeNotes);
+    }
+
+    /**
+     * Call back once the output shows that MSBuild should be stopped.
+     *
+     * @param onFailFast given why MSBuild should be stopped, called from the
+     *                   thread writing to this stream
+     */
+    void setFailFast(MsBuildFailFast failFast, Consumer<String> onFailFast) {
+        this.failFast = failFast;
+        this.onFailFast = onFailFast;
+    }
+
+    @Override
+    protected void eol(byte[] b, int len) throws IOException {
+        parser.parseLine(b, len);
+
+        CharSequence line = decoder.decode(b, len);
+        long offset = out.getCount();
+        int errors = annotator.getNumberOfErrors();
+        int warnings = annotator.getNumberOfWarnings();
+        annotator.annotateLine(line);
+        performance.parseLine(line);
+
+        if (note.size() > 0) {
+            // A single write, for the output of the other processes sharing the build log not to come in between
+            note.write(b, 0, len);
+            note.writeTo(out);
+            note.reset();
+        } else {
+            out.write(b, 0, len);
+        }
+
+        if (annotator.getNumberOfErrors() != errors) {
+            logIndex.add(offset, MsBuildDiagnostics.Severity.ERROR);
+        } else if (annotator.getNumberOfWarnings() != warnings) {
+            logIndex.add(offset, MsBuildDiagnostics.Severity.WARNING);
+        }
+
+        if (failFast != null && annotator.getNumberOfErrors() != errors) {
+            String reason = failFast.check(annotator.getNumberOfUniqueErrors(), annotator.getLastErrorCode());
+            if (reason != null) {
+                // the line that triggered it is already in the log
+                failFast = null;
+                onFailFast.accept(reason);
+            }
+        }
+    }
+
+    @Override
+    protected void tail(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * Process the pending incomplete line, if any, without closing the
+     * underlying stream.
+     */
+    public void finish() throws IOException {
+        forceEol();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        out.close();
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decouples the MSBuild output from the build log.
+ * <p>
+ * What is written goes to a ring buffer, drained by a dedicated thread that
+ * writes to the build log in large chunks and flushes it at least every
+ * {@link #FLUSH_INTERVAL_MS}. This way a slow build log, e.g. because of a
+ * busy controller or channel, does not fill the pipe of MSBuild and stall the
+ * build. When the buffer is full, the writer either waits or spills to a
+ * temporary file, depending on the {@link Overflow} policy.
+ * <p>
+ * Only whole lines are written to the build log, up to {@link #CHUNK_SIZE}
+ * bytes for a single line, so that the output of several MSBuild processes
+ * sharing the build log is interleaved by lines and never within them. The
+ * end of the last line is written by {@link #finish()}.
+ */
+final class MsBuildConsolePump extends OutputStream {
+
+    /** What to do when the buffer is full. */
+    enum Overflow {
+        /** Wait for the build log to catch up. */
+        BLOCK,
+        /** Write to a temporary file until the build log catches up. */
+        SPILL;
+
+        public String getDisplayName() {
+            return this == BLOCK ? Messages.MsBuildConsolePump_Block() : Messages.MsBuildConsolePump_Spill();
+        }
+    }
+
+    /** Maximum time the output stays in the buffer before being flushed. */
+    static final long FLUSH_INTERVAL_MS = 100;
+
+    /** Size of the writes to the build log. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final Overflow overflow;
+    private final byte[] buffer;
+    private final Thread drainer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // guarded by lock
+    private int head;
+    private int size;
+    private boolean closed;
+    private boolean flushRequested;
+    private IOException failure;
+    private File spillFile;
+    private RandomAccessFile spill;
+    private long spillRead;
+    private long spillWritten;
+
+    // metrics, guarded by lock
+    private int peakSize;
+    private long stallNanos;
+    private long spilledBytes;
+
+    /**
+     * @param out        the build log
+     * @param bufferSize the size of the ring buffer in bytes
+     * @param name       the name of the draining thread
+     */
+    MsBuildConsolePump(OutputStream out, int bufferSize, Overflow overflow, String name) {
+        this.out = out;
+        this.overflow = overflow;
+        this.buffer = new byte[bufferSize];
+        this.drainer = new Thread(this::drain, name);
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            while (len > 0) {
+                checkOpen();
+                if (spill != null) {
+                    // keep the order: once spilling, everything goes to the file until it is drained
+                    spill(b, off, len);
+                    return;
+                }
+                int free = buffer.length - size;
+                if (free == 0) {
+                    if (overflow == Overflow.SPILL) {
+                        spill(b, off, len);
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    } finally {
+                        stallNanos += System.nanoTime() - start;
+                    }
+                    continue;
+                }
+                int n = Math.min(len, free);
+                int tail = (head + size) % buffer.length;
+                int first = Math.min(n, buffer.length - tail);
+                System.arraycopy(b, off, buffer, tail, first);
+                System.arraycopy(b, off + first, buffer, 0, n - first);
+                size += n;
+                peakSize = Math.max(peakSize, size);
+                off += n;
+                len -= n;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void spill(byte[] b, int off, int len) throws IOException {
+        if (spill == null) {
+            spillFile = Files.createTempFile("msbuild-console", ".spill").toFile();
+            spill = new RandomAccessFile(spillFile, "rw");
+            spillRead = 0;
+            spillWritten = 0;
+        }
+        spill.seek(spillWritten);
+        spill.write(b, off, len);
+        spillWritten += len;
+        spilledBytes += len;
+        notEmpty.signal();
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Failed to write to the build log", failure);
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Make the buffered output written without waiting for the flush interval.
+     */
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            flushRequested = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        // a chunk, after the start of a line left from the previous one
+        byte[] chunk = new byte[2 * CHUNK_SIZE];
+        int partial = 0;
+        try {
+            while (true) {
+                int n;
+                boolean end;
+                boolean flush;
+                lock.lock();
+                try {
+                    // wait for a full chunk or buffer, the flush interval, a flush or the end
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+                    while (!closed && !flushRequested && size < buffer.length && pending() < CHUNK_SIZE) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            if (pending() > 0) {
+                                break;
+                            }
+                            remaining = TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+                            deadline = System.nanoTime() + remaining;
+                        }
+                        notEmpty.awaitNanos(remaining);
+                    }
+                    n = take(chunk, partial);
+                    end = n == 0 && closed;
+                    flush = pending() == 0;
+                    if (flush) {
+                        flushRequested = false;
+                    }
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                int length = partial + n;
+                int lines = length;
+                if (!end) {
+                    while (lines > 0 && chunk[lines - 1] != '\n') {
+                        lines--;
+                    }
+                    if (length - lines >= CHUNK_SIZE) {
+                        // too long to wait for the end of the line
+                        lines = length;
+                    }
+                }
+                if (lines > 0) {
+                    out.write(chunk, 0, lines);
+                }
+                partial = length - lines;
+                System.arraycopy(chunk, lines, chunk, 0, partial);
+                if (end) {
+                    return;
+                }
+                if (flush && lines > 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException());
+        }
+    }
+
+    private void fail(IOException e) {
+        lock.lock();
+        try {
+            failure = e;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long pending() {
+        return size + spillWritten - spillRead;
+    }
+
+    /**
+     * Take the next bytes, up to {@link #CHUNK_SIZE}, from the buffer first as
+     * it holds the oldest ones.
+     */
+    private int take(byte[] chunk, int off) throws IOException {
+        if (size > 0) {
+            int n = Math.min(size, CHUNK_SIZE);
+            int first = Math.min(n, buffer.length - head);
+            System.arraycopy(buffer, head, chunk, off, first);
+            System.arraycopy(buffer, 0, chunk, off + first, n - first);
+            head = (head + n) % buffer.length;
+            size -= n;
+            return n;
+        }
+        if (spill != null) {
+            spill.seek(spillRead);
+            int n = spill.read(chunk, off, (int) Math.min(CHUNK_SIZE, spillWritten - spillRead));
+            spillRead += n;
+            if (spillRead == spillWritten) {
+                // caught up, back to the buffer
+                closeSpill();
+            }
+            return n;
+        }
+        return 0;
+    }
+
+    private void closeSpill() throws IOException {
+        spill.close();
+        spill = null;
+        Files.deleteIfExists(spillFile.toPath());
+        spillFile = null;
+    }
+
+    /**
+     * Write what is left to the build log and stop the draining thread.
+     *
+     * @throws IOException if the build log could not be written
+     */
+    void finish() throws IOException, InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        drainer.join();
+        lock.lock();
+        try {
+            if (spill != null) {
+                closeSpill();
+            }
+            if (failure != null) {
+                throw new IOException("Failed to write to the build log", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * @return the largest amount of output that was waiting in the buffer, in
+     *         bytes
+     */
+    int getPeakSize() {
+        lock.lock();
+        try {
+            return peakSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how long MSBuild waited for the buffer to have room, in
+     *         milliseconds
+     */
+    long getStallTime() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(stallNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes written to the temporary file because the
+     *         buffer was full
+     */
+    long getSpilledBytes() {
+        lock.lock();
+        try {
+            return spilledBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The errors and warnings of a build, stored column by column.
+ * <p>
+ * The file names, project names and messages are interned in a string table
+ * and the codes in another one, so each diagnostic only costs a few ints.
+ * <p>
+ * MSBuild repeats diagnostics: in the summary at the end of the build, and
+ * once per target framework or configuration. Only the first occurrence of a
+ * diagnostic is kept, as identified by its {@link #fingerprint}, while the
+ * {@link #rawCount raw counts} include the repetitions.
+ */
+public final class MsBuildDiagnostics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Severity {
+        ERROR, WARNING
+    }
+
+    private static final int MAGIC = 0x4D534244; // "MSBD"
+    /** Version 2 writes the strings as UTF-8 of any length, version 1 with {@code writeUTF}. */
+    private static final int VERSION = 2;
+
+    /** Longer messages are truncated. */
+    static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private final StringTable strings = new StringTable();
+    private final StringTable codes = new StringTable();
+
+    private transient MsBuildFingerprintSet fingerprints;
+    private transient Listener listener;
+    private final int[] rawCounts = new int[Severity.values().length];
+
+    private int size;
+    private byte[] severities = new byte[16];
+    private int[] files = new int[16];
+    private int[] lines = new int[16];
+    private int[] columns = new int[16];
+    private int[] codeIds = new int[16];
+    private int[] projects = new int[16];
+    private int[] messages = new int[16];
+
+    /**
+     * Told about each diagnostic as it is added, repetitions excluded.
+     */
+    interface Listener {
+        /**
+         * @param file    the file, or {@code null}
+         * @param line    the line, or 0 if unknown
+         * @param column  the column, or 0 if unknown
+         * @param code    the code, or {@code null}
+         * @param project the project, or {@code null}
+         */
+        void added(Severity severity, String file, int line, int column, String code, String project,
+                String message);
+    }
+
+    /**
+     * @param listener told about the diagnostics added from now on, or
+     *                 {@code null}
+     */
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of distinct diagnostics of the given severity
+     */
+    public int count(Severity severity) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (severities[i] == severity.ordinal()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of diagnostics of the given severity, repetitions
+     *         included
+     */
+    public int rawCount(Severity severity) {
+        return rawCounts[severity.ordinal()];
+    }
+
+    public Severity getSeverity(int i) {
+        return Severity.values()[severities[check(i)]];
+    }
+
+    /**
+     * @return the file, or the tool name (e.g. {@code MSBUILD}, {@code LINK}) if
+     *         the diagnostic is not about a file, or {@code null}
+     */
+    public String getFile(int i) {
+        return strings.get(files[check(i)]);
+    }
+
+    /**
+     * @return the line, or 0 if unknown
+     */
+    public int getLine(int i) {
+        return lines[check(i)];
+    }
+
+    /**
+     * @return the column, or 0 if unknown
+     */
+    public int getColumn(int i) {
+        return columns[check(i)];
+    }
+
+    /**
+     * @return the code (e.g. {@code CS0168}, {@code MSB3277}), or {@code null}
+     */
+    public String getCode(int i) {
+        return codes.get(codeIds[check(i)]);
+    }
+
+    /**
+     * @return the project reported between brackets at the end of the line, or
+     *         {@code null}
+     */
+    public String getProject(int i) {
+        return strings.get(projects[check(i)]);
+    }
+
+    public String getMessage(int i) {
+        return strings.get(messages[check(i)]);
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size);
+        }
+        return i;
+    }
+
+    /**
+     * Add a diagnostic from the parts of a line matched by
+     * {@link MSBuildErrorNote#PATTERN} or {@link MSBuildWarningNote#PATTERN}.
+     *
+     * @param severity the severity
+     * @param origin   what precedes the severity, e.g.
+     *                 {@code "  2>C:\src\Foo.cs(12,5): "}
+     * @param code     the code, may be {@code null}
+     * @param message  the text following the code, possibly ending with the
+     *                 project between brackets
+     * @return {@code false} if the diagnostic was already there
+     */
+    boolean add(Severity severity, String origin, String code, String message) {
+        String file = null;
+        int line = 0;
+        int column = 0;
+
+        origin = trimOrigin(origin);
+        int open = origin.lastIndexOf('(');
+        if (origin.endsWith(")") && open > 0) {
+            String[] position = origin.substring(open + 1, origin.length() - 1).split(",");
+            try {
+                line = Integer.parseInt(position[0].trim());
+                column = position.length > 1 ? Integer.parseInt(position[1].trim()) : 0;
+                origin = origin.substring(0, open).trim();
+            } catch (NumberFormatException e) {
+                line = 0;
+                column = 0;
+            }
+        }
+        if (!origin.isEmpty()) {
+            file = origin;
+        }
+
+        String project = null;
+        int bracket = message.lastIndexOf(" [");
+        if (message.endsWith("]") && bracket >= 0) {
+            project = message.substring(bracket + 2, message.length() - 1);
+            message = message.substring(0, bracket);
+        }
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            message = message.substring(0, MAX_MESSAGE_LENGTH);
+        }
+
+        return add(severity, file, line, column, code, project, message);
+    }
+
+    /**
+     * Remove the node prefix of {@code /m} builds and what follows the origin,
+     * i.e. the last colon followed by a whitespace and the optional subcategory.
+     * Without such a colon there is no origin.
+     */
+    static String trimOrigin(String origin) {
+        int start = 0;
+        while (start < origin.length() && Character.isWhitespace(origin.charAt(start))) {
+            start++;
+        }
+        int digits = start;
+        while (digits < origin.length() && Character.isDigit(origin.charAt(digits))) {
+            digits++;
+        }
+        if (digits > start && digits < origin.length() && origin.charAt(digits) == '>') {
+            start = digits + 1;
+        }
+
+        int end = start;
+        for (int i = origin.length() - 1; i >= start; i--) {
+            if (origin.charAt(i) == ':' && (i + 1 == origin.length() || Character.isWhitespace(origin.charAt(i + 1)))) {
+                end = i;
+                break;
+            }
+        }
+        return origin.substring(start, end).trim();
+    }
+
+    /**
+     * @return {@code false} if the diagnostic was already there
+     */
+    boolean add(Severity severity, String file, int line, int column, String code, String project, String message) {
+        rawCounts[severity.ordinal()]++;
+        if (!getFingerprints().add(fingerprint(severity, file, line, column, code, message))) {
+            return false;
+        }
+        if (size == severities.length) {
+            int capacity = Math.max(16, size * 2);
+            severities = Arrays.copyOf(severities, capacity);
+            files = Arrays.copyOf(files, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            codeIds = Arrays.copyOf(codeIds, capacity);
+            projects = Arrays.copyOf(projects, capacity);
+            messages = Arrays.copyOf(messages, capacity);
+        }
+        severities[size] = (byte) severity.ordinal();
+        files[size] = strings.intern(file);
+        lines[size] = line;
+        columns[size] = column;
+        codeIds[size] = codes.intern(code);
+        projects[size] = strings.intern(project);
+        messages[size] = strings.intern(message);
+        size++;
+        if (listener != null) {
+            listener.added(severity, file, line, column, code, project, message);
+        }
+        return true;
+    }
+
+    void addAll(MsBuildDiagnostics other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.getSeverity(i), other.getFile(i), other.getLine(i), other.getColumn(i), other.getCode(i),
+                    other.getProject(i), other.getMessage(i));
+        }
+        // the repetitions seen by the other one
+        for (Severity severity : Severity.values()) {
+            rawCounts[severity.ordinal()] += other.rawCount(severity) - other.count(severity);
+        }
+    }
+
+    /**
+     * The fingerprints are only needed to add diagnostics, so they are not
+     * saved but computed again when adding to diagnostics that were read.
+     */
+    private MsBuildFingerprintSet getFingerprints() {
+        if (fingerprints == null) {
+            fingerprints = new MsBuildFingerprintSet();
+            for (int i = 0; i < size; i++) {
+                fingerprints.add(fingerprint(getSeverity(i), getFile(i), getLine(i), getColumn(i), getCode(i),
+                        getMessage(i)));
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the fields identifying a diagnostic, the project
+     * being left out as MSBuild appends the target framework to it.
+     */
+    static long fingerprint(Severity severity, String file, int line, int column, String code, String message) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, severity.ordinal());
+        hash = hash(hash, file);
+        hash = hash(hash, line);
+        hash = hash(hash, column);
+        hash = hash(hash, code);
+        hash = hash(hash, message);
+        return hash;
+    }
+
+    /**
+     * Fingerprint used to compare the diagnostics of two builds, which leaves
+     * out the line and column as they change whenever code is added or removed
+     * above the diagnostic.
+     */
+    static long stableFingerprint(Severity severity, String file, String code, String message) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, severity.ordinal());
+        hash = hash(hash, file);
+        hash = hash(hash, code);
+        hash = hash(hash, message);
+        return hash;
+    }
+
+    /**
+     * @return the distinct {@link #stableFingerprint stable fingerprints} of the
+     *         diagnostics of the given severity, sorted
+     */
+    long[] getStableFingerprints(Severity severity) {
+        long[] values = new long[count(severity)];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (getSeverity(i) == severity) {
+                values[n++] = stableFingerprint(severity, getFile(i), getCode(i), getMessage(i));
+            }
+        }
+        return MsBuildFingerprints.sortDistinct(values, n);
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash(hash, -1);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        // separator, so that ("ab", "c") and ("a", "bc") differ
+        return hash(hash, value.length());
+    }
+
+    private static long hash(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Write the diagnostics in a compact binary form, see {@link #readFrom}.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(gzip);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        strings.writeTo(data);
+        codes.writeTo(data);
+        for (int rawCount : rawCounts) {
+            data.writeInt(rawCount);
+        }
+        data.writeInt(size);
+        data.write(severities, 0, size);
+        for (int[] column : new int[][] { files, lines, columns, codeIds, projects, messages }) {
+            for (int i = 0; i < size; i++) {
+                data.writeInt(column[i]);
+            }
+        }
+        data.flush();
+        gzip.finish();
+    }
+
+    public static MsBuildDiagnostics readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a MSBuild diagnostics file");
+        }
+        int version = data.readInt();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported MSBuild diagnostics version " + version);
+        }
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.strings.readFrom(data, version);
+        diagnostics.codes.readFrom(data, version);
+        for (int i = 0; i < diagnostics.rawCounts.length; i++) {
+            diagnostics.rawCounts[i] = data.readInt();
+        }
+        int size = data.readInt();
+        diagnostics.size = size;
+        diagnostics.severities = new byte[size];
+        data.readFully(diagnostics.severities);
+        diagnostics.files = readInts(data, size);
+        diagnostics.lines = readInts(data, size);
+        diagnostics.columns = readInts(data, size);
+        diagnostics.codeIds = readInts(data, size);
+        diagnostics.projects = readInts(data, size);
+        diagnostics.messages = readInts(data, size);
+        return diagnostics;
+    }
+
+    private static int[] readInts(DataInputStream data, int size) throws IOException {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = data.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Strings indexed by the order they were first added, -1 standing for
+     * {@code null}.
+     */
+    private static final class StringTable implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> values = new ArrayList<>();
+        private transient Map<String, Integer> ids;
+
+        int intern(String value) {
+            if (value == null) {
+                return -1;
+            }
+            if (ids == null) {
+                ids = new HashMap<>();
+                for (int i = 0; i < values.size(); i++) {
+                    ids.put(values.get(i), i);
+                }
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        String get(int id) {
+            return id < 0 ? null : values.get(id);
+        }
+
+        void writeTo(DataOutputStream data) throws IOException {
+            data.writeInt(values.size());
+            for (String value : values) {
+                // writeUTF is limited to 64 KB, which a path or project alone can exceed
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+        }
+
+        void readFrom(DataInputStream data, int version) throws IOException {
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                if (version == 1) {
+                    values.add(data.readUTF());
+                    continue;
+                }
+                int length = data.readInt();
+                if (length < 0) {
+                    throw new IOException("Invalid string length " + length);
+                }
+                byte[] bytes = data.readNBytes(length);
+                if (bytes.length < length) {
+                    throw new EOFException();
+                }
+                values.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
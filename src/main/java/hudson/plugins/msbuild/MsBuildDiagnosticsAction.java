@@ -0,0 +1,438 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The errors and warnings reported by the MSBuild steps of a build.
+ * <p>
+ * Only the counts are saved with the build, the diagnostics themselves are
+ * kept in {@value #FILE_NAME} next to it and loaded when needed. The
+ * fingerprints of the warnings are also kept in {@value #FINGERPRINTS_FILE_NAME}
+ * to compare them with the ones of a later build, and their offsets in the
+ * build log in {@value MsBuildLogIndex#FILE_NAME} to show them in context, see
+ * {@link #getExcerpts}.
+ */
+public class MsBuildDiagnosticsAction implements RunAction2 {
+
+    private static final Logger LOGGER = Logger.getLogger(MsBuildDiagnosticsAction.class.getName());
+
+    static final String FILE_NAME = "msbuild-diagnostics.bin";
+    static final String FINGERPRINTS_FILE_NAME = "msbuild-warnings.fp";
+
+    /** Maximum number of rows shown on the page. */
+    static final int MAX_ROWS = 1000;
+
+    /** Number of excerpts of the build log shown per page. */
+    static final int EXCERPTS_PER_PAGE = 20;
+
+    private int errors;
+    private int warnings;
+    private int rawErrors;
+    private int rawWarnings;
+    /**
+     * Whether some error and warning lines are missing from the log index, see
+     * {@link #getLineFingerprints}.
+     */
+    private boolean logIndexIncomplete;
+
+    private transient Run<?, ?> run;
+    private transient Reference<MsBuildDiagnostics> diagnostics;
+    private transient Reference<MsBuildLogIndex> logIndex;
+    private transient Reference<MsBuildFingerprintSet> lineFingerprints;
+
+    /**
+     * Add the diagnostics of an MSBuild step to the build, along with the ones of
+     * the previous steps.
+     */
+    static MsBuildDiagnosticsAction addTo(Run<?, ?> run, MsBuildDiagnostics added) throws IOException {
+        MsBuildDiagnosticsAction action = run.getAction(MsBuildDiagnosticsAction.class);
+        if (action == null) {
+            action = new MsBuildDiagnosticsAction();
+            action.run = run;
+            action.save(added);
+            run.addAction(action);
+        } else {
+            MsBuildDiagnostics all = new MsBuildDiagnostics();
+            all.addAll(action.getDiagnostics());
+            all.addAll(added);
+            action.save(all);
+        }
+        return action;
+    }
+
+    private synchronized void save(MsBuildDiagnostics all) throws IOException {
+        File file = getFile();
+        File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            all.writeTo(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        MsBuildFingerprints.write(new File(run.getRootDir(), FINGERPRINTS_FILE_NAME),
+                all.getStableFingerprints(MsBuildDiagnostics.Severity.WARNING));
+        errors = all.count(MsBuildDiagnostics.Severity.ERROR);
+        warnings = all.count(MsBuildDiagnostics.Severity.WARNING);
+        rawErrors = all.rawCount(MsBuildDiagnostics.Severity.ERROR);
+        rawWarnings = all.rawCount(MsBuildDiagnostics.Severity.WARNING);
+        diagnostics = new SoftReference<>(all);
+    }
+
+    private File getFile() {
+        return new File(run.getRootDir(), FILE_NAME);
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public int getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * @return the number of error lines, repeated errors included
+     */
+    public int getRawErrors() {
+        return rawErrors;
+    }
+
+    /**
+     * @return the number of warning lines, repeated warnings included
+     */
+    public int getRawWarnings() {
+        return rawWarnings;
+    }
+
+    /**
+     * @return the diagnostics, empty if they cannot be read
+     */
+    public synchronized MsBuildDiagnostics getDiagnostics() {
+        MsBuildDiagnostics loaded = diagnostics == null ? null : diagnostics.get();
+        if (loaded == null) {
+            File file = getFile();
+            loaded = new MsBuildDiagnostics();
+            if (file.exists()) {
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    loaded = MsBuildDiagnostics.readFrom(in);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+                }
+            }
+            diagnostics = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Add where the errors and warnings of an MSBuild step are in the build
+     * log, along with the ones of the previous steps.
+     *
+     * @param added     where they are in the output of MSBuild, {@code null}
+     *                  if it was not indexed
+     * @param logLength the length of the build log before MSBuild was started
+     * @return false if the output of MSBuild was not found in the build log
+     */
+    synchronized boolean addLogIndex(MsBuildLogIndex added, long logLength) throws IOException {
+        if (added == null) {
+            logIndexIncomplete = true;
+            return true;
+        }
+        if (added.size() == 0) {
+            return true;
+        }
+        long base = added.locate(run.getLogFile(), logLength);
+        if (base < 0) {
+            logIndexIncomplete = true;
+            return false;
+        }
+        MsBuildLogIndex all = new MsBuildLogIndex();
+        all.addAll(getLogIndex(), 0);
+        all.addAll(added, base);
+        if (all.size() == MsBuildLogIndex.MAX_ENTRIES) {
+            logIndexIncomplete = true;
+        }
+        all.writeTo(new File(run.getRootDir(), MsBuildLogIndex.FILE_NAME));
+        logIndex = new SoftReference<>(all);
+        lineFingerprints = null;
+        return true;
+    }
+
+    /**
+     * @return the fingerprints of the error and warning lines written by the
+     *         MSBuild steps, see {@link MsBuildLogIndex#fingerprint}, or
+     *         {@code null} if they are not all known: nothing was indexed, the
+     *         output of a step was not indexed or not found in the build log,
+     *         or the build log cannot be read
+     */
+    synchronized MsBuildFingerprintSet getLineFingerprints() {
+        if (logIndexIncomplete) {
+            return null;
+        }
+        MsBuildFingerprintSet loaded = lineFingerprints == null ? null : lineFingerprints.get();
+        if (loaded == null) {
+            MsBuildLogIndex index = getLogIndex();
+            File log = run.getLogFile();
+            if (index.size() == 0 || !log.isFile()) {
+                return null;
+            }
+            try {
+                loaded = index.readLineFingerprints(log, run.getCharset());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read " + log, e);
+                return null;
+            }
+            lineFingerprints = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * @return where the errors and warnings are in the build log, empty if it
+     *         cannot be read
+     */
+    synchronized MsBuildLogIndex getLogIndex() {
+        MsBuildLogIndex loaded = logIndex == null ? null : logIndex.get();
+        if (loaded == null) {
+            File file = new File(run.getRootDir(), MsBuildLogIndex.FILE_NAME);
+            loaded = new MsBuildLogIndex();
+            if (file.exists()) {
+                try {
+                    loaded = MsBuildLogIndex.readFrom(file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+                }
+            }
+            logIndex = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * @return the number of error lines that can be shown in context
+     */
+    public int getIndexedErrors() {
+        return getLogIndex().count(MsBuildDiagnostics.Severity.ERROR);
+    }
+
+    /**
+     * @return the number of warning lines that can be shown in context
+     */
+    public int getIndexedWarnings() {
+        return getLogIndex().count(MsBuildDiagnostics.Severity.WARNING);
+    }
+
+    /**
+     * Read a page of error or warning lines in context, from the build log.
+     *
+     * @param severity {@code "ERROR"} or {@code "WARNING"}, errors if
+     *                 {@code null}
+     * @param start    the number of lines to skip, 0 if {@code null}
+     */
+    public ExcerptPage getExcerptPage(String severity, String start) {
+        MsBuildDiagnostics.Severity s = "WARNING".equals(severity) ? MsBuildDiagnostics.Severity.WARNING
+                : MsBuildDiagnostics.Severity.ERROR;
+        int skip = 0;
+        try {
+            skip = start == null ? 0 : Math.max(0, Integer.parseInt(start));
+        } catch (NumberFormatException e) {
+            // first page
+        }
+        MsBuildLogIndex index = getLogIndex();
+        int total = index.count(s);
+        List<Excerpt> excerpts = List.of();
+        File log = run.getLogFile();
+        if (skip < total && log.isFile()) {
+            try {
+                excerpts = index.readExcerpts(log, run.getCharset(), s, skip, EXCERPTS_PER_PAGE);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read " + log, e);
+            }
+        }
+        return new ExcerptPage(s, excerpts, skip + EXCERPTS_PER_PAGE < total ? skip + EXCERPTS_PER_PAGE : -1);
+    }
+
+    /**
+     * @return the sorted fingerprints of the warnings, see
+     *         {@link MsBuildDiagnostics#stableFingerprint}
+     */
+    long[] getWarningFingerprints() {
+        File file = new File(run.getRootDir(), FINGERPRINTS_FILE_NAME);
+        if (file.exists()) {
+            try {
+                return MsBuildFingerprints.read(file);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+            }
+        }
+        return getDiagnostics().getStableFingerprints(MsBuildDiagnostics.Severity.WARNING);
+    }
+
+    /**
+     * Find the build to compare the warnings of a build with: the last
+     * successful build among the ones of the {@link MsBuildTrend}.
+     *
+     * @return the diagnostics of the reference build, or null if there is none
+     */
+    static MsBuildDiagnosticsAction getReference(Run<?, ?> run) {
+        Job<?, ?> job = run.getParent();
+        MsBuildTrend trend = MsBuildTrend.load(job);
+        for (int k = trend.size() - 1; k >= 0; k--) {
+            int number = trend.getNumber(k);
+            if (number >= run.getNumber()) {
+                continue;
+            }
+            Run<?, ?> candidate = job.getBuildByNumber(number);
+            if (candidate != null && !candidate.isBuilding() && candidate.getResult() == Result.SUCCESS) {
+                MsBuildDiagnosticsAction action = candidate.getAction(MsBuildDiagnosticsAction.class);
+                if (action != null) {
+                    return action;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of rows shown on the page
+     */
+    public int getRowCount() {
+        return Math.min(getDiagnostics().size(), MAX_ROWS);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-warning";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.MsBuildDiagnosticsAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "msbuild";
+    }
+
+    /**
+     * A page of {@link Excerpt}s of one severity.
+     */
+    public static final class ExcerptPage {
+        private final MsBuildDiagnostics.Severity severity;
+        private final List<Excerpt> excerpts;
+        private final int next;
+
+        ExcerptPage(MsBuildDiagnostics.Severity severity, List<Excerpt> excerpts, int next) {
+            this.severity = severity;
+            this.excerpts = excerpts;
+            this.next = next;
+        }
+
+        public MsBuildDiagnostics.Severity getSeverity() {
+            return severity;
+        }
+
+        public List<Excerpt> getExcerpts() {
+            return excerpts;
+        }
+
+        /**
+         * @return the start of the next page, -1 if this is the last one
+         */
+        public int getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * An error or warning line of the build log and the lines around it.
+     */
+    public static final class Excerpt {
+        private final long offset;
+        private final List<String> lines;
+        private final int lineIndex;
+
+        Excerpt(long offset, List<String> lines, int lineIndex) {
+            this.offset = offset;
+            this.lines = lines;
+            this.lineIndex = lineIndex;
+        }
+
+        /**
+         * @return the offset of the line in the build log
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the lines, without the console notes, empty if the line was
+         *         not found where expected
+         */
+        public List<String> getLines() {
+            return lines;
+        }
+
+        /**
+         * @return the index of the error or warning line in {@link #getLines}
+         */
+        public int getLineIndex() {
+            return lineIndex;
+        }
+
+        public boolean isFound() {
+            return lineIndex >= 0;
+        }
+    }
+}
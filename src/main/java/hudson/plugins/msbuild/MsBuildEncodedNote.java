@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.console.ConsoleNote;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+
+/**
+ * The encoded form of a console note without state, computed once and then
+ * written as is.
+ * <p>
+ * Encoding a note serializes, compresses and signs it. The signature depends
+ * on a key of the Jenkins instance, so the bytes are encoded again when the
+ * instance changes, as it does between tests.
+ */
+final class MsBuildEncodedNote {
+
+    private final ConsoleNote<?> note;
+    private volatile Encoded encoded;
+
+    MsBuildEncodedNote(ConsoleNote<?> note) {
+        this.note = note;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(get());
+    }
+
+    byte[] get() throws IOException {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        Encoded current = encoded;
+        if (current == null || current.jenkins.get() != jenkins) {
+            current = new Encoded(jenkins, note.encodeToBytes().toByteArray());
+            encoded = current;
+        }
+        return current.bytes;
+    }
+
+    private static final class Encoded {
+        /** Weak so that a stopped instance is not kept. */
+        final WeakReference<Jenkins> jenkins;
+        final byte[] bytes;
+
+        Encoded(Jenkins jenkins, byte[] bytes) {
+            this.jenkins = new WeakReference<>(jenkins);
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.Proc;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * When to stop MSBuild before it is done: after a number of distinct errors,
+ * or on an error with one of the given codes.
+ */
+final class MsBuildFailFast implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 0 for no limit. */
+    private final int maxErrors;
+    private final TreeSet<String> errorCodes;
+
+    private MsBuildFailFast(int maxErrors, TreeSet<String> errorCodes) {
+        this.maxErrors = maxErrors;
+        this.errorCodes = errorCodes;
+    }
+
+    /**
+     * @param maxErrors  the number of errors to stop after, 0 for no limit
+     * @param errorCodes the codes of the errors to stop on, separated by commas
+     *                   or whitespace, or {@code null}
+     * @return the policy, or {@code null} if MSBuild should never be stopped
+     */
+    static MsBuildFailFast of(int maxErrors, String errorCodes) {
+        TreeSet<String> codes = new TreeSet<>();
+        if (errorCodes != null) {
+            for (String code : errorCodes.split("[,;\\s]+")) {
+                if (!code.isEmpty()) {
+                    codes.add(code.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        if (maxErrors <= 0 && codes.isEmpty()) {
+            return null;
+        }
+        return new MsBuildFailFast(Math.max(maxErrors, 0), codes);
+    }
+
+    int getMaxErrors() {
+        return maxErrors;
+    }
+
+    Set<String> getErrorCodes() {
+        return errorCodes;
+    }
+
+    /**
+     * @param errors the number of distinct errors so far
+     * @param code   the code of the last error, or {@code null}
+     * @return why MSBuild should be stopped, or {@code null} if it should not
+     */
+    String check(int errors, String code) {
+        if (code != null && errorCodes.contains(code.toUpperCase(Locale.ROOT))) {
+            return "error " + code;
+        }
+        if (maxErrors > 0 && errors >= maxErrors) {
+            return errors + " error(s)";
+        }
+        return null;
+    }
+
+    /**
+     * Stops the MSBuild process once asked to, from another thread: the
+     * request comes from the thread copying the output of the process, which
+     * killing the process waits for.
+     * <p>
+     * {@link Proc#kill()} lets the processes end gracefully first, see
+     * {@code hudson.util.ProcessTree.softKillWaitSeconds}, and spares the ones
+     * vetoed by a {@link hudson.util.ProcessKillingVeto} such as
+     * {@link MsBuildKillingVeto}.
+     */
+    static final class Stopper {
+        private final TaskListener listener;
+        private Proc proc;
+        private String reason;
+
+        Stopper(TaskListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @param proc the started MSBuild process
+         */
+        synchronized void setProc(Proc proc) {
+            this.proc = proc;
+            if (reason != null) {
+                kill();
+            }
+        }
+
+        /**
+         * Ask to stop MSBuild, only the first request is considered.
+         *
+         * @param why e.g. {@code "10 error(s)"}
+         */
+        synchronized void stop(String why) {
+            if (reason != null) {
+                return;
+            }
+            reason = why;
+            if (proc != null) {
+                kill();
+            }
+        }
+
+        /**
+         * @return why MSBuild was stopped, or {@code null} if it was not
+         */
+        synchronized String getReason() {
+            return reason;
+        }
+
+        private void kill() {
+            Proc toKill = proc;
+            Thread thread = new Thread(() -> {
+                try {
+                    toKill.kill();
+                } catch (IOException e) {
+                    listener.getLogger().println("> Failed to stop MSBuild: " + e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "MSBuild fail-fast");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+/**
+ * Set of 64-bit fingerprints, using open addressing with linear probing in a
+ * single {@code long[]} so that each entry costs 8 to 16 bytes and no object.
+ * <p>
+ * Slots holding 0 are free, the fingerprint 0 itself is tracked apart.
+ */
+final class MsBuildFingerprintSet {
+    private static final int MIN_CAPACITY = 64;
+
+    private long[] table = new long[MIN_CAPACITY];
+    private boolean containsZero;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the fingerprint was not in the set yet
+     */
+    boolean add(long fingerprint) {
+        if (fingerprint == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        // keep the load factor under 1/2 so that probe sequences stay short
+        if (2 * (size + 1) > table.length) {
+            rehash(table.length * 2);
+        }
+        int mask = table.length - 1;
+        for (int i = slot(fingerprint, mask);; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == 0) {
+                table[i] = fingerprint;
+                size++;
+                return true;
+            }
+            if (value == fingerprint) {
+                return false;
+            }
+        }
+    }
+
+    boolean contains(long fingerprint) {
+        if (fingerprint == 0) {
+            return containsZero;
+        }
+        int mask = table.length - 1;
+        for (int i = slot(fingerprint, mask);; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == 0) {
+                return false;
+            }
+            if (value == fingerprint) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the fingerprints, in no particular order
+     */
+    long[] toArray() {
+        long[] values = new long[size];
+        int n = 0;
+        if (containsZero) {
+            values[n++] = 0;
+        }
+        for (long value : table) {
+            if (value != 0) {
+                values[n++] = value;
+            }
+        }
+        return values;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        table = new long[capacity];
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value != 0) {
+                int i = slot(value, mask);
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    private static int slot(long fingerprint, int mask) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+}
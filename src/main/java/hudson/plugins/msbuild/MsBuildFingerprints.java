@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Sorted arrays of distinct 64-bit fingerprints, used to find the warnings of
+ * a build that were not in a reference build.
+ * <p>
+ * A build with 100,000 warnings takes 800 KB, and comparing two builds is a
+ * single merge of their arrays.
+ */
+final class MsBuildFingerprints {
+
+    private static final int MAGIC = 0x4D534246; // "MSBF"
+    private static final int VERSION = 1;
+
+    private MsBuildFingerprints() {
+    }
+
+    /**
+     * Sort the first values of the array and remove the duplicates.
+     *
+     * @return the sorted distinct values, which may be the given array
+     */
+    static long[] sortDistinct(long[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n == 0 || values[i] != values[n - 1]) {
+                values[n++] = values[i];
+            }
+        }
+        return n == values.length ? values : Arrays.copyOf(values, n);
+    }
+
+    /**
+     * @param current   sorted distinct fingerprints
+     * @param reference sorted distinct fingerprints
+     * @return the number of fingerprints of {@code current} missing from
+     *         {@code reference}
+     */
+    static int countNew(long[] current, long[] reference) {
+        int count = 0;
+        int j = 0;
+        for (long value : current) {
+            while (j < reference.length && reference[j] < value) {
+                j++;
+            }
+            if (j == reference.length || reference[j] != value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static void write(File file, long[] sorted) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeByte(VERSION);
+            data.writeInt(sorted.length);
+            for (long value : sorted) {
+                data.writeLong(value);
+            }
+            data.flush();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static long[] read(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not an MSBuild fingerprint file");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported MSBuild fingerprint version " + version);
+            }
+            int length = data.readInt();
+            if (length < 0 || length > file.length() / Long.BYTES) {
+                throw new IOException("Invalid number of fingerprints " + length);
+            }
+            long[] sorted = new long[length];
+            for (int i = 0; i < length; i++) {
+                sorted[i] = data.readLong();
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,851 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Fingerprint of the inputs of an MSBuild step, computed on the agent from
+ * its working directory.
+ * <p>
+ * The inputs are the files under the directories of the solution or project
+ * and of the projects it references, except for the build outputs, plus the
+ * {@code Directory.Build.*} and similar files found in their parent
+ * directories, and the files the projects import or include from elsewhere,
+ * e.g. {@code <Import Project="..\common.targets" />} or
+ * {@code <Compile Include="..\Shared\*.cs" />}. The MSBuild command line is
+ * hashed along with them. The imports from the MSBuild installation are part
+ * of the command line; a path depending on any other property cannot be
+ * resolved, and the inputs are then never considered unchanged.
+ * <p>
+ * The hashes of the files are kept in a cache file with their size and last
+ * modification time, so that only the files changed since the last check are
+ * read again, in parallel. Next to it, {@link Record} keeps the fingerprint of
+ * the last successful build in the same workspace with the output directories
+ * it left, the inputs being unchanged only if both are still there.
+ */
+final class MsBuildInputs extends MasterToSlaveFileCallable<MsBuildInputs.Result> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** The directories of build outputs and tools, never inputs. */
+    private static final Set<String> IGNORED_DIRECTORIES = Set.of("bin", "obj", ".git", ".svn", ".hg", ".vs",
+            "TestResults", "node_modules", "ipch");
+
+    /** The files written by the builds of C++ projects next to their outputs, never inputs. */
+    private static final List<String> IGNORED_EXTENSIONS = List.of(".tlog", ".lastbuildstate", ".pdb", ".ipch",
+            ".idb", ".ilk", ".iobj", ".ipdb", ".sdf", ".opendb", ".vc.db");
+
+    /**
+     * The directories of build outputs, checked for still being there before skipping a build, along with the
+     * ones of the C++ projects.
+     */
+    private static final List<String> OUTPUT_DIRECTORIES = List.of("bin", "obj");
+
+    /** The files imported implicitly from the parent directories. */
+    private static final List<String> IMPLICIT_IMPORTS = List.of("Directory.Build.props", "Directory.Build.targets",
+            "Directory.Build.rsp", "Directory.Packages.props", "Directory.Solution.props",
+            "Directory.Solution.targets", "global.json", "NuGet.config", "nuget.config");
+
+    /** The items whose files are inputs of the build wherever they are, along with {@code Import}. */
+    private static final Set<String> INPUT_ITEMS = Set.of("Compile", "None", "Content", "EmbeddedResource",
+            "Resource", "Page", "ClCompile", "ClInclude", "ResourceCompile", "ProjectReference");
+
+    /** The properties of the output directories of C++ projects, relative to the project. */
+    private static final Set<String> OUTPUT_PROPERTIES = Set.of("OutDir", "IntDir");
+
+    /** The properties of the directories of the MSBuild installation, which is hashed with the command line. */
+    private static final List<String> TOOLSET_PROPERTIES = List.of("$(msbuildtoolspath)", "$(msbuildbinpath)",
+            "$(msbuildextensionspath)", "$(msbuildextensionspath32)", "$(msbuildextensionspath64)",
+            "$(msbuildsdkspath)", "$(msbuildframeworktoolspath)", "$(vctargetspath)", "$(vstoolspath)");
+
+    private static final Pattern SOLUTION_PROJECT = Pattern.compile(
+            "^Project\\(\"[^\"]*\"\\)\\s*=\\s*\"[^\"]*\"\\s*,\\s*\"([^\"]+)\"", Pattern.MULTILINE);
+
+    private final String msBuildFile;
+    private final String commandLine;
+    private final String cacheFile;
+    private final Set<String> excluded;
+
+    /**
+     * @param msBuildFile the solution or project, relative to the working
+     *                    directory, or {@code null} for the one MSBuild finds
+     *                    in it
+     * @param commandLine everything else than the files that makes a build
+     *                    different, e.g. the arguments and the installation
+     * @param cacheFile   the file where the hashes of the files are kept
+     * @param excluded    files written by the step itself, e.g. the SARIF file
+     */
+    MsBuildInputs(String msBuildFile, String commandLine, String cacheFile, Set<String> excluded) {
+        this.msBuildFile = msBuildFile;
+        this.commandLine = commandLine;
+        this.cacheFile = cacheFile;
+        this.excluded = new HashSet<>(excluded);
+    }
+
+    @Override
+    public Result invoke(File pwd, VirtualChannel channel) throws IOException {
+        Collector collector = new Collector();
+        Path dir = pwd.toPath().toAbsolutePath().normalize();
+        Path start = msBuildFile != null ? dir.resolve(msBuildFile).normalize() : findProject(dir);
+        if (start != null && Files.isRegularFile(start)) {
+            collector.collect(start);
+        } else {
+            collector.roots.add(dir);
+        }
+        Set<Path> roots = collector.roots;
+        Set<Path> files = collector.files;
+        Set<Path> outputDirectories = collector.getOutputDirectories();
+        for (Path root : roots) {
+            collectImplicitImports(root, files);
+            collectFiles(root, null, outputDirectories, files);
+        }
+        files.removeIf(f -> excluded.contains(f.toString()) || isBuildFile(f)
+                || outputDirectories.stream().anyMatch(f::startsWith));
+
+        Path cache = cacheFile != null ? new File(cacheFile).toPath() : null;
+        Map<String, Entry> previous = cache != null ? readCache(cache) : new HashMap<>();
+        Map<String, Entry> current = new TreeMap<>();
+        for (Path file : files) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            String path = file.toString();
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            Entry entry = previous.get(path);
+            current.put(path, entry != null && entry.size == size && entry.modified == modified
+                    ? entry : new Entry(size, modified, null));
+        }
+
+        AtomicInteger hashed = new AtomicInteger();
+        try {
+            current.entrySet().parallelStream().filter(e -> e.getValue().hash == null).forEach(e -> {
+                e.getValue().hash = hash(Path.of(e.getKey()));
+                hashed.incrementAndGet();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (cache != null) {
+            writeCache(cache, current);
+        }
+        Set<String> outputs = new TreeSet<>();
+        for (Path root : roots) {
+            for (String name : OUTPUT_DIRECTORIES) {
+                outputs.add(root.resolve(name).toString());
+            }
+        }
+        for (Path output : outputDirectories) {
+            outputs.add(output.toString());
+        }
+
+        MessageDigest digest = newDigest();
+        digest.update(commandLine.getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, Entry> e : current.entrySet()) {
+            digest.update((byte) 0);
+            digest.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(e.getValue().hash.getBytes(StandardCharsets.US_ASCII));
+        }
+        String fingerprint = toHex(digest.digest());
+        String unchangedSince = cacheFile != null && collector.unresolved == null
+                ? readLast(Path.of(lastFile(cacheFile)), fingerprint) : null;
+        return new Result(fingerprint, current.size(), hashed.get(), new ArrayList<>(outputs), unchangedSince,
+                collector.unresolved);
+    }
+
+    /**
+     * @return the file keeping the last successful build in the workspace of
+     *         the given cache
+     */
+    static String lastFile(String cacheFile) {
+        return cacheFile + ".last";
+    }
+
+    /**
+     * Read the last successful build: its fingerprint, its name and the
+     * output directories it left, one per line.
+     *
+     * @return the name of the build if it had the given fingerprint and its
+     *         outputs are all still there, otherwise {@code null}
+     */
+    static String readLast(Path last, String fingerprint) {
+        if (!Files.isRegularFile(last)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(last, StandardCharsets.UTF_8);
+            // No outputs left, e.g. they went elsewhere: nothing proves the build can be skipped
+            if (lines.size() < 3 || !lines.get(0).equals(fingerprint)) {
+                return null;
+            }
+            for (String output : lines.subList(2, lines.size())) {
+                if (!isNotEmptyDirectory(Path.of(output))) {
+                    return null;
+                }
+            }
+            return lines.get(1);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNotEmptyDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try (Stream<Path> children = Files.list(dir)) {
+            return children.findAny().isPresent();
+        }
+    }
+
+    /**
+     * @return the solution or project MSBuild builds in a directory when none
+     *         is given, if there is only one
+     */
+    private static Path findProject(Path dir) throws IOException {
+        try (Stream<Path> children = Files.list(dir)) {
+            List<Path> found = children.filter(f -> {
+                String name = f.getFileName().toString().toLowerCase(Locale.ROOT);
+                return (name.endsWith(".sln") || name.endsWith("proj")) && Files.isRegularFile(f);
+            }).limit(2).toList();
+            return found.size() == 1 ? found.get(0) : null;
+        }
+    }
+
+    private static void collectImplicitImports(Path root, Set<Path> files) {
+        for (Path dir = root.getParent(); dir != null; dir = dir.getParent()) {
+            for (String name : IMPLICIT_IMPORTS) {
+                Path file = dir.resolve(name);
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param pattern the files to collect, relative to the root with
+     *                {@code /} separators, or {@code null} for all of them
+     * @param skipped the output directories not to walk
+     */
+    private static void collectFiles(Path root, Pattern pattern, Set<Path> skipped, Set<Path> files)
+            throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                Path name = dir.getFileName();
+                if (!dir.equals(root) && name != null && (IGNORED_DIRECTORIES.contains(name.toString())
+                        || isBuildFile(dir) || skipped.contains(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !isBuildFile(file) && (pattern == null || pattern.matcher(
+                        root.relativize(file).toString().replace(File.separatorChar, '/')).matches())) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @param wildcard a path relative to a directory, with the {@code *},
+     *                 {@code ?} and {@code **} wildcards of MSBuild
+     * @return the pattern of the paths it matches, with {@code /} separators
+     */
+    static Pattern toPattern(String wildcard) {
+        StringBuilder regex = new StringBuilder();
+        String[] segments = wildcard.split("[/\\\\]");
+        for (int i = 0; i < segments.length; i++) {
+            boolean last = i == segments.length - 1;
+            if (segments[i].equals("**")) {
+                // any number of directories, or anything if it ends the path
+                regex.append(last ? ".*" : "(?:[^/]*/)*");
+                continue;
+            }
+            for (char c : segments[i].toCharArray()) {
+                if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            if (!last) {
+                regex.append('/');
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Read the {@code Import}s of a project or of an imported file, the
+     * {@code Include}s of the {@link #INPUT_ITEMS} and of the
+     * {@code ProjectConfiguration}s, and the {@link #OUTPUT_PROPERTIES}.
+     *
+     * @return the names of the elements and the paths they refer to
+     */
+    static List<Map.Entry<String, String>> parseReferences(InputStream in, XMLInputFactory factory)
+            throws XMLStreamException {
+        List<Map.Entry<String, String>> references = new ArrayList<>();
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                String path = null;
+                if (name.equals("Import")) {
+                    // the imports of an SDK come with the installation
+                    if (reader.getAttributeValue(null, "Sdk") == null) {
+                        path = reader.getAttributeValue(null, "Project");
+                    }
+                } else if (INPUT_ITEMS.contains(name) || name.equals("ProjectConfiguration")) {
+                    path = reader.getAttributeValue(null, "Include");
+                } else if (OUTPUT_PROPERTIES.contains(name)) {
+                    path = reader.getElementText();
+                }
+                if (path != null) {
+                    for (String item : path.split(";")) {
+                        item = item.trim();
+                        // items built from other items or their metadata are read where those are declared
+                        if (!item.isEmpty() && !item.contains("@(") && !item.contains("%(")) {
+                            references.add(Map.entry(name, item));
+                        }
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return references;
+    }
+
+    private static String hash(Path file) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted while checking, it will not match the next time
+            return "";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Read the cache, one file per line: hash, size, last modification time
+     * and path, separated by tabs. A damaged cache is ignored.
+     */
+    static Map<String, Entry> readCache(Path cache) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.isRegularFile(cache)) {
+            return entries;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(cache, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length == 4) {
+                    entries.put(fields[3], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private static void writeCache(Path cache, Map<String, Entry> entries) throws IOException {
+        Files.createDirectories(cache.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(cache.toAbsolutePath().getParent(), "inputs", ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    writer.write(entry.hash + "\t" + entry.size + "\t" + entry.modified + "\t" + e.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Finds the directories of a solution or project and of the projects it
+     * references, transitively, and the files they import or include from
+     * elsewhere.
+     */
+    private static final class Collector {
+        private final XMLInputFactory factory = MsBuildProjectGraph.newFactory();
+        private final Set<Path> roots = new HashSet<>();
+        private final Set<Path> files = new HashSet<>();
+        private final Set<Path> read = new HashSet<>();
+        private final Deque<Path> projects = new ArrayDeque<>();
+        /** The configurations of the C++ projects, e.g. {@code Debug|x64}. */
+        private final Set<String> configurations = new HashSet<>();
+        private final Set<Path> configuredProjects = new HashSet<>();
+        /** The output directories of the C++ projects by project directory, before the configuration is set. */
+        private final List<Map.Entry<Path, String>> configuredOutputs = new ArrayList<>();
+        private Path solutionDir;
+        /** The first path that could not be resolved, if any. */
+        private String unresolved;
+
+        void collect(Path start) throws IOException {
+            if (start.toString().toLowerCase(Locale.ROOT).endsWith(".sln")) {
+                files.add(start);
+                solutionDir = start.getParent();
+                String content = new String(Files.readAllBytes(start), StandardCharsets.UTF_8);
+                Matcher m = SOLUTION_PROJECT.matcher(content);
+                while (m.find()) {
+                    String path = m.group(1);
+                    if (!path.contains("$(") && !path.startsWith("http:") && !path.startsWith("https:")) {
+                        projects.add(solutionDir.resolve(toLocalPath(path)).normalize());
+                    }
+                }
+            } else {
+                projects.add(start);
+            }
+            while (!projects.isEmpty()) {
+                Path project = projects.poll();
+                if (!Files.isRegularFile(project) || !read.add(project)) {
+                    continue;
+                }
+                files.add(project);
+                Path dir = project.getParent();
+                if (roots.add(dir)) {
+                    // the implicit imports may import more
+                    for (Path d = dir; d != null; d = d.getParent()) {
+                        for (String name : IMPLICIT_IMPORTS) {
+                            Path file = d.resolve(name);
+                            if (name.endsWith(".props") || name.endsWith(".targets")) {
+                                readImport(file, dir);
+                            }
+                        }
+                    }
+                }
+                read(project, dir);
+            }
+            if (solutionDir != null) {
+                roots.add(solutionDir);
+            }
+        }
+
+        private void readImport(Path file, Path projectDir) throws IOException {
+            if (Files.isRegularFile(file) && read.add(file)) {
+                files.add(file);
+                read(file, projectDir);
+            }
+        }
+
+        /**
+         * @param file       a project or a file it imports
+         * @param projectDir the directory of the project, the items being
+         *                   relative to it
+         */
+        private void read(Path file, Path projectDir) throws IOException {
+            List<Map.Entry<String, String>> references;
+            try (InputStream in = Files.newInputStream(file)) {
+                references = parseReferences(in, factory);
+            } catch (XMLStreamException e) {
+                setUnresolved(file + " (" + e.getMessage() + ")");
+                return;
+            }
+            for (Map.Entry<String, String> reference : references) {
+                if (reference.getKey().equals("ProjectConfiguration")) {
+                    configurations.add(reference.getValue());
+                    configuredProjects.add(projectDir);
+                    continue;
+                }
+                if (OUTPUT_PROPERTIES.contains(reference.getKey())) {
+                    String path = expand(reference.getValue(), file, projectDir);
+                    if (path != null) {
+                        configuredOutputs.add(Map.entry(projectDir, toLocalPath(path)));
+                    }
+                    continue;
+                }
+                boolean isImport = reference.getKey().equals("Import");
+                // the imports are relative to the file importing them
+                Path dir = isImport ? file.getParent() : projectDir;
+                String path = expand(reference.getValue(), file, projectDir);
+                if (path == null) {
+                    continue;
+                }
+                if (path.contains("$(")) {
+                    setUnresolved(reference.getValue() + " in " + file);
+                    continue;
+                }
+                path = toLocalPath(path);
+                List<Path> found = new ArrayList<>();
+                int wildcard = indexOfWildcard(path);
+                if (wildcard >= 0) {
+                    int separator = path.lastIndexOf(File.separatorChar, wildcard) + 1;
+                    Path base = dir.resolve(path.substring(0, separator)).normalize();
+                    // the items of the directory of the project are all collected already
+                    if (!isImport && base.startsWith(projectDir)) {
+                        continue;
+                    }
+                    Set<Path> matches = new HashSet<>();
+                    collectFiles(base, toPattern(path.substring(separator)), Collections.emptySet(), matches);
+                    found.addAll(matches);
+                } else {
+                    found.add(dir.resolve(path).normalize());
+                }
+                for (Path resolved : found) {
+                    if (reference.getKey().equals("ProjectReference")) {
+                        projects.add(resolved);
+                    } else if (isImport) {
+                        readImport(resolved, projectDir);
+                    } else if (Files.isRegularFile(resolved) && !isOutput(projectDir, resolved)) {
+                        files.add(resolved);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Replace the properties of the paths of the file and of the project.
+         *
+         * @return the path, {@code null} if it is in the MSBuild installation
+         */
+        private String expand(String path, Path file, Path projectDir) {
+            String lowerCase = path.toLowerCase(Locale.ROOT);
+            for (String property : TOOLSET_PROPERTIES) {
+                if (lowerCase.startsWith(property)) {
+                    return null;
+                }
+            }
+            path = replace(path, "$(MSBuildThisFileDirectory)", file.getParent() + File.separator);
+            path = replace(path, "$(MSBuildProjectDirectory)", projectDir.toString());
+            path = replace(path, "$(ProjectDir)", projectDir + File.separator);
+            if (solutionDir != null) {
+                path = replace(path, "$(SolutionDir)", solutionDir + File.separator);
+            }
+            return path;
+        }
+
+        /**
+         * @return the directories where the C++ projects write their outputs
+         *         and intermediate files: the ones configured and, by default,
+         *         {@code <Configuration>} and {@code <Platform>\<Configuration>}
+         *         under the directories of the solution and of the projects
+         */
+        Set<Path> getOutputDirectories() {
+            Set<Path> dirs = new HashSet<>();
+            Set<Path> bases = new HashSet<>(configuredProjects);
+            if (solutionDir != null && !configuredProjects.isEmpty()) {
+                bases.add(solutionDir);
+            }
+            for (String configuration : configurations) {
+                String[] parts = configuration.split("\\|", 2);
+                if (parts.length < 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                    continue;
+                }
+                try {
+                    for (Path base : bases) {
+                        dirs.add(base.resolve(parts[0]).normalize());
+                        dirs.add(base.resolve(parts[1]).resolve(parts[0]).normalize());
+                    }
+                    for (Map.Entry<Path, String> output : configuredOutputs) {
+                        String path = replace(replace(output.getValue(), "$(Configuration)", parts[0]),
+                                "$(Platform)", parts[1]);
+                        // depending on other properties, their files are hashed and never unchanged
+                        if (!path.contains("$(") && !path.isBlank()) {
+                            dirs.add(output.getKey().resolve(path).normalize());
+                        }
+                    }
+                } catch (InvalidPathException e) {
+                    // not a directory name
+                }
+            }
+            return dirs;
+        }
+
+        private void setUnresolved(String reference) {
+            if (unresolved == null) {
+                unresolved = reference;
+            }
+        }
+    }
+
+    private static String replace(String s, String property, String value) {
+        return Pattern.compile(Pattern.quote(property), Pattern.CASE_INSENSITIVE).matcher(s)
+                .replaceAll(Matcher.quoteReplacement(value));
+    }
+
+    private static int indexOfWildcard(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '*' || path.charAt(i) == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether a file is under an output or tool directory, e.g. an
+     *         item generated in {@code obj}
+     */
+    private static boolean isOutput(Path projectDir, Path file) {
+        for (Path name : projectDir.relativize(file)) {
+            if (IGNORED_DIRECTORIES.contains(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether a file or directory is written by the build of a C++
+     *         project, e.g. its {@code .tlog} tracking files
+     */
+    private static boolean isBuildFile(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String lowerCase = name.toString().toLowerCase(Locale.ROOT);
+        for (String extension : IGNORED_EXTENSIONS) {
+            if (lowerCase.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toLocalPath(String path) {
+        return path.replace('\\', File.separatorChar);
+    }
+
+    /**
+     * Records a successful build in the workspace, with the output
+     * directories it left.
+     */
+    static final class Record extends MasterToSlaveFileCallable<Void> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheFile;
+        private final String fingerprint;
+        private final String build;
+        private final List<String> outputs;
+
+        /**
+         * @param cacheFile   the cache of the workspace, as given to
+         *                    {@link MsBuildInputs}
+         * @param fingerprint the fingerprint of the inputs that were built
+         * @param build       the name of the build, for the log of the next
+         *                    ones
+         * @param outputs     the output directories that may have been
+         *                    written, see {@link Result#getOutputs()}
+         */
+        Record(String cacheFile, String fingerprint, String build, List<String> outputs) {
+            this.cacheFile = cacheFile;
+            this.fingerprint = fingerprint;
+            this.build = build;
+            this.outputs = new ArrayList<>(outputs);
+        }
+
+        @Override
+        public Void invoke(File pwd, VirtualChannel channel) throws IOException {
+            Path last = Path.of(lastFile(cacheFile)).toAbsolutePath();
+            List<String> lines = new ArrayList<>();
+            lines.add(fingerprint);
+            lines.add(build.replaceAll("[\\r\\n]+", " "));
+            for (String output : outputs) {
+                if (isNotEmptyDirectory(Path.of(output))) {
+                    lines.add(output);
+                }
+            }
+            Files.createDirectories(last.getParent());
+            Path tmp = Files.createTempFile(last.getParent(), "inputs", ".tmp");
+            try {
+                Files.write(tmp, lines, StandardCharsets.UTF_8);
+                Files.move(tmp, last, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The hash of a file, {@code null} until it is computed.
+     */
+    static final class Entry {
+        final long size;
+        final long modified;
+        volatile String hash;
+
+        Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * The fingerprint, with the number of files it covers, the number of
+     * them that had to be read and the last successful build in the same
+     * workspace if it built the same inputs.
+     */
+    static final class Result implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String fingerprint;
+        private final int files;
+        private final int hashed;
+        private final List<String> outputs;
+        private final String unchangedSince;
+        private final String unresolved;
+
+        Result(String fingerprint, int files, int hashed, List<String> outputs, String unchangedSince,
+                String unresolved) {
+            this.fingerprint = fingerprint;
+            this.files = files;
+            this.hashed = hashed;
+            this.outputs = new ArrayList<>(outputs);
+            this.unchangedSince = unchangedSince;
+            this.unresolved = unresolved;
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        int getFiles() {
+            return files;
+        }
+
+        int getHashed() {
+            return hashed;
+        }
+
+        /**
+         * @return the {@code bin} and {@code obj} directories of the solution
+         *         or project and of the projects it references, and the output
+         *         directories of its C++ projects
+         */
+        List<String> getOutputs() {
+            return outputs;
+        }
+
+        /**
+         * @return the name of the last successful build in the workspace if
+         *         it had the same fingerprint and its outputs are still there,
+         *         otherwise {@code null}
+         */
+        String getUnchangedSince() {
+            return unchangedSince;
+        }
+
+        /**
+         * @return a path imported or included by the projects that could not
+         *         be resolved, e.g. depending on a property, the inputs being
+         *         then never unchanged, or {@code null}
+         */
+        String getUnresolved() {
+            return unresolved;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+/**
+ * Single pass scan for the keywords of {@link MSBuildErrorNote#PATTERN} and
+ * {@link MSBuildWarningNote#PATTERN}.
+ * <p>
+ * A line can only match one of these patterns if it contains the matching
+ * keyword followed by a whitespace, so the patterns only need to run on the
+ * lines flagged here.
+ */
+final class MsBuildKeywordFilter {
+    /** The line contains "error" or "Error" followed by a whitespace. */
+    static final int ERROR = 1;
+    /** The line contains "warning" or "Warning" followed by a whitespace. */
+    static final int WARNING = 2;
+
+    private MsBuildKeywordFilter() {
+    }
+
+    /**
+     * @return a combination of {@link #ERROR} and {@link #WARNING}
+     */
+    static int scan(CharSequence line) {
+        int found = 0;
+        int len = line.length();
+        // i is the position of the second letter of the keyword
+        for (int i = 1; i < len && found != (ERROR | WARNING); i++) {
+            char c = line.charAt(i);
+            if (c == 'r') {
+                if ((found & ERROR) == 0 && follows(line, i, "rror") && isFirstLetter(line.charAt(i - 1), 'e')) {
+                    found |= ERROR;
+                }
+            } else if (c == 'a') {
+                if ((found & WARNING) == 0 && follows(line, i, "arning") && isFirstLetter(line.charAt(i - 1), 'w')) {
+                    found |= WARNING;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Whether the line contains the given text at the given position, followed
+     * by a whitespace.
+     */
+    private static boolean follows(CharSequence line, int start, String text) {
+        int end = start + text.length();
+        if (end >= line.length()) {
+            return false;
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return isWhitespace(line.charAt(end));
+    }
+
+    private static boolean isFirstLetter(char c, char lowerCase) {
+        return c == lowerCase || c == Character.toUpperCase(lowerCase);
+    }
+
+    /** Same characters as {@code \s} in the patterns. */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Outcome of an MSBuild execution: its exit code and what was found in its
+ * output.
+ * <p>
+ * This is all that crosses the channel when the output is parsed on the agent,
+ * see {@link MsBuildAgentLaunch}.
+ */
+final class MsBuildLaunchResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int exitCode;
+    private final int numberOfWarnings;
+    private final int numberOfErrors;
+    private final MsBuildDiagnostics diagnostics;
+    private final MsBuildPerformanceSummary performanceSummary;
+    private final MsBuildLogIndex logIndex;
+
+    MsBuildLaunchResult(int exitCode, int numberOfWarnings, int numberOfErrors, MsBuildDiagnostics diagnostics,
+            MsBuildPerformanceSummary performanceSummary, MsBuildLogIndex logIndex) {
+        this.exitCode = exitCode;
+        this.numberOfWarnings = numberOfWarnings;
+        this.numberOfErrors = numberOfErrors;
+        this.diagnostics = diagnostics;
+        this.performanceSummary = performanceSummary;
+        this.logIndex = logIndex;
+    }
+
+    int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * @see MsBuildConsoleProcessor#getNumberOfWarnings()
+     */
+    int getNumberOfWarnings() {
+        return numberOfWarnings;
+    }
+
+    /**
+     * @see MsBuildConsoleProcessor#getNumberOfErrors()
+     */
+    int getNumberOfErrors() {
+        return numberOfErrors;
+    }
+
+    MsBuildDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    MsBuildPerformanceSummary getPerformanceSummary() {
+        return performanceSummary;
+    }
+
+    /**
+     * @return where the error and warning lines are in the output of MSBuild,
+     *         {@code null} if it was not indexed, see {@link #merge}
+     */
+    MsBuildLogIndex getLogIndex() {
+        return logIndex;
+    }
+
+    /**
+     * Combine the results of MSBuild processes run at the same time. Their
+     * output being interleaved in the build log, the errors and warnings
+     * cannot be located in it and the result has no log index.
+     *
+     * @param results the results, {@code null} for the processes that were
+     *                stopped
+     * @return the first failed exit code, if any, and all that was found
+     */
+    static MsBuildLaunchResult merge(List<MsBuildLaunchResult> results) {
+        int exitCode = 0;
+        int numberOfWarnings = 0;
+        int numberOfErrors = 0;
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        MsBuildPerformanceSummary performanceSummary = new MsBuildPerformanceSummary();
+        for (MsBuildLaunchResult result : results) {
+            if (result == null) {
+                continue;
+            }
+            if (exitCode == 0) {
+                exitCode = result.exitCode;
+            }
+            numberOfWarnings += result.numberOfWarnings;
+            numberOfErrors += result.numberOfErrors;
+            diagnostics.addAll(result.diagnostics);
+            performanceSummary.addAll(result.performanceSummary);
+        }
+        return new MsBuildLaunchResult(exitCode, numberOfWarnings, numberOfErrors, diagnostics, performanceSummary,
+                null);
+    }
+
+    /**
+     * Run MSBuild, writing its annotated output to the listener.
+     *
+     * @param starter   the MSBuild process, its output not set yet
+     * @param binaryLog the binary log MSBuild was asked to write, or
+     *                  {@code null}
+     * @param sarifFile the SARIF file to write the errors and warnings to, or
+     *                  {@code null}
+     */
+    static MsBuildLaunchResult launch(Launcher.ProcStarter starter, TaskListener listener, Charset charset,
+            FilePath binaryLog, FilePath sarifFile, MsBuildConsoleOptions options)
+            throws IOException, InterruptedException {
+        OutputStream log = listener.getLogger();
+        MsBuildConsolePump pump = null;
+        if (options.getBufferSize() > 0) {
+            pump = new MsBuildConsolePump(log, options.getBufferSize(), options.getOverflow(), "MSBuild console pump");
+            log = pump;
+        }
+        // Find the number of Warnings/Errors and annotate the output in a single pass
+        MsBuildConsoleProcessor processor = new MsBuildConsoleProcessor(log, charset, options.getMaxLineLength());
+        processor.setWriteNotes(options.isWriteNotes());
+        MsBuildFailFast.Stopper stopper = null;
+        if (options.getFailFast() != null) {
+            stopper = new MsBuildFailFast.Stopper(listener);
+            processor.setFailFast(options.getFailFast(), stopper::stop);
+        }
+        MsBuildSarifWriter sarif = null;
+        int r;
+        try {
+            if (sarifFile != null) {
+                sarif = new MsBuildSarifWriter(sarifFile.write());
+                processor.getDiagnostics().setListener(sarif);
+            }
+            Proc proc = starter.stdout(processor).start();
+            if (stopper != null) {
+                stopper.setProc(proc);
+            }
+            r = proc.join();
+            processor.finish();
+        } finally {
+            if (pump != null) {
+                pump.finish();
+            }
+            if (sarif != null) {
+                closeSarif(sarif, sarifFile, listener);
+            }
+        }
+        if (stopper != null && stopper.getReason() != null) {
+            // logged once the output is, to come after the line that triggered it
+            listener.getLogger().println("> Stopped MSBuild because of " + stopper.getReason() + ".");
+        }
+        if (processor.getLongLines() > 0) {
+            listener.getLogger().printf("> %d line(s) longer than %d KB were only scanned for errors and warnings "
+                    + "up to that length.%n", processor.getLongLines(), options.getMaxLineLength() / 1024);
+        }
+        if (pump != null && (pump.getStallTime() > 0 || pump.getSpilledBytes() > 0)) {
+            listener.getLogger().printf("> The build log was slower than MSBuild: MSBuild waited %d ms, %d KB were "
+                    + "buffered at most and %d KB spilled to disk.%n", pump.getStallTime(), pump.getPeakSize() / 1024,
+                    pump.getSpilledBytes() / 1024);
+        }
+
+        if (binaryLog != null) {
+            MsBuildDiagnostics fromBinaryLog = readBinaryLog(binaryLog, listener);
+            if (fromBinaryLog != null) {
+                return new MsBuildLaunchResult(r, fromBinaryLog.count(MsBuildDiagnostics.Severity.WARNING),
+                        fromBinaryLog.count(MsBuildDiagnostics.Severity.ERROR), fromBinaryLog,
+                        processor.getPerformanceSummary(), processor.getLogIndex());
+            }
+        }
+        return new MsBuildLaunchResult(r, processor.getNumberOfWarnings(), processor.getNumberOfErrors(),
+                processor.getDiagnostics(), processor.getPerformanceSummary(), processor.getLogIndex());
+    }
+
+    private static void closeSarif(MsBuildSarifWriter sarif, FilePath sarifFile, TaskListener listener) {
+        try {
+            sarif.close();
+            listener.getLogger().printf("> Wrote %d error(s) and warning(s) to %s.%n", sarif.getResults(),
+                    sarifFile.getRemote());
+        } catch (IOException e) {
+            listener.getLogger().println("> Failed to write " + sarifFile.getRemote() + ": " + e);
+        }
+    }
+
+    /**
+     * @return the errors and warnings of the binary log, or {@code null} if it
+     *         cannot be read
+     */
+    private static MsBuildDiagnostics readBinaryLog(FilePath binaryLog, TaskListener listener)
+            throws InterruptedException {
+        try {
+            if (binaryLog.length() == 0) {
+                listener.getLogger().println("> MSBuild did not write the binary log, using the console output.");
+                return null;
+            }
+            try (InputStream in = binaryLog.read()) {
+                return MsBuildBinaryLogReader.readDiagnostics(in);
+            }
+        } catch (IOException e) {
+            listener.getLogger().println("> Failed to read the binary log, using the console output: " + e);
+            return null;
+        } finally {
+            try {
+                binaryLog.delete();
+            } catch (IOException e) {
+                listener.getLogger().println("> Failed to delete " + binaryLog.getRemote() + ": " + e);
+            }
+        }
+    }
+}
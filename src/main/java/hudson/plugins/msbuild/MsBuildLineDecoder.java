@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Decodes the lines of the console output, reusing its buffers from one line
+ * to the next.
+ * <p>
+ * Lines made of ASCII characters only are not decoded at all when the charset
+ * leaves them as is: the returned sequence reads the bytes directly. Other
+ * lines go through a {@link CharsetDecoder} and a {@link CharBuffer} kept for
+ * the whole stream. Either way, nothing is allocated for a line unless a part
+ * of it is turned into a {@link String}.
+ */
+final class MsBuildLineDecoder {
+
+    private final CharsetDecoder decoder;
+    private final boolean asciiAsIs;
+    private final AsciiLine asciiLine = new AsciiLine();
+
+    /** The last array of bytes, which the line stream reuses for every line. */
+    private byte[] bytes;
+    private ByteBuffer byteBuffer;
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    MsBuildLineDecoder(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiAsIs = decodesAsciiAsIs(charset);
+    }
+
+    /**
+     * @param b   the raw line, possibly with its end of line characters
+     * @param len the length of the line
+     * @return the line without its end of line characters, only valid until the
+     *         next call
+     */
+    CharSequence decode(byte[] b, int len) {
+        if (asciiAsIs) {
+            int end = len;
+            while (end > 0 && (b[end - 1] == '\n' || b[end - 1] == '\r')) {
+                end--;
+            }
+            if (isAscii(b, end)) {
+                asciiLine.set(b, end);
+                return asciiLine;
+            }
+        }
+        return decodeChars(b, len);
+    }
+
+    private CharSequence decodeChars(byte[] b, int len) {
+        if (b != bytes) {
+            bytes = b;
+            byteBuffer = ByteBuffer.wrap(b);
+        }
+        byteBuffer.limit(len).position(0);
+        int max = (int) Math.ceil(len * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < max) {
+            chars = CharBuffer.allocate(Math.max(max, chars.capacity() * 2));
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(byteBuffer, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        int end = chars.limit();
+        while (end > 0 && (chars.get(end - 1) == '\n' || chars.get(end - 1) == '\r')) {
+            end--;
+        }
+        chars.limit(end);
+        return chars;
+    }
+
+    private static boolean isAscii(byte[] b, int len) {
+        for (int i = 0; i < len; i++) {
+            if (b[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every byte below 0x80 is decoded to the character with the same
+     * code, on its own. This excludes the charsets with more than one byte per
+     * character, such as UTF-16, and the ones with escape sequences, such as
+     * ISO-2022-JP.
+     */
+    static boolean decodesAsciiAsIs(Charset charset) {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        CharBuffer decoded;
+        try {
+            decoded = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(ascii));
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+        if (decoded.remaining() != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length; i++) {
+            if (decoded.get(i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A line of ASCII bytes seen as characters.
+     */
+    private static final class AsciiLine implements CharSequence {
+        private byte[] bytes;
+        private int length;
+
+        void set(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes[Objects.checkIndex(index, length)];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, length);
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Splits the output in lines like
+ * {@link hudson.console.LineTransformationOutputStream}, but keeps at most
+ * {@code maxLineLength} bytes of a line, end of line included.
+ * <p>
+ * A longer line is handed to {@link #eol} as soon as that many bytes are
+ * buffered, and the rest of it, up to and including its end of line, to
+ * {@link #tail} as it comes, so neither the memory used nor the time spent
+ * scanning a line depend on its length. The bytes are also searched for the
+ * end of lines in bulk rather than one by one.
+ */
+abstract class MsBuildLineSplitter extends OutputStream {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int maxLineLength;
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int count;
+    /** Whether the bytes written are the tail of a line longer than the limit. */
+    private boolean inTail;
+    private int longLines;
+
+    /**
+     * @param maxLineLength the maximum number of bytes kept of a line, 0 for
+     *                      no limit
+     */
+    MsBuildLineSplitter(int maxLineLength) {
+        this.maxLineLength = maxLineLength > 0 ? maxLineLength : Integer.MAX_VALUE - 8;
+    }
+
+    /**
+     * Called for each line, with its end of line characters, or with the
+     * beginning of a line longer than the limit.
+     *
+     * @param b   the line, only valid until this method returns
+     * @param len the length of the line
+     */
+    protected abstract void eol(byte[] b, int len) throws IOException;
+
+    /**
+     * Called with what comes after the beginning of a line longer than the
+     * limit, possibly in several parts, the last one ending with the end of
+     * line character.
+     */
+    protected abstract void tail(byte[] b, int off, int len) throws IOException;
+
+    /**
+     * @return the number of lines longer than the limit so far
+     */
+    int getLongLines() {
+        return longLines;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end) {
+            if (inTail) {
+                int nl = indexOfNewLine(b, off, end);
+                int tailEnd = nl < 0 ? end : nl + 1;
+                tail(b, off, tailEnd - off);
+                off = tailEnd;
+                inTail = nl < 0;
+                continue;
+            }
+            int limit = (int) Math.min(end, (long) off + maxLineLength - count);
+            int nl = indexOfNewLine(b, off, limit);
+            int lineEnd = nl < 0 ? limit : nl + 1;
+            append(b, off, lineEnd - off);
+            off = lineEnd;
+            if (nl >= 0) {
+                eol0();
+            } else if (count == maxLineLength) {
+                longLines++;
+                eol0();
+                inTail = true;
+            }
+        }
+    }
+
+    private static int indexOfNewLine(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(byte[] b, int off, int len) {
+        if (count + len > buf.length) {
+            buf = Arrays.copyOf(buf, Math.min(Math.max(buf.length * 2, count + len), maxLineLength));
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    private void eol0() throws IOException {
+        int len = count;
+        count = 0;
+        eol(buf, len);
+    }
+
+    /**
+     * Process the pending incomplete line, if any.
+     */
+    protected void forceEol() throws IOException {
+        inTail = false;
+        if (count > 0) {
+            eol0();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        forceEol();
+    }
+}
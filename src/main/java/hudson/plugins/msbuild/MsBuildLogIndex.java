@@ -0,0 +1,416 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.console.ConsoleNote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where the error and warning lines are in the build log.
+ * <p>
+ * Each entry is the offset of a line shifted left by one, its lowest bit set
+ * for an error, so the index takes 8 bytes per line. The offsets are first
+ * relative to the output of MSBuild, then to the build log once it has been
+ * located with {@link #locate}. The index is saved in {@value #FILE_NAME} next
+ * to the build and {@link #readExcerpts} reads the lines around the entries
+ * with a {@link RandomAccessFile}, without going through the rest of the log.
+ */
+final class MsBuildLogIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final String FILE_NAME = "msbuild-log.idx";
+
+    /** Maximum number of lines indexed per build. */
+    static final int MAX_ENTRIES = 100_000;
+
+    /** Number of lines shown before and after an error or a warning. */
+    static final int CONTEXT_LINES = 2;
+
+    /** Number of bytes of the output kept to find it in the build log. */
+    static final int HEAD_LENGTH = 64;
+
+    /**
+     * How far after the log position before MSBuild started its output is
+     * looked for, e.g. past the command line printed by the launcher.
+     */
+    static final int SEARCH_LENGTH = 64 * 1024;
+
+    /** Number of bytes read before and after a line for its context. */
+    private static final int WINDOW_BEFORE = 2 * 1024;
+    private static final int WINDOW_AFTER = 4 * 1024;
+
+    /** Longest line read for its fingerprint, see {@link #readLineFingerprints}. */
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final int MAGIC = 0x4D534249; // "MSBI"
+    private static final int VERSION = 1;
+
+    // Guarded by this, entries being added while the index is sent from the agent
+    private long[] entries = new long[16];
+    private int size;
+    /** The first bytes of the output, only kept until it is located. */
+    private byte[] head;
+
+    synchronized void add(long offset, MsBuildDiagnostics.Severity severity) {
+        if (size == MAX_ENTRIES) {
+            return;
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, Math.min(Math.max(size * 2, 16), MAX_ENTRIES));
+        }
+        entries[size++] = offset << 1 | (severity == MsBuildDiagnostics.Severity.ERROR ? 1 : 0);
+    }
+
+    /**
+     * Add the entries of another index, e.g. of another MSBuild step.
+     *
+     * @param base the offset the ones of the other index are relative to
+     */
+    void addAll(MsBuildLogIndex other, long base) {
+        long[] added = other.copyEntries();
+        synchronized (this) {
+            for (long entry : added) {
+                add(base + (entry >>> 1), (entry & 1) != 0
+                        ? MsBuildDiagnostics.Severity.ERROR : MsBuildDiagnostics.Severity.WARNING);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long getOffset(int i) {
+        return entries[i] >>> 1;
+    }
+
+    synchronized MsBuildDiagnostics.Severity getSeverity(int i) {
+        return (entries[i] & 1) != 0 ? MsBuildDiagnostics.Severity.ERROR : MsBuildDiagnostics.Severity.WARNING;
+    }
+
+    /**
+     * @return the number of entries of the given severity
+     */
+    synchronized int count(MsBuildDiagnostics.Severity severity) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (getSeverity(i) == severity) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized void setHead(byte[] head) {
+        this.head = head;
+    }
+
+    /**
+     * Find where the output of MSBuild starts in the build log.
+     *
+     * @param log  the build log
+     * @param from the length of the build log before MSBuild was started
+     * @return the offset of the output in the build log, or -1 if it is not
+     *         found, e.g. because another plugin changed it on its way
+     */
+    long locate(File log, long from) throws IOException {
+        if (head == null || head.length == 0 || from < 0) {
+            return -1;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+            int length = (int) Math.max(0, Math.min(SEARCH_LENGTH + head.length, file.length() - from));
+            byte[] window = new byte[length];
+            file.seek(from);
+            file.readFully(window);
+            int found = indexOf(window, head);
+            return found < 0 ? -1 : from + found;
+        }
+    }
+
+    private static int indexOf(byte[] b, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= b.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (b[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Read the lines around the entries of a severity.
+     *
+     * @param log      the build log, the offsets being relative to it
+     * @param severity the severity of the entries to read
+     * @param start    the number of entries of that severity to skip
+     * @param count    the maximum number of entries to read
+     */
+    List<MsBuildDiagnosticsAction.Excerpt> readExcerpts(File log, Charset charset,
+            MsBuildDiagnostics.Severity severity, int start, int count) throws IOException {
+        List<MsBuildDiagnosticsAction.Excerpt> excerpts = new ArrayList<>();
+        byte[] window = new byte[WINDOW_BEFORE + WINDOW_AFTER];
+        try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+            long length = file.length();
+            int skipped = 0;
+            for (int i = 0; i < size && excerpts.size() < count; i++) {
+                if (getSeverity(i) != severity || skipped++ < start) {
+                    continue;
+                }
+                long offset = getOffset(i);
+                if (offset >= length) {
+                    excerpts.add(new MsBuildDiagnosticsAction.Excerpt(offset, List.of(), -1));
+                    continue;
+                }
+                long from = Math.max(0, offset - WINDOW_BEFORE);
+                int read = (int) Math.min(length - from, offset - from + WINDOW_AFTER);
+                file.seek(from);
+                file.readFully(window, 0, read);
+                excerpts.add(excerpt(window, read, (int) (offset - from), from == 0, offset, charset, severity));
+            }
+        }
+        return excerpts;
+    }
+
+    /**
+     * @param at           the position of the indexed line in the window
+     * @param startOfLog   whether the window starts with the build log
+     */
+    private static MsBuildDiagnosticsAction.Excerpt excerpt(byte[] window, int length, int at, boolean startOfLog,
+            long offset, Charset charset, MsBuildDiagnostics.Severity severity) {
+        if (at > 0 && window[at - 1] != '\n') {
+            return new MsBuildDiagnosticsAction.Excerpt(offset, List.of(), -1);
+        }
+        // the lines before, leaving out the first one if it may be incomplete
+        int begin = at;
+        int before = 0;
+        while (before < CONTEXT_LINES && begin > 0) {
+            int previous = lastIndexOfNewLine(window, begin - 1);
+            if (previous < 0 && !startOfLog) {
+                break;
+            }
+            begin = previous + 1;
+            before++;
+        }
+        List<String> lines = new ArrayList<>();
+        int lineStart = begin;
+        while (lineStart < length && lines.size() <= before + CONTEXT_LINES) {
+            int end = lineStart;
+            while (end < length && window[end] != '\n') {
+                end++;
+            }
+            lines.add(decode(window, lineStart, end, charset));
+            lineStart = end + 1;
+        }
+        int scan = MsBuildKeywordFilter.scan(lines.get(before));
+        int expected = severity == MsBuildDiagnostics.Severity.ERROR ? MsBuildKeywordFilter.ERROR
+                : MsBuildKeywordFilter.WARNING;
+        if ((scan & expected) == 0) {
+            // the build log does not match the index
+            return new MsBuildDiagnosticsAction.Excerpt(offset, List.of(), -1);
+        }
+        return new MsBuildDiagnosticsAction.Excerpt(offset, lines, before);
+    }
+
+    /**
+     * Read the indexed lines, for {@link MsBuildConsoleAnnotatorFactory} to
+     * only highlight them.
+     *
+     * @param log the build log, the offsets being relative to it
+     * @return the {@link #fingerprint}s of the lines
+     */
+    MsBuildFingerprintSet readLineFingerprints(File log, Charset charset) throws IOException {
+        MsBuildFingerprintSet fingerprints = new MsBuildFingerprintSet();
+        byte[] line = new byte[WINDOW_AFTER];
+        try (RandomAccessFile file = new RandomAccessFile(log, "r")) {
+            long length = file.length();
+            for (int i = 0; i < size; i++) {
+                long offset = getOffset(i);
+                if (offset >= length) {
+                    continue;
+                }
+                file.seek(offset);
+                int n = 0;
+                int end = -1;
+                while (end < 0 && n < MAX_LINE_LENGTH) {
+                    if (n == line.length) {
+                        line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+                    }
+                    int read = file.read(line, n, line.length - n);
+                    if (read < 0) {
+                        break;
+                    }
+                    for (int j = n; j < n + read && end < 0; j++) {
+                        if (line[j] == '\n') {
+                            end = j;
+                        }
+                    }
+                    n += read;
+                }
+                fingerprints.add(fingerprint(decode(line, 0, end < 0 ? n : end, charset)));
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * @param line a line of the build log, without its notes and end of line
+     * @return a 64-bit FNV-1a hash of the line
+     */
+    static long fingerprint(String line) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < line.length(); i++) {
+            hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int lastIndexOfNewLine(byte[] b, int before) {
+        for (int i = before - 1; i >= 0; i--) {
+            if (b[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(byte[] b, int start, int end, Charset charset) {
+        while (end > start && b[end - 1] == '\r') {
+            end--;
+        }
+        return ConsoleNote.removeNotes(new String(b, start, end - start, charset));
+    }
+
+    void writeTo(File file) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeByte(VERSION);
+            long[] written = copyEntries();
+            data.writeInt(written.length);
+            for (long entry : written) {
+                data.writeLong(entry);
+            }
+            data.flush();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static MsBuildLogIndex readFrom(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not an MSBuild log index");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported MSBuild log index version " + version);
+            }
+            int size = data.readInt();
+            if (size < 0 || size > MAX_ENTRIES) {
+                throw new IOException("Invalid number of entries " + size);
+            }
+            MsBuildLogIndex index = new MsBuildLogIndex();
+            index.entries = new long[Math.max(size, 16)];
+            for (int i = 0; i < size; i++) {
+                index.entries[i] = data.readLong();
+            }
+            index.size = size;
+            return index;
+        }
+    }
+
+    private synchronized long[] copyEntries() {
+        return Arrays.copyOf(entries, size);
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        // Only the entries added so far, without changing the array add() writes to
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("entries", copyEntries());
+        fields.put("size", size);
+        fields.put("head", head);
+        out.writeFields();
+    }
+
+    /**
+     * Counts the bytes written to the build log and keeps the first
+     * {@link #HEAD_LENGTH} of them.
+     */
+    static final class Counter extends FilterOutputStream {
+        private final byte[] head = new byte[HEAD_LENGTH];
+        private long count;
+
+        Counter(OutputStream out) {
+            super(out);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        byte[] getHead() {
+            return Arrays.copyOf(head, (int) Math.min(count, HEAD_LENGTH));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (count < HEAD_LENGTH) {
+                head[(int) count] = (byte) b;
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (count < HEAD_LENGTH) {
+                System.arraycopy(b, off, head, (int) count, (int) Math.min(len, HEAD_LENGTH - count));
+            }
+            count += len;
+        }
+    }
+}
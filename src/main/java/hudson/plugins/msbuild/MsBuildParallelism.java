@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the parallelism of MSBuild from the resources of the agent: the
+ * number of MSBuild nodes ({@code /m}), the number of files compiled at the
+ * same time by each C++ compiler ({@code CL_MPCount}), and disables the reuse
+ * of the nodes, which are killed with the build anyway.
+ * <p>
+ * The processors of the agent are shared by the MSBuild processes running at
+ * the same time. Of the processors given to a process, half are used for its
+ * nodes and the C++ compilers of each node use two of them, so that the
+ * projects and the files of a project are both compiled in parallel without
+ * running much more compilers than processors. The number of nodes is also
+ * limited by the free memory, with {@link #MEMORY_PER_NODE} for each.
+ */
+final class MsBuildParallelism {
+
+    /** The memory needed by an MSBuild node with its compilers. */
+    static final long MEMORY_PER_NODE = 1024L * 1024 * 1024;
+
+    private static final Pattern MAX_CPU_COUNT = Pattern.compile("[/-](m|maxcpucount)(:.*)?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern NODE_REUSE = Pattern.compile("[/-](nr|nodereuse)(:.*)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CL_MP_COUNT = Pattern.compile("[/-]p(roperty)?:(.*[;,])?\\s*CL_MPCount\\s*=.*",
+            Pattern.CASE_INSENSITIVE);
+
+    private MsBuildParallelism() {
+    }
+
+    /**
+     * @param arguments the arguments of MSBuild, whose settings are kept
+     * @param env       the environment of MSBuild, whose variables are
+     *                  properties too
+     * @param resources the resources of the agent
+     * @param processes the number of MSBuild processes running at the same
+     *                  time on the agent
+     * @return the arguments to add, none of the ones already set
+     */
+    static List<String> tune(List<String> arguments, Map<String, String> env, MsBuildAgentResources resources,
+            int processes) {
+        boolean maxCpuCount = false;
+        boolean nodeReuse = false;
+        boolean clMpCount = env != null && env.keySet().stream().anyMatch(k -> k.equalsIgnoreCase("CL_MPCount"));
+        for (String argument : arguments) {
+            maxCpuCount |= MAX_CPU_COUNT.matcher(argument).matches();
+            nodeReuse |= NODE_REUSE.matcher(argument).matches();
+            clMpCount |= CL_MP_COUNT.matcher(argument).matches();
+        }
+
+        int share = Math.max(1, resources.getProcessors() / Math.max(1, processes));
+        int nodes = share >= 4 ? share / 2 : share;
+        if (resources.getFreeMemory() > 0) {
+            long byMemory = resources.getFreeMemory() / Math.max(1, processes) / MEMORY_PER_NODE;
+            nodes = (int) Math.max(1, Math.min(nodes, byMemory));
+        }
+        int compilers = Math.max(1, share / nodes);
+
+        List<String> added = new ArrayList<>(3);
+        if (!maxCpuCount) {
+            added.add("/m:" + nodes);
+        }
+        if (!clMpCount) {
+            added.add("/p:CL_MPCount=" + compilers);
+        }
+        if (!nodeReuse) {
+            added.add("/nodeReuse:false");
+        }
+        return added;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * The time spent in each target and task by the MSBuild steps of a build.
+ */
+public class MsBuildPerformanceAction implements RunAction2 {
+
+    private final MsBuildPerformanceSummary summary = new MsBuildPerformanceSummary();
+
+    private transient Run<?, ?> run;
+
+    /**
+     * Add the performance summary of an MSBuild step to the build, along with
+     * the ones of the previous steps.
+     */
+    static void addTo(Run<?, ?> run, MsBuildPerformanceSummary added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        MsBuildPerformanceAction action = run.getAction(MsBuildPerformanceAction.class);
+        if (action == null) {
+            action = new MsBuildPerformanceAction();
+            run.addAction(action);
+        }
+        synchronized (action) {
+            action.summary.addAll(added);
+        }
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public synchronized MsBuildPerformanceSummary getSummary() {
+        return summary;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.MsBuildPerformanceAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "msbuild-performance";
+    }
+}
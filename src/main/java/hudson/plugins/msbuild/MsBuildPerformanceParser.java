@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the "Target Performance Summary" and "Task Performance Summary"
+ * sections printed by MSBuild with {@code /clp:PerformanceSummary}, e.g.
+ *
+ * <pre>
+ * Target Performance Summary:
+ *         0 ms  _CheckForInvalidConfigurationAndPlatform   2 calls
+ *      2345 ms  CoreCompile                                2 calls
+ * </pre>
+ *
+ * Outside of these sections, a line only costs a check of its end.
+ */
+final class MsBuildPerformanceParser {
+    private static final String HEADER_SUFFIX = "Performance Summary:";
+    private static final String TARGET_HEADER = "Target " + HEADER_SUFFIX;
+    private static final String TASK_HEADER = "Task " + HEADER_SUFFIX;
+
+    /** An entry of a section, e.g. {@code "      2345 ms  CoreCompile   2 calls"} */
+    static final Pattern ENTRY = Pattern.compile("\\s*+(\\d++) ms\\s++(\\S.*?)\\s++(\\d++) calls\\s*+");
+
+    private final MsBuildPerformanceSummary summary = new MsBuildPerformanceSummary();
+
+    /** The section being parsed, or {@code null}. */
+    private MsBuildPerformanceSummary.Kind section;
+
+    private final Matcher entryMatcher = ENTRY.matcher("");
+
+    MsBuildPerformanceSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @param line the decoded line, without its end of line characters, which
+     *             is not kept
+     */
+    void parseLine(CharSequence line) {
+        if (isHeader(line)) {
+            String trimmed = line.toString().trim();
+            if (trimmed.equals(TARGET_HEADER)) {
+                section = MsBuildPerformanceSummary.Kind.TARGET;
+            } else if (trimmed.equals(TASK_HEADER)) {
+                section = MsBuildPerformanceSummary.Kind.TASK;
+            } else {
+                // the project and evaluation summaries
+                section = null;
+            }
+            return;
+        }
+        if (section == null) {
+            return;
+        }
+        Matcher m = entryMatcher.reset(line);
+        if (!m.matches()) {
+            // the blank line at the end of the section
+            section = null;
+            return;
+        }
+        try {
+            summary.add(section, m.group(2), Long.parseLong(m.group(1)), Integer.parseInt(m.group(3)));
+        } catch (NumberFormatException e) {
+            // too large, not an entry
+            section = null;
+        }
+    }
+
+    /**
+     * Whether the line ends with {@link #HEADER_SUFFIX}, without trimming it as
+     * most lines are indented.
+     */
+    private static boolean isHeader(CharSequence line) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        int start = end - HEADER_SUFFIX.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < HEADER_SUFFIX.length(); i++) {
+            if (line.charAt(start + i) != HEADER_SUFFIX.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
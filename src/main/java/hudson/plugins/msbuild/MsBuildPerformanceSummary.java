@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The time spent in each target and task, as printed by MSBuild with
+ * {@code /clp:PerformanceSummary}.
+ */
+public final class MsBuildPerformanceSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        TARGET, TASK
+    }
+
+    /**
+     * Cumulative time and number of calls of a target or task.
+     */
+    public static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private long millis;
+        private int calls;
+
+        Entry(String name, long millis, int calls) {
+            this.name = name;
+            this.millis = millis;
+            this.calls = calls;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+    }
+
+    private final ArrayList<Entry> targets = new ArrayList<>();
+    private final ArrayList<Entry> tasks = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return targets.isEmpty() && tasks.isEmpty();
+    }
+
+    /**
+     * @return the targets, the slowest first
+     */
+    public List<Entry> getTargets() {
+        return sorted(targets);
+    }
+
+    /**
+     * @return the tasks, the slowest first
+     */
+    public List<Entry> getTasks() {
+        return sorted(tasks);
+    }
+
+    /**
+     * @return the cumulative time of the targets or tasks
+     */
+    public long getTotalMillis(Kind kind) {
+        long total = 0;
+        for (Entry entry : entries(kind)) {
+            total += entry.millis;
+        }
+        return total;
+    }
+
+    private static List<Entry> sorted(List<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(Entry::getMillis).reversed().thenComparing(Entry::getName));
+        return sorted;
+    }
+
+    private List<Entry> entries(Kind kind) {
+        return kind == Kind.TARGET ? targets : tasks;
+    }
+
+    /**
+     * Add the time of a target or task, to the one of the previous MSBuild
+     * invocations if any.
+     */
+    void add(Kind kind, String name, long millis, int calls) {
+        for (Entry entry : entries(kind)) {
+            if (entry.name.equals(name)) {
+                entry.millis += millis;
+                entry.calls += calls;
+                return;
+            }
+        }
+        entries(kind).add(new Entry(name, millis, calls));
+    }
+
+    void addAll(MsBuildPerformanceSummary other) {
+        for (Kind kind : Kind.values()) {
+            for (Entry entry : other.entries(kind)) {
+                add(kind, entry.name, entry.millis, entry.calls);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+
+/**
+ * Everything {@link MsBuildBuilder} needs to know from the agent's file system
+ * before starting MSBuild, found in a single call on the module root instead
+ * of one remote call per check.
+ * <p>
+ * It resolves the path of {@code msbuild.exe} in the installation directory
+ * and checks that it exists, chooses the working directory, creates the
+ * binary log file and the directory of the SARIF file.
+ */
+final class MsBuildPreflight extends MasterToSlaveFileCallable<MsBuildPreflight.Result> {
+    private static final long serialVersionUID = 1L;
+
+    private final String toolHome;
+    private final String execName;
+    private final String msBuildFile;
+    private final String workspace;
+    private final String binaryLogDir;
+    private final String sarifFile;
+
+    /**
+     * @param toolHome     the home of the MSBuild installation, the executable
+     *                     itself or the directory containing it, or
+     *                     {@code null} to run the one on the path
+     * @param execName     the name of the executable in that directory
+     * @param msBuildFile  the project or solution, or {@code null}
+     * @param workspace    the workspace, the working directory if the
+     *                     project or solution is not in the module root
+     * @param binaryLogDir the directory where to create the binary log, or
+     *                     {@code null} for no binary log
+     * @param sarifFile    the SARIF file, relative to the working directory,
+     *                     or {@code null}
+     */
+    MsBuildPreflight(String toolHome, String execName, String msBuildFile, String workspace, String binaryLogDir,
+            String sarifFile) {
+        this.toolHome = toolHome;
+        this.execName = execName;
+        this.msBuildFile = msBuildFile;
+        this.workspace = workspace;
+        this.binaryLogDir = binaryLogDir;
+        this.sarifFile = sarifFile;
+    }
+
+    @Override
+    public Result invoke(File moduleRoot, VirtualChannel channel) throws IOException {
+        String msBuildPath = null;
+        boolean msBuildFound = true;
+        if (toolHome != null) {
+            msBuildPath = getToolFullPath(toolHome, execName);
+            msBuildFound = new File(msBuildPath).exists();
+        }
+
+        File pwd = moduleRoot;
+        if (msBuildFile != null && !resolve(moduleRoot, msBuildFile).exists() && workspace != null) {
+            pwd = new File(workspace);
+        }
+
+        String binaryLog = null;
+        if (binaryLogDir != null) {
+            File dir = new File(binaryLogDir);
+            Files.createDirectories(dir.toPath());
+            binaryLog = Files.createTempFile(dir.toPath(), "msbuild", ".binlog").toString();
+        }
+
+        String sarif = null;
+        if (sarifFile != null) {
+            File file = resolve(pwd, sarifFile);
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            sarif = file.getPath();
+        }
+        return new Result(msBuildPath, msBuildFound, pwd.getPath(), binaryLog, sarif);
+    }
+
+    /**
+     * Same as {@code FilePath.child}: absolute paths are kept as is.
+     */
+    private static File resolve(File dir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(dir, path);
+    }
+
+    /**
+     * @return the path of the executable: the home itself, or the executable
+     *         in it if it is a directory
+     */
+    static String getToolFullPath(String pathToTool, String execName) {
+        String fullPathToMsBuild = pathToTool;
+        if (new File(fullPathToMsBuild).isDirectory()) {
+            if (!fullPathToMsBuild.endsWith("\\")) {
+                fullPathToMsBuild = fullPathToMsBuild + "\\";
+            }
+            fullPathToMsBuild = fullPathToMsBuild + execName;
+        }
+        return fullPathToMsBuild;
+    }
+
+    /**
+     * What was found on the agent, the paths being the remote ones.
+     */
+    static final class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String msBuildPath;
+        private final boolean msBuildFound;
+        private final String pwd;
+        private final String binaryLog;
+        private final String sarifFile;
+
+        Result(String msBuildPath, boolean msBuildFound, String pwd, String binaryLog, String sarifFile) {
+            this.msBuildPath = msBuildPath;
+            this.msBuildFound = msBuildFound;
+            this.pwd = pwd;
+            this.binaryLog = binaryLog;
+            this.sarifFile = sarifFile;
+        }
+
+        /**
+         * @return the path of the executable, or {@code null} if there was no
+         *         installation
+         */
+        String getMsBuildPath() {
+            return msBuildPath;
+        }
+
+        boolean isMsBuildFound() {
+            return msBuildFound;
+        }
+
+        String getPwd() {
+            return pwd;
+        }
+
+        /**
+         * @return the created binary log file, or {@code null}
+         */
+        String getBinaryLog() {
+            return binaryLog;
+        }
+
+        /**
+         * @return the SARIF file, or {@code null}
+         */
+        String getSarifFile() {
+            return sarifFile;
+        }
+    }
+}
@@ -0,0 +1,650 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The projects of a solution or project and their {@code ProjectReference}s,
+ * as a directed acyclic graph from the referencing to the referenced
+ * projects.
+ * <p>
+ * The solution is read line by line, including the project dependencies and
+ * the configurations it declares, and the projects with a streaming XML
+ * parser. The conditions and
+ * properties of the projects are not evaluated: references depending on
+ * properties are ignored. The parsed projects are cached by path, size and
+ * last modification time, so that the projects that did not change are
+ * neither read nor parsed again.
+ */
+final class MsBuildProjectGraph {
+
+    private static final Pattern SOLUTION_PROJECT = Pattern.compile(
+            "^Project\\(\"([^\"]*)\"\\)\\s*=\\s*\"[^\"]*\"\\s*,\\s*\"([^\"]+)\"\\s*,\\s*\"(\\{[^}]+\\})\"");
+    private static final Pattern SOLUTION_DEPENDENCY = Pattern.compile("^\\s*(\\{[^}]+\\})\\s*=\\s*\\{[^}]+\\}");
+    private static final Pattern SOLUTION_CONFIGURATION = Pattern.compile("^\\s*([^=]+?)\\s*=");
+    private static final Pattern PROJECT_CONFIGURATION = Pattern.compile(
+            "^\\s*(\\{[^}]+\\})\\.(.+)\\.(ActiveCfg|Build\\.0)\\s*=\\s*(.+?)\\s*$");
+
+    /** The types of the projects of a solution built with MSBuild, C#, Visual Basic and F# among others. */
+    private static final Set<String> MSBUILD_PROJECT_TYPES = Set.of("{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}",
+            "{9A19103F-16F7-4668-BE54-9A1E7A4F7556}", "{F184B08F-C81C-45F6-A57F-5ABD9991F28F}",
+            "{778DAE3C-4631-46EA-AA77-85C1314464D9}", "{F2A71F9B-5D33-465A-A702-920D77279786}",
+            "{6EC3EE1D-3C4E-46DD-8F32-0CC8E7565705}", "{13B669BE-BB05-4DDF-9536-439F39A36129}",
+            "{C8D11400-126E-41CD-887F-60BD40844F9E}", "{E6FDF86B-F3D1-11D4-8576-0002A516ECE8}");
+    /** The extensions of the projects built with MSBuild whatever their type in the solution. */
+    private static final Set<String> MSBUILD_PROJECT_EXTENSIONS = Set.of(".csproj", ".vbproj", ".fsproj",
+            ".vcxproj", ".proj", ".wixproj", ".msbuildproj");
+
+    /** The platform of the configurations of a solution that have none, as MSBuild reads them. */
+    static final String DEFAULT_PLATFORM = "Any CPU";
+
+    /**
+     * The references of the parsed projects, by path, size and last
+     * modification time, the least recently used evicted first.
+     */
+    private static final Map<String, List<String>> PARSED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_PARSED;
+        }
+    };
+    private static final int MAX_PARSED = 20_000;
+
+    private final List<Path> projects;
+    private final Map<Path, Integer> index = new HashMap<>();
+    private final int[][] references;
+    private final int[] levels;
+    private final List<String> solutionConfigurations;
+    private final Map<Path, SolutionProject> solutionProjects = new HashMap<>();
+
+    private MsBuildProjectGraph(List<Path> projects, int[][] references, List<String> solutionConfigurations,
+            Collection<SolutionProject> solutionProjects) throws IOException {
+        this.projects = projects;
+        this.solutionConfigurations = solutionConfigurations;
+        for (SolutionProject project : solutionProjects) {
+            this.solutionProjects.put(project.getPath(), project);
+        }
+        for (int i = 0; i < projects.size(); i++) {
+            index.put(projects.get(i), i);
+        }
+        this.references = references;
+        this.levels = computeLevels(references, projects);
+    }
+
+    /**
+     * @param file a solution or a project
+     */
+    static MsBuildProjectGraph load(Path file) throws IOException {
+        file = file.toAbsolutePath().normalize();
+        Map<Path, Integer> index = new LinkedHashMap<>();
+        List<List<Integer>> edges = new ArrayList<>();
+        Deque<Path> pending = new ArrayDeque<>();
+        List<String> solutionConfigurations = new ArrayList<>();
+        Map<String, SolutionProject> byGuid = new LinkedHashMap<>();
+
+        if (isSolution(file)) {
+            Map<Path, List<String>> dependencies = new HashMap<>();
+            readSolution(file, byGuid, dependencies, solutionConfigurations);
+            for (SolutionProject project : byGuid.values()) {
+                pending.add(project.getPath());
+            }
+            load(pending, index, edges);
+            // the dependencies declared in the solution, once all the projects are known
+            for (Map.Entry<Path, List<String>> e : dependencies.entrySet()) {
+                List<Integer> from = edges.get(index.get(e.getKey()));
+                for (String guid : e.getValue()) {
+                    SolutionProject dependency = byGuid.get(guid);
+                    if (dependency != null && !from.contains(index.get(dependency.getPath()))) {
+                        from.add(index.get(dependency.getPath()));
+                    }
+                }
+            }
+        } else {
+            pending.add(file);
+            load(pending, index, edges);
+        }
+
+        int[][] references = new int[edges.size()][];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = edges.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new MsBuildProjectGraph(new ArrayList<>(index.keySet()), references, solutionConfigurations,
+                byGuid.values());
+    }
+
+    private static boolean isSolution(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".sln");
+    }
+
+    /**
+     * Read the projects of a solution, the solution folders, missing projects
+     * and projects not built with MSBuild excluded, the dependencies between them and the
+     * configurations of the solution with the configuration of each project
+     * in them.
+     */
+    private static void readSolution(Path solution, Map<String, SolutionProject> byGuid,
+            Map<Path, List<String>> dependencies, List<String> configurations) throws IOException {
+        Path dir = solution.getParent();
+        try (BufferedReader reader = Files.newBufferedReader(solution, StandardCharsets.UTF_8)) {
+            Path current = null;
+            boolean inDependencies = false;
+            String section = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher project = SOLUTION_PROJECT.matcher(line);
+                if (project.find()) {
+                    Path path = dir.resolve(toLocalPath(project.group(2))).normalize();
+                    current = Files.isRegularFile(path) && isMsBuildProject(project.group(1), path) ? path : null;
+                    if (current != null) {
+                        String guid = project.group(3).toUpperCase(Locale.ROOT);
+                        byGuid.put(guid, new SolutionProject(path, guid));
+                    }
+                } else if (line.trim().startsWith("GlobalSection(")) {
+                    section = line.trim().substring("GlobalSection(".length()).split("\\)", 2)[0];
+                } else if (line.trim().equals("EndGlobalSection")) {
+                    section = null;
+                } else if ("SolutionConfigurationPlatforms".equals(section)) {
+                    Matcher configuration = SOLUTION_CONFIGURATION.matcher(line);
+                    if (configuration.find() && !configurations.contains(withPlatform(configuration.group(1)))) {
+                        configurations.add(withPlatform(configuration.group(1)));
+                    }
+                } else if ("ProjectConfigurationPlatforms".equals(section)) {
+                    Matcher configuration = PROJECT_CONFIGURATION.matcher(line);
+                    SolutionProject mapped = configuration.find()
+                            ? byGuid.get(configuration.group(1).toUpperCase(Locale.ROOT)) : null;
+                    if (mapped != null && configuration.group(3).equals("ActiveCfg")) {
+                        mapped.configurations.put(withPlatform(configuration.group(2)), configuration.group(4));
+                    } else if (mapped != null) {
+                        mapped.built.add(withPlatform(configuration.group(2)));
+                    }
+                } else if (line.trim().startsWith("ProjectSection(ProjectDependencies)")) {
+                    inDependencies = current != null;
+                } else if (line.trim().equals("EndProjectSection")) {
+                    inDependencies = false;
+                } else if (line.trim().equals("EndProject")) {
+                    current = null;
+                } else if (inDependencies) {
+                    Matcher dependency = SOLUTION_DEPENDENCY.matcher(line);
+                    if (dependency.find()) {
+                        dependencies.computeIfAbsent(current, k -> new ArrayList<>())
+                                .add(dependency.group(1).toUpperCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the configuration of a solution as {@code Configuration|Platform},
+     *         with the {@link #DEFAULT_PLATFORM} if it has none
+     */
+    static String withPlatform(String configuration) {
+        return configuration.indexOf('|') < 0 ? configuration + '|' + DEFAULT_PLATFORM : configuration;
+    }
+
+    /**
+     * @return whether a project of a solution is built with MSBuild, as
+     *         opposed to e.g. a setup ({@code .vdproj}), a shared project or a
+     *         database project needing Visual Studio, unless it uses the
+     *         {@code Microsoft.Build.Sql} SDK
+     */
+    private static boolean isMsBuildProject(String type, Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        String extension = dot >= 0 ? name.substring(dot) : "";
+        if (extension.equals(".sqlproj")) {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8).contains("Microsoft.Build.Sql");
+        }
+        return MSBUILD_PROJECT_TYPES.contains(type.toUpperCase(Locale.ROOT))
+                || MSBUILD_PROJECT_EXTENSIONS.contains(extension);
+    }
+
+    /**
+     * Add the pending projects and the ones they reference, transitively.
+     */
+    private static void load(Deque<Path> pending, Map<Path, Integer> index, List<List<Integer>> edges)
+            throws IOException {
+        XMLInputFactory factory = newFactory();
+        List<Path> order = new ArrayList<>(pending);
+        for (Path project : order) {
+            index.computeIfAbsent(project, k -> {
+                edges.add(new ArrayList<>());
+                return edges.size() - 1;
+            });
+        }
+        while (!pending.isEmpty()) {
+            Path project = pending.poll();
+            List<Integer> from = edges.get(index.get(project));
+            if (!Files.isRegularFile(project)) {
+                continue;
+            }
+            for (String include : getReferences(project, factory)) {
+                Path referenced = project.getParent().resolve(toLocalPath(include)).normalize();
+                Integer i = index.get(referenced);
+                if (i == null) {
+                    i = edges.size();
+                    index.put(referenced, i);
+                    edges.add(new ArrayList<>());
+                    pending.add(referenced);
+                }
+                if (!from.contains(i)) {
+                    from.add(i);
+                }
+            }
+        }
+    }
+
+    private static String toLocalPath(String path) {
+        return path.replace('\\', File.separatorChar);
+    }
+
+    /**
+     * @return the {@code Include} of the {@code ProjectReference}s of a
+     *         project, from the cache if it was already parsed
+     */
+    private static List<String> getReferences(Path project, XMLInputFactory factory) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(project, BasicFileAttributes.class);
+        String key = project.toAbsolutePath() + "\t" + attributes.size() + "\t"
+                + attributes.lastModifiedTime().toMillis();
+        List<String> references;
+        synchronized (PARSED) {
+            references = PARSED.get(key);
+        }
+        if (references == null) {
+            try (InputStream in = Files.newInputStream(project)) {
+                references = parse(in, factory);
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to parse " + project + ": " + e.getMessage(), e);
+            }
+            synchronized (PARSED) {
+                PARSED.put(key, references);
+            }
+        }
+        return references;
+    }
+
+    static List<String> parse(InputStream in, XMLInputFactory factory) throws XMLStreamException {
+        List<String> references = new ArrayList<>();
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && reader.getLocalName().equals("ProjectReference")) {
+                    String include = reader.getAttributeValue(null, "Include");
+                    if (include != null) {
+                        for (String item : include.split(";")) {
+                            item = item.trim();
+                            // items built from properties, other items or wildcards cannot be resolved here
+                            if (!item.isEmpty() && !item.contains("$(") && !item.contains("@(")
+                                    && !item.contains("*")) {
+                                references.add(item);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return Collections.unmodifiableList(references);
+    }
+
+    static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * The level of a project is 0 if it references no project, otherwise one
+     * more than the highest level of the projects it references.
+     */
+    private static int[] computeLevels(int[][] references, List<Path> projects) throws IOException {
+        int n = references.length;
+        int[] levels = new int[n];
+        int[] remaining = new int[n];
+        List<List<Integer>> referencedBy = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            referencedBy.add(new ArrayList<>());
+        }
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            remaining[i] = references[i].length;
+            for (int j : references[i]) {
+                referencedBy.get(j).add(i);
+            }
+            if (remaining[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int done = 0;
+        while (!ready.isEmpty()) {
+            int j = ready.poll();
+            done++;
+            for (int i : referencedBy.get(j)) {
+                levels[i] = Math.max(levels[i], levels[j] + 1);
+                if (--remaining[i] == 0) {
+                    ready.add(i);
+                }
+            }
+        }
+        if (done < n) {
+            for (int i = 0; i < n; i++) {
+                if (remaining[i] > 0) {
+                    throw new IOException("Circular project references involving " + projects.get(i));
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * @return the projects, those of the solution first
+     */
+    List<Path> getProjects() {
+        return Collections.unmodifiableList(projects);
+    }
+
+    /**
+     * @return the configurations of the solution, e.g. {@code Debug|Any CPU},
+     *         none if the graph is not loaded from a solution or it declares
+     *         none
+     */
+    List<String> getSolutionConfigurations() {
+        return Collections.unmodifiableList(solutionConfigurations);
+    }
+
+    /**
+     * @return the configuration MSBuild builds when none is given, preferring
+     *         {@code Debug} then {@code Mixed Platforms} and {@code Any CPU}
+     *         as MSBuild does, or {@code null} if the solution declares none
+     */
+    String getDefaultSolutionConfiguration() {
+        String configuration = null;
+        for (String candidate : solutionConfigurations) {
+            if (candidate.startsWith("Debug|")) {
+                configuration = "Debug";
+                break;
+            }
+        }
+        if (configuration == null && !solutionConfigurations.isEmpty()) {
+            configuration = solutionConfigurations.get(0).split("\\|", 2)[0];
+        }
+        String found = null;
+        for (String platform : new String[] { "Mixed Platforms", DEFAULT_PLATFORM }) {
+            if (found == null && solutionConfigurations.contains(configuration + '|' + platform)) {
+                found = configuration + '|' + platform;
+            }
+        }
+        for (String candidate : solutionConfigurations) {
+            if (found == null && candidate.startsWith(configuration + '|')) {
+                found = candidate;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the platform MSBuild builds when none is given, whatever the
+     *         configuration: {@code Mixed Platforms} then {@code Any CPU} as
+     *         MSBuild does, otherwise the first one, or {@code null} if the
+     *         solution declares no configuration
+     */
+    String getDefaultSolutionPlatform() {
+        List<String> platforms = new ArrayList<>();
+        for (String configuration : solutionConfigurations) {
+            platforms.add(withPlatform(configuration).split("\\|", 2)[1]);
+        }
+        for (String platform : new String[] { "Mixed Platforms", DEFAULT_PLATFORM }) {
+            if (platforms.contains(platform)) {
+                return platform;
+            }
+        }
+        return platforms.isEmpty() ? null : platforms.get(0);
+    }
+
+    /**
+     * @return a project of the solution, or {@code null} if the project is
+     *         only referenced by other ones
+     */
+    SolutionProject getSolutionProject(Path project) {
+        return solutionProjects.get(project);
+    }
+
+    /**
+     * @return the projects directly referenced by a project
+     */
+    List<Path> getReferences(Path project) {
+        Integer i = index.get(project);
+        if (i == null) {
+            return Collections.emptyList();
+        }
+        List<Path> result = new ArrayList<>(references[i].length);
+        for (int j : references[i]) {
+            result.add(projects.get(j));
+        }
+        return result;
+    }
+
+    /**
+     * @return the projects by level: the projects of a level only reference
+     *         projects of the previous levels, so each level can be built in
+     *         parallel once the previous ones are
+     */
+    List<List<Path>> getLevels() {
+        List<List<Path>> result = new ArrayList<>();
+        for (int i = 0; i < projects.size(); i++) {
+            while (result.size() <= levels[i]) {
+                result.add(new ArrayList<>());
+            }
+            result.get(levels[i]).add(projects.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @param cost the estimated time to build a project on its own
+     * @return the chain of references taking the longest to build, from the
+     *         referencing project to the last referenced one: however many
+     *         processors, the build cannot take less time than it
+     */
+    List<Path> getCriticalPath(ToLongFunction<Path> cost) {
+        int n = projects.size();
+        long[] total = new long[n];
+        int[] next = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        // the referenced projects have lower levels
+        Arrays.sort(order, Comparator.comparingInt(i -> levels[i]));
+        int start = -1;
+        for (int i : order) {
+            next[i] = -1;
+            long longest = 0;
+            for (int j : references[i]) {
+                if (total[j] > longest || next[i] < 0) {
+                    longest = total[j];
+                    next[i] = j;
+                }
+            }
+            total[i] = longest + cost.applyAsLong(projects.get(i));
+            if (start < 0 || total[i] > total[start]) {
+                start = i;
+            }
+        }
+        List<Path> path = new ArrayList<>();
+        for (int i = start; i >= 0; i = next[i]) {
+            path.add(projects.get(i));
+        }
+        return path;
+    }
+
+    /**
+     * Split the graph in at most the given number of shards with no reference
+     * between them, so that they can be built at the same time by different
+     * MSBuild processes. The projects referencing each other directly or not
+     * stay together, and the shards are balanced by their number of projects.
+     *
+     * @return the projects of each shard, from the largest shard
+     */
+    List<List<Path>> getShards(int count) {
+        int n = projects.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j : references[i]) {
+                parent[find(parent, i)] = find(parent, j);
+            }
+        }
+        Map<Integer, List<Path>> components = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            components.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(projects.get(i));
+        }
+        List<List<Path>> sorted = new ArrayList<>(components.values());
+        sorted.sort(Comparator.comparingInt(c -> -c.size()));
+
+        // the largest components first, each to the smallest shard
+        List<List<Path>> shards = new ArrayList<>();
+        for (List<Path> component : sorted) {
+            if (shards.size() < Math.max(count, 1)) {
+                shards.add(new ArrayList<>(component));
+                continue;
+            }
+            List<Path> smallest = shards.get(0);
+            for (List<Path> shard : shards) {
+                if (shard.size() < smallest.size()) {
+                    smallest = shard;
+                }
+            }
+            smallest.addAll(component);
+        }
+        shards.sort(Comparator.comparingInt(s -> -s.size()));
+        return shards;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return the projects of a shard that no other project references,
+     *         building them building the whole shard
+     */
+    List<Path> getRoots(List<Path> shard) {
+        boolean[] referenced = new boolean[projects.size()];
+        for (int[] refs : references) {
+            for (int j : refs) {
+                referenced[j] = true;
+            }
+        }
+        List<Path> roots = new ArrayList<>();
+        for (Path project : shard) {
+            Integer i = index.get(project);
+            if (i != null && !referenced[i]) {
+                roots.add(project);
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * A project of a solution, with the configuration it is built in for each
+     * configuration of the solution.
+     */
+    static final class SolutionProject {
+        private final Path path;
+        private final String guid;
+        private final Map<String, String> configurations = new HashMap<>();
+        private final Set<String> built = new HashSet<>();
+
+        SolutionProject(Path path, String guid) {
+            this.path = path;
+            this.guid = guid;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        String getGuid() {
+            return guid;
+        }
+
+        /**
+         * @return the {@code Configuration|Platform} of the project in the
+         *         given configuration of the solution, the {@code Any CPU}
+         *         platform being written {@code AnyCPU} as in the projects,
+         *         or {@code null} if it is not mapped
+         */
+        String getConfiguration(String solutionConfiguration) {
+            String configuration = configurations.get(solutionConfiguration);
+            return configuration != null ? configuration.replace("|Any CPU", "|AnyCPU") : null;
+        }
+
+        /**
+         * @return whether the project is built in the given configuration of
+         *         the solution
+         */
+        boolean isBuilt(String solutionConfiguration) {
+            return built.contains(solutionConfiguration) && configurations.containsKey(solutionConfiguration);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Serial;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the errors and warnings to a SARIF 2.1.0 file as they are found.
+ * <p>
+ * Each result is written as soon as it is {@link #added}, so nothing is
+ * buffered besides the writer itself, whatever the number of results: the
+ * JSON is written directly rather than built as a tree. The file is complete
+ * once {@link #close()} has written the end of the document.
+ * <p>
+ * The files written at the same time by several MSBuild processes are then
+ * merged into one by {@link Merge}, with a run per process.
+ */
+final class MsBuildSarifWriter implements MsBuildDiagnostics.Listener, Closeable {
+
+    static final String SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+    private static final String INFORMATION_URI = "https://learn.microsoft.com/visualstudio/msbuild/msbuild";
+
+    /** The document up to its runs. */
+    private static final String DOCUMENT_START = "{\"$schema\":\"" + SCHEMA + "\",\"version\":\"2.1.0\",\"runs\":[";
+    /** The end of the document after its runs. */
+    private static final String DOCUMENT_END = "]}";
+
+    private final Writer out;
+    private int results;
+    /** The first failure, reported on close as results cannot throw. */
+    private IOException failure;
+
+    MsBuildSarifWriter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.out.write(DOCUMENT_START + "{\"tool\":{\"driver\":{\"name\":\"MSBuild\",\"informationUri\":\""
+                + INFORMATION_URI + "\"}},\"results\":[");
+    }
+
+    /**
+     * @return the number of results written so far
+     */
+    int getResults() {
+        return results;
+    }
+
+    @Override
+    public void added(MsBuildDiagnostics.Severity severity, String file, int line, int column, String code,
+            String project, String message) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            writeResult(severity, file, line, column, code, project, message);
+            results++;
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void writeResult(MsBuildDiagnostics.Severity severity, String file, int line, int column, String code,
+            String project, String message) throws IOException {
+        if (results > 0) {
+            out.write(',');
+        }
+        out.write('{');
+        if (code != null) {
+            out.write("\"ruleId\":");
+            string(out, code);
+            out.write(',');
+        }
+        out.write(severity == MsBuildDiagnostics.Severity.ERROR ? "\"level\":\"error\"" : "\"level\":\"warning\"");
+        out.write(",\"message\":{\"text\":");
+        string(out, message.isEmpty() && code != null ? code : message);
+        out.write('}');
+        if (file != null && (line > 0 || isPath(file))) {
+            out.write(",\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":");
+            string(out, toUri(file));
+            out.write('}');
+            if (line > 0) {
+                out.write(",\"region\":{\"startLine\":");
+                out.write(Integer.toString(line));
+                if (column > 0) {
+                    out.write(",\"startColumn\":");
+                    out.write(Integer.toString(column));
+                }
+                out.write('}');
+            }
+            out.write("}}]");
+        }
+        if (project != null) {
+            out.write(",\"properties\":{\"project\":");
+            string(out, project);
+            out.write('}');
+        }
+        out.write('}');
+    }
+
+    /**
+     * Whether the origin of a diagnostic is a file rather than a tool, e.g.
+     * {@code CSC} or {@code MSBUILD}.
+     */
+    private static boolean isPath(String file) {
+        return file.indexOf('\\') >= 0 || file.indexOf('/') >= 0 || file.indexOf('.') >= 0;
+    }
+
+    /**
+     * @return the path as a URI reference: a {@code file} URI for an absolute
+     *         Windows path, a relative reference otherwise
+     */
+    static String toUri(String path) {
+        String slashes = path.replace('\\', '/');
+        StringBuilder uri = new StringBuilder(slashes.length() + 16);
+        if (slashes.length() > 2 && Character.isLetter(slashes.charAt(0)) && slashes.charAt(1) == ':'
+                && slashes.charAt(2) == '/') {
+            uri.append("file:///").append(slashes, 0, 2);
+            slashes = slashes.substring(2);
+        } else if (slashes.startsWith("//")) {
+            // UNC path
+            uri.append("file:");
+        }
+        for (byte b : slashes.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || "-._~/!$&'()*+,;=:@".indexOf(c) >= 0) {
+                uri.append(c);
+            } else {
+                uri.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+        return uri.toString();
+    }
+
+    private static void string(Writer out, String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(s, start, i - start);
+            switch (c) {
+            case '"':
+                out.write("\\\"");
+                break;
+            case '\\':
+                out.write("\\\\");
+                break;
+            case '\n':
+                out.write("\\n");
+                break;
+            case '\r':
+                out.write("\\r");
+                break;
+            case '\t':
+                out.write("\\t");
+                break;
+            default:
+                out.write(String.format("\\u%04x", (int) c));
+            }
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+
+    /**
+     * Write the end of the document and close the stream.
+     *
+     * @throws IOException if a result or the end could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try (Writer w = out) {
+            if (failure != null) {
+                throw failure;
+            }
+            w.write("]}" + DOCUMENT_END);
+        }
+    }
+
+    /**
+     * Merges the files written by several MSBuild processes into one, each
+     * of their runs being identified by the process that wrote it, then
+     * deletes them. The runs are copied without being parsed.
+     */
+    static final class Merge extends MasterToSlaveFileCallable<Integer> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> parts;
+        private final List<String> labels;
+
+        /**
+         * @param parts  the files written by each process, some of them
+         *               possibly missing if their process was not started
+         * @param labels what identifies each process, e.g.
+         *               {@code Release|x64 shard 1}
+         */
+        Merge(List<String> parts, List<String> labels) {
+            this.parts = new ArrayList<>(parts);
+            this.labels = new ArrayList<>(labels);
+        }
+
+        /**
+         * @return the number of runs merged, the files that were not
+         *         complete being skipped
+         */
+        @Override
+        public Integer invoke(File target, VirtualChannel channel) throws IOException {
+            byte[] start = DOCUMENT_START.getBytes(StandardCharsets.UTF_8);
+            byte[] end = DOCUMENT_END.getBytes(StandardCharsets.UTF_8);
+            int runs = 0;
+            Path tmp = Files.createTempFile(target.getAbsoluteFile().getParentFile().toPath(), "sarif", ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                    out.write(start);
+                    for (int i = 0; i < parts.size(); i++) {
+                        Path part = Path.of(parts.get(i));
+                        if (!isComplete(part, start, end)) {
+                            continue;
+                        }
+                        if (runs > 0) {
+                            out.write(',');
+                        }
+                        // the run without its opening brace, to identify it first
+                        StringWriter run = new StringWriter();
+                        run.write("{");
+                        if (!labels.get(i).isEmpty()) {
+                            run.write("\"automationDetails\":{\"id\":");
+                            string(run, labels.get(i));
+                            run.write("},");
+                        }
+                        out.write(run.toString().getBytes(StandardCharsets.UTF_8));
+                        try (InputStream in = Files.newInputStream(part)) {
+                            in.skipNBytes(start.length + 1);
+                            copy(in, out, Files.size(part) - start.length - 1 - end.length);
+                        }
+                        runs++;
+                    }
+                    out.write(end);
+                }
+                Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            for (String part : parts) {
+                Files.deleteIfExists(Path.of(part));
+            }
+            return runs;
+        }
+
+        /**
+         * @return whether a file has a single run written by
+         *         {@link MsBuildSarifWriter} and was closed
+         */
+        private static boolean isComplete(Path part, byte[] start, byte[] end) throws IOException {
+            if (!Files.isRegularFile(part) || Files.size(part) < start.length + 1 + end.length) {
+                return false;
+            }
+            try (RandomAccessFile file = new RandomAccessFile(part.toFile(), "r")) {
+                byte[] head = new byte[start.length + 1];
+                file.readFully(head);
+                byte[] tail = new byte[end.length + 1];
+                file.seek(file.length() - tail.length);
+                file.readFully(tail);
+                return Arrays.equals(head, 0, start.length, start, 0, start.length) && head[start.length] == '{'
+                        && tail[0] == '}' && Arrays.equals(tail, 1, tail.length, end, 0, end.length);
+            }
+        }
+
+        private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            while (length > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                out.write(buffer, 0, n);
+                length -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a solution or project in independent shards on the agent, see
+ * {@link MsBuildProjectGraph#getShards}, and writes for each of them a
+ * project building its projects, to be given to its own MSBuild process.
+ * <p>
+ * As when building the solution, the projects of a solution are built in the
+ * configuration the solution maps them to, and only if the solution builds
+ * them in the configuration given to MSBuild.
+ */
+final class MsBuildShards extends MasterToSlaveFileCallable<MsBuildShards.Result> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** The targets forwarded to the projects of a shard. */
+    private static final List<String> TARGETS = List.of("Build", "Rebuild", "Clean", "Restore");
+
+    /** The switches giving the targets on the command line of MSBuild. */
+    private static final Pattern TARGET_SWITCH = Pattern.compile("(?:/|-{1,2})t(?:arget)?:(.*)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String msBuildFile;
+    private final int count;
+    private final String tmpDir;
+
+    /**
+     * @param msBuildFile the solution or project, relative to the working
+     *                    directory
+     * @param count       the maximum number of shards
+     * @param tmpDir      the directory where to write the projects of the
+     *                    shards
+     */
+    MsBuildShards(String msBuildFile, int count, String tmpDir) {
+        this.msBuildFile = msBuildFile;
+        this.count = count;
+        this.tmpDir = tmpDir;
+    }
+
+    @Override
+    public Result invoke(File pwd, VirtualChannel channel) throws IOException {
+        long start = System.currentTimeMillis();
+        Path file = pwd.toPath().resolve(msBuildFile).toAbsolutePath().normalize();
+        if (!Files.isRegularFile(file)) {
+            throw new IOException(file + " does not exist");
+        }
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(file);
+        List<List<Path>> shards = graph.getShards(count);
+        List<String> projects = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        if (shards.size() > 1) {
+            Path dir = Files.createDirectories(new File(tmpDir).toPath());
+            boolean solution = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".sln");
+            for (List<Path> shard : shards) {
+                Path project = Files.createTempFile(dir, "msbuild-shard", ".proj");
+                Files.write(project, traversal(graph, shard, solution ? file : null)
+                        .getBytes(StandardCharsets.UTF_8));
+                projects.add(project.toString());
+                sizes.add(shard.size());
+            }
+        }
+        return new Result(projects, sizes, graph.getProjects().size(), graph.getLevels().size(),
+                graph.getCriticalPath(p -> 1).size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @param arguments the command line of MSBuild
+     * @return the targets given on the command line that the projects of the
+     *         shards cannot build, e.g. {@code Publish} or
+     *         {@code App:Rebuild}
+     */
+    static List<String> getUnsupportedTargets(List<String> arguments) {
+        List<String> unsupported = new ArrayList<>();
+        for (String argument : arguments) {
+            Matcher m = TARGET_SWITCH.matcher(argument);
+            if (!m.matches()) {
+                continue;
+            }
+            for (String target : m.group(1).split("[;,]")) {
+                target = target.trim();
+                if (!target.isEmpty() && TARGETS.stream().noneMatch(target::equalsIgnoreCase)) {
+                    unsupported.add(target);
+                }
+            }
+        }
+        return unsupported;
+    }
+
+    /**
+     * @param shard    projects of the graph
+     * @param solution the solution the graph is loaded from, or {@code null}
+     * @return a project building the given ones with the {@link #TARGETS}
+     */
+    static String traversal(MsBuildProjectGraph graph, List<Path> shard, Path solution) {
+        List<String> configurations = graph.getSolutionConfigurations();
+        StringBuilder xml = new StringBuilder();
+        xml.append("<Project DefaultTargets=\"Build\">\n");
+        if (solution != null) {
+            // set for each project of a solution when building the solution
+            String dir = solution.getParent().toString();
+            String name = solution.getFileName().toString();
+            xml.append("  <PropertyGroup>\n");
+            String defaultConfiguration = graph.getDefaultSolutionConfiguration();
+            if (defaultConfiguration != null) {
+                // chosen separately, e.g. the platform when only /p:Configuration=Release is given
+                xml.append("    <Configuration Condition=\"'$(Configuration)' == ''\">")
+                        .append(escape(MsBuildProjectGraph.withPlatform(defaultConfiguration).split("\\|", 2)[0]))
+                        .append("</Configuration>\n");
+                xml.append("    <Platform Condition=\"'$(Platform)' == ''\">")
+                        .append(escape(graph.getDefaultSolutionPlatform())).append("</Platform>\n");
+            }
+            xml.append("    <ShardProperties>SolutionDir=").append(escape(dir.endsWith(File.separator)
+                    ? dir : dir + File.separator))
+                    .append(";SolutionPath=").append(escape(solution.toString()))
+                    .append(";SolutionFileName=").append(escape(name))
+                    .append(";SolutionName=").append(escape(name.substring(0, name.lastIndexOf('.'))))
+                    .append(";SolutionExt=.sln</ShardProperties>\n");
+            xml.append("  </PropertyGroup>\n");
+        }
+        if (solution == null || configurations.isEmpty()) {
+            // building the projects no other one references builds the whole shard
+            xml.append("  <ItemGroup>\n");
+            for (Path project : graph.getRoots(shard)) {
+                xml.append("    <ShardProject Include=\"").append(escape(project.toString())).append("\" />\n");
+            }
+            xml.append("  </ItemGroup>\n");
+        } else {
+            for (String configuration : configurations) {
+                appendSolutionConfiguration(xml, graph, shard, configuration);
+            }
+        }
+        for (String target : TARGETS) {
+            xml.append("  <Target Name=\"").append(target).append("\">\n");
+            if (solution != null && !configurations.isEmpty()) {
+                xml.append("    <Error Condition=\"'$(ShardConfiguration)' == ''\" Text=\"The solution configuration "
+                        + "&quot;$(Configuration)|$(Platform)&quot; is not in ").append(escape(solution.toString()))
+                        .append(".\" />\n");
+            }
+            xml.append("    <MSBuild Projects=\"@(ShardProject)\" Targets=\"").append(target)
+                    .append("\" Properties=\"$(ShardProperties)\" BuildInParallel=\"true\" />\n");
+            xml.append("  </Target>\n");
+        }
+        xml.append("</Project>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Append the projects of a shard that the solution builds in one of its
+     * configurations, each in the configuration the solution maps it to, and
+     * the mapping of all its projects for the projects they reference, as
+     * the solution does.
+     */
+    private static void appendSolutionConfiguration(StringBuilder xml, MsBuildProjectGraph graph, List<Path> shard,
+            String configuration) {
+        String condition = " Condition=\"'$(Configuration)|$(Platform)' == '" + escape(configuration) + "'\"";
+        StringBuilder contents = new StringBuilder("<SolutionConfiguration>");
+        for (Path project : graph.getProjects()) {
+            MsBuildProjectGraph.SolutionProject solutionProject = graph.getSolutionProject(project);
+            String mapped = solutionProject != null ? solutionProject.getConfiguration(configuration) : null;
+            if (mapped != null) {
+                contents.append("<ProjectConfiguration Project=\"").append(solutionProject.getGuid())
+                        .append("\" AbsolutePath=\"").append(escapeXml(project.toString()))
+                        .append("\" BuildProjectInSolution=\"")
+                        .append(solutionProject.isBuilt(configuration) ? "True" : "False").append("\">")
+                        .append(escapeXml(mapped)).append("</ProjectConfiguration>");
+            }
+        }
+        contents.append("</SolutionConfiguration>");
+        xml.append("  <PropertyGroup").append(condition).append(">\n");
+        xml.append("    <ShardConfiguration>").append(escape(configuration)).append("</ShardConfiguration>\n");
+        xml.append("    <ShardProperties>$(ShardProperties);CurrentSolutionConfigurationContents=")
+                .append(escape(contents.toString())).append("</ShardProperties>\n");
+        xml.append("  </PropertyGroup>\n");
+        xml.append("  <ItemGroup").append(condition).append(">\n");
+        for (Path project : shard) {
+            MsBuildProjectGraph.SolutionProject solutionProject = graph.getSolutionProject(project);
+            if (solutionProject != null && solutionProject.isBuilt(configuration)) {
+                String[] mapped = solutionProject.getConfiguration(configuration).split("\\|", 2);
+                xml.append("    <ShardProject Include=\"").append(escape(project.toString()))
+                        .append("\" AdditionalProperties=\"Configuration=").append(escape(mapped[0]));
+                if (mapped.length > 1) {
+                    xml.append(";Platform=").append(escape(mapped[1]));
+                }
+                xml.append("\" />\n");
+            }
+        }
+        xml.append("  </ItemGroup>\n");
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    /**
+     * Escape a value for MSBuild, then for XML.
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '%': case '$': case '@': case ';': case '\'': case '*': case '?':
+                escaped.append('%').append(String.format("%02X", (int) c));
+                break;
+            case '&':
+                escaped.append("&amp;");
+                break;
+            case '<':
+                escaped.append("&lt;");
+                break;
+            case '>':
+                escaped.append("&gt;");
+                break;
+            case '"':
+                escaped.append("&quot;");
+                break;
+            default:
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * The projects written for the shards, none if the solution or project
+     * cannot be split, and what was found about its projects.
+     */
+    static final class Result implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> projects;
+        private final List<Integer> sizes;
+        private final int projectCount;
+        private final int levels;
+        private final int criticalPath;
+        private final long millis;
+
+        Result(List<String> projects, List<Integer> sizes, int projectCount, int levels, int criticalPath,
+                long millis) {
+            this.projects = projects;
+            this.sizes = sizes;
+            this.projectCount = projectCount;
+            this.levels = levels;
+            this.criticalPath = criticalPath;
+            this.millis = millis;
+        }
+
+        /**
+         * @return the paths of the projects building each shard
+         */
+        List<String> getProjects() {
+            return Collections.unmodifiableList(projects);
+        }
+
+        /**
+         * @return the number of projects in each shard
+         */
+        List<Integer> getSizes() {
+            return Collections.unmodifiableList(sizes);
+        }
+
+        int getProjectCount() {
+            return projectCount;
+        }
+
+        int getLevels() {
+            return levels;
+        }
+
+        /**
+         * @return the number of projects on the longest chain of references
+         */
+        int getCriticalPath() {
+            return criticalPath;
+        }
+
+        long getMillis() {
+            return millis;
+        }
+    }
+}
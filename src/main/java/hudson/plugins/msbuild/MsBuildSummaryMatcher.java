@@ -0,0 +1,300 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the "N Warning(s)" and "N Error(s)" summary lines of MSBuild, in all
+ * the languages of the MSBuild language packs.
+ * <p>
+ * The keywords of all the languages are encoded in the console charset and
+ * compiled into a single trie of bytes. A line is scanned once whatever the
+ * number of languages, and a byte which cannot start a keyword only costs a
+ * table lookup.
+ */
+final class MsBuildSummaryMatcher {
+
+    /**
+     * The summary lines of each language, {@code {0}} being the count. The first
+     * template of a pair is the warnings, the second one the errors.
+     */
+    static final String[][] TEMPLATES = {
+        { "en", "{0} Warning(s)", "{0} Error(s)" },
+        { "cs", "Po\u010det upozorn\u011bn\u00ed: {0}", "Po\u010det chyb: {0}" },
+        { "de", "{0} Warnung(en)", "{0} Fehler" },
+        { "es", "{0} Advertencia(s)", "{0} Errores" },
+        { "fr", "{0} Avertissement(s)", "{0} Erreur(s)" },
+        { "it", "{0} avvisi", "{0} errori" },
+        { "ja", "{0} \u500b\u306e\u8b66\u544a", "{0} \u30a8\u30e9\u30fc" },
+        { "ko", "\uacbd\uace0 {0}\uac1c", "\uc624\ub958 {0}\uac1c" },
+        { "pl", "Ostrze\u017cenia: {0}", "B\u0142\u0119dy: {0}" },
+        { "pt-BR", "{0} Aviso(s)", "{0} Erro(s)" },
+        { "ru", "\u041f\u0440\u0435\u0434\u0443\u043f\u0440\u0435\u0436\u0434\u0435\u043d\u0438\u0439: {0}",
+            "\u041e\u0448\u0438\u0431\u043e\u043a: {0}" },
+        { "tr", "{0} Uyar\u0131", "{0} Hata" },
+        { "zh-Hans", "{0} \u4e2a\u8b66\u544a", "{0} \u4e2a\u9519\u8bef" },
+        { "zh-Hant", "{0} \u500b\u8b66\u544a", "{0} \u500b\u932f\u8aa4" },
+    };
+
+    /** Returned by {@link #find} when the line is not a summary line. */
+    static final long NONE = -1;
+
+    private static final Map<Charset, MsBuildSummaryMatcher> MATCHERS = new ConcurrentHashMap<>();
+
+    /**
+     * A keyword of the trie: the text on one side of the count, and the text
+     * expected on the other side.
+     */
+    private static final class Entry {
+        final MsBuildDiagnostics.Severity severity;
+        /** Whether the keyword follows the count, as in "{0} Warning(s)". */
+        final boolean afterCount;
+        /** The text between the count and the end of the line, if the keyword precedes the count. */
+        final byte[] suffix;
+
+        Entry(MsBuildDiagnostics.Severity severity, boolean afterCount, byte[] suffix) {
+            this.severity = severity;
+            this.afterCount = afterCount;
+            this.suffix = suffix;
+        }
+    }
+
+    private final Entry[] entries;
+    /** Node reached from the root with each byte, or -1. */
+    private final int[] root = new int[256];
+    /** For each node, the bytes leading to its children, and the children. */
+    private final byte[][] labels;
+    private final int[][] children;
+    /** For each node, the index of the keyword ending there, or -1. */
+    private final int[] keywords;
+
+    private MsBuildSummaryMatcher(Charset charset) {
+        CharsetEncoder encoder = charset.newEncoder();
+        List<Entry> list = new ArrayList<>();
+        TrieBuilder builder = new TrieBuilder();
+        for (String[] language : TEMPLATES) {
+            for (int i = 1; i < language.length; i++) {
+                String template = language[i];
+                if (!encoder.canEncode(template)) {
+                    continue;
+                }
+                MsBuildDiagnostics.Severity severity = i == 1 ? MsBuildDiagnostics.Severity.WARNING
+                        : MsBuildDiagnostics.Severity.ERROR;
+                int count = template.indexOf("{0}");
+                String before = template.substring(0, count).trim();
+                String after = template.substring(count + 3).trim();
+                Entry entry;
+                String keyword;
+                if (before.isEmpty()) {
+                    entry = new Entry(severity, true, null);
+                    keyword = after;
+                } else {
+                    entry = new Entry(severity, false, after.getBytes(charset));
+                    keyword = before;
+                }
+                builder.add(keyword.getBytes(charset), list.size());
+                list.add(entry);
+            }
+        }
+        this.entries = list.toArray(new Entry[0]);
+        int nodes = builder.children.size();
+        this.labels = new byte[nodes][];
+        this.children = new int[nodes][];
+        this.keywords = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            Map<Byte, Integer> next = builder.children.get(node);
+            labels[node] = new byte[next.size()];
+            children[node] = new int[next.size()];
+            int k = 0;
+            for (Map.Entry<Byte, Integer> e : next.entrySet()) {
+                labels[node][k] = e.getKey();
+                children[node][k] = e.getValue();
+                k++;
+            }
+            keywords[node] = builder.keywords.get(node);
+        }
+        Arrays.fill(root, -1);
+        for (int k = 0; k < labels[0].length; k++) {
+            root[labels[0][k] & 0xff] = children[0][k];
+        }
+    }
+
+    /**
+     * @param charset a charset which encodes the ASCII characters as single
+     *                bytes, see {@link MsBuildConsoleParser#isAsciiCompatible}
+     */
+    static MsBuildSummaryMatcher forCharset(Charset charset) {
+        return MATCHERS.computeIfAbsent(charset, MsBuildSummaryMatcher::new);
+    }
+
+    static MsBuildSummaryMatcher utf8() {
+        return forCharset(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Find a summary line.
+     *
+     * @return {@link #NONE}, or the severity and the count, see
+     *         {@link #severity} and {@link #count}
+     */
+    long find(byte[] b, int len) {
+        for (int start = 0; start < len; start++) {
+            int node = root[b[start] & 0xff];
+            int end = start + 1;
+            while (node >= 0) {
+                int keyword = keywords[node];
+                if (keyword >= 0) {
+                    long found = check(entries[keyword], b, start, end, len);
+                    if (found != NONE) {
+                        return found;
+                    }
+                }
+                node = end < len ? child(node, b[end]) : -1;
+                end++;
+            }
+        }
+        return NONE;
+    }
+
+    static MsBuildDiagnostics.Severity severity(long found) {
+        return MsBuildDiagnostics.Severity.values()[(int) (found >>> 32)];
+    }
+
+    static int count(long found) {
+        return (int) found;
+    }
+
+    private int child(int node, byte label) {
+        byte[] l = labels[node];
+        for (int k = 0; k < l.length; k++) {
+            if (l[k] == label) {
+                return children[node][k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check the count around the keyword found between {@code start} and
+     * {@code end}, and that nothing but whitespace follows.
+     */
+    private static long check(Entry entry, byte[] b, int start, int end, int len) {
+        int digitsStart;
+        int digitsEnd;
+        int rest;
+        if (entry.afterCount) {
+            // "\d+\s+keyword"
+            digitsEnd = start;
+            while (digitsEnd > 0 && isWhitespace(b[digitsEnd - 1])) {
+                digitsEnd--;
+            }
+            if (digitsEnd == start) {
+                return NONE;
+            }
+            digitsStart = digitsEnd;
+            while (digitsStart > 0 && isDigit(b[digitsStart - 1])) {
+                digitsStart--;
+            }
+            rest = end;
+        } else {
+            // "keyword\s*\d+suffix"
+            digitsStart = end;
+            while (digitsStart < len && isWhitespace(b[digitsStart])) {
+                digitsStart++;
+            }
+            digitsEnd = digitsStart;
+            while (digitsEnd < len && isDigit(b[digitsEnd])) {
+                digitsEnd++;
+            }
+            rest = digitsEnd + entry.suffix.length;
+            if (rest > len || !Arrays.equals(b, digitsEnd, rest, entry.suffix, 0, entry.suffix.length)) {
+                return NONE;
+            }
+        }
+        if (digitsStart == digitsEnd) {
+            return NONE;
+        }
+        for (int i = rest; i < len; i++) {
+            if (!isWhitespace(b[i])) {
+                return NONE;
+            }
+        }
+        long count = 0;
+        for (int i = digitsStart; i < digitsEnd && count <= Integer.MAX_VALUE; i++) {
+            count = count * 10 + (b[i] - '0');
+        }
+        if (count > Integer.MAX_VALUE) {
+            return NONE;
+        }
+        return (long) entry.severity.ordinal() << 32 | count;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /**
+     * The trie while it is built, node 0 being the root.
+     */
+    private static final class TrieBuilder {
+        final List<Map<Byte, Integer>> children = new ArrayList<>();
+        final List<Integer> keywords = new ArrayList<>();
+
+        TrieBuilder() {
+            newNode();
+        }
+
+        private int newNode() {
+            children.add(new TreeMap<>());
+            keywords.add(-1);
+            return children.size() - 1;
+        }
+
+        void add(byte[] keyword, int index) {
+            int node = 0;
+            for (byte c : keyword) {
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = newNode();
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            keywords.set(node, index);
+        }
+    }
+}
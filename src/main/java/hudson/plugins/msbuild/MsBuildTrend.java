@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.model.Job;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The number of errors and warnings of the last {@link #CAPACITY} builds of a
+ * job.
+ * <p>
+ * The counts are kept in a ring buffer of primitive arrays, sorted by build
+ * number, and saved in {@value #FILE_NAME} in the directory of the job so that
+ * the trend can be drawn without loading the builds.
+ */
+final class MsBuildTrend {
+
+    private static final Logger LOGGER = Logger.getLogger(MsBuildTrend.class.getName());
+
+    static final String FILE_NAME = "msbuild-trend.bin";
+
+    /** Number of builds kept. */
+    static final int CAPACITY = 100;
+
+    private static final int MAGIC = 0x4D534254;
+    private static final int VERSION = 1;
+
+    /** Serializes the updates of the files, which only happen once per step. */
+    private static final Object LOCK = new Object();
+
+    private final int[] numbers = new int[CAPACITY];
+    private final int[] errors = new int[CAPACITY];
+    private final int[] warnings = new int[CAPACITY];
+    /** Physical index of the oldest build. */
+    private int head;
+    private int size;
+
+    /**
+     * Record the counts of a build in the trend of its job.
+     */
+    static void record(Job<?, ?> job, int number, int errors, int warnings) throws IOException {
+        File file = getFile(job);
+        synchronized (LOCK) {
+            MsBuildTrend trend = load(file);
+            trend.put(number, errors, warnings);
+            trend.save(file);
+        }
+    }
+
+    /**
+     * @return the trend of the job, empty if it cannot be read
+     */
+    static MsBuildTrend load(Job<?, ?> job) {
+        return load(getFile(job));
+    }
+
+    static File getFile(Job<?, ?> job) {
+        return new File(job.getRootDir(), FILE_NAME);
+    }
+
+    static MsBuildTrend load(File file) {
+        MsBuildTrend trend = new MsBuildTrend();
+        if (file.exists()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                trend.readFrom(in);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+                trend = new MsBuildTrend();
+            }
+        }
+        return trend;
+    }
+
+    void save(File file) throws IOException {
+        File tmp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            writeTo(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Set the counts of a build. Builds finishing out of order are inserted at
+     * their place, and the oldest build is dropped once the buffer is full.
+     */
+    void put(int number, int errorCount, int warningCount) {
+        int pos = size;
+        while (pos > 0 && getNumber(pos - 1) > number) {
+            pos--;
+        }
+        if (pos > 0 && getNumber(pos - 1) == number) {
+            int i = index(pos - 1);
+            errors[i] = errorCount;
+            warnings[i] = warningCount;
+            return;
+        }
+        if (size == CAPACITY) {
+            if (pos == 0) {
+                return;
+            }
+            head = index(1);
+            size--;
+            pos--;
+        }
+        for (int k = size; k > pos; k--) {
+            int to = index(k);
+            int from = index(k - 1);
+            numbers[to] = numbers[from];
+            errors[to] = errors[from];
+            warnings[to] = warnings[from];
+        }
+        int i = index(pos);
+        numbers[i] = number;
+        errors[i] = errorCount;
+        warnings[i] = warningCount;
+        size++;
+    }
+
+    private int index(int position) {
+        return (head + position) % CAPACITY;
+    }
+
+    /**
+     * @return the number of builds, at most {@link #CAPACITY}
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param position from 0 for the oldest build to {@code size() - 1} for the
+     *                 newest
+     */
+    int getNumber(int position) {
+        return numbers[index(position)];
+    }
+
+    int getErrors(int position) {
+        return errors[index(position)];
+    }
+
+    int getWarnings(int position) {
+        return warnings[index(position)];
+    }
+
+    /**
+     * @return the highest count of errors or warnings
+     */
+    int getMaxCount() {
+        int max = 0;
+        for (int k = 0; k < size; k++) {
+            int i = index(k);
+            max = Math.max(max, Math.max(errors[i], warnings[i]));
+        }
+        return max;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(size);
+        for (int k = 0; k < size; k++) {
+            int i = index(k);
+            data.writeInt(numbers[i]);
+            data.writeInt(errors[i]);
+            data.writeInt(warnings[i]);
+        }
+        data.flush();
+    }
+
+    private void readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an MSBuild trend file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported MSBuild trend version " + version);
+        }
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid MSBuild trend size " + count);
+        }
+        for (int k = 0; k < count; k++) {
+            put(data.readInt(), data.readInt(), data.readInt());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014, Kyle Sweeney, Gregory Boissinot and other contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.msbuild;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Job;
+import jenkins.model.TransientActionFactory;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The trend of the errors and warnings of the builds of a job, drawn from its
+ * {@link MsBuildTrend} and also available through the remote API.
+ */
+@ExportedBean
+public class MsBuildTrendAction implements Action {
+
+    /** Size of the chart, in SVG user units. */
+    static final int CHART_WIDTH = 500;
+    static final int CHART_HEIGHT = 200;
+
+    private final Job<?, ?> job;
+
+    MsBuildTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * @return the counts of the last builds, newest first
+     */
+    @Exported(inline = true)
+    public List<Build> getBuilds() {
+        MsBuildTrend trend = MsBuildTrend.load(job);
+        List<Build> builds = new ArrayList<>(trend.size());
+        for (int k = trend.size() - 1; k >= 0; k--) {
+            builds.add(new Build(trend.getNumber(k), trend.getErrors(k), trend.getWarnings(k)));
+        }
+        return builds;
+    }
+
+    /**
+     * @return the chart of the trend, or null if there are less than two builds
+     */
+    public Chart getChart() {
+        MsBuildTrend trend = MsBuildTrend.load(job);
+        return trend.size() < 2 ? null : new Chart(trend);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.MsBuildTrendAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "msbuild-trend";
+    }
+
+    /**
+     * The counts of one build.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Build {
+        private final int number;
+        private final int errors;
+        private final int warnings;
+
+        Build(int number, int errors, int warnings) {
+            this.number = number;
+            this.errors = errors;
+            this.warnings = warnings;
+        }
+
+        @Exported
+        public int getNumber() {
+            return number;
+        }
+
+        @Exported
+        public int getErrors() {
+            return errors;
+        }
+
+        @Exported
+        public int getWarnings() {
+            return warnings;
+        }
+    }
+
+    /**
+     * The polylines of the errors and warnings, scaled to
+     * {@link #CHART_WIDTH} by {@link #CHART_HEIGHT}.
+     */
+    public static final class Chart {
+        private final MsBuildTrend trend;
+        private final int maxCount;
+
+        Chart(MsBuildTrend trend) {
+            this.trend = trend;
+            this.maxCount = Math.max(trend.getMaxCount(), 1);
+        }
+
+        public int getWidth() {
+            return CHART_WIDTH;
+        }
+
+        public int getHeight() {
+            return CHART_HEIGHT;
+        }
+
+        public int getMaxCount() {
+            return maxCount;
+        }
+
+        public int getFirstBuild() {
+            return trend.getNumber(0);
+        }
+
+        public int getLastBuild() {
+            return trend.getNumber(trend.size() - 1);
+        }
+
+        public String getErrorPoints() {
+            return points(true);
+        }
+
+        public String getWarningPoints() {
+            return points(false);
+        }
+
+        private String points(boolean errors) {
+            StringBuilder points = new StringBuilder(trend.size() * 12);
+            int last = trend.size() - 1;
+            for (int k = 0; k <= last; k++) {
+                int count = errors ? trend.getErrors(k) : trend.getWarnings(k);
+                long x = (long) k * CHART_WIDTH / last;
+                long y = CHART_HEIGHT - (long) count * CHART_HEIGHT / maxCount;
+                if (k > 0) {
+                    points.append(' ');
+                }
+                points.append(x).append(',').append(y);
+            }
+            return points.toString();
+        }
+    }
+
+    /**
+     * Adds the trend to the jobs having one.
+     */
+    @Extension
+    public static final class Factory extends TransientActionFactory<AbstractProject> {
+        @Override
+        public Class<AbstractProject> type() {
+            return AbstractProject.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(AbstractProject target) {
+            if (!MsBuildTrend.getFile(target).exists()) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new MsBuildTrendAction(target));
+        }
+    }
+}
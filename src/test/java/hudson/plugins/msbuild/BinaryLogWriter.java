@@ -0,0 +1,197 @@
+package hudson.plugins.msbuild;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static hudson.plugins.msbuild.MsBuildBinaryLogReader.*;
+
+/**
+ * Writes binary logs laid out like the ones of MSBuild, for the tests.
+ */
+class BinaryLogWriter implements AutoCloseable {
+
+    /** 2024-01-01T00:00:00Z in .NET ticks. */
+    static final long TICKS = 638396640000000000L;
+
+    private final OutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    BinaryLogWriter(OutputStream out) throws IOException {
+        this(out, MIN_FILE_FORMAT_VERSION);
+    }
+
+    BinaryLogWriter(OutputStream out, int version) throws IOException {
+        this.out = new GZIPOutputStream(out);
+        writeInt32(this.out, version);
+        writeInt32(this.out, MIN_FILE_FORMAT_VERSION);
+    }
+
+    void error(String file, int line, int column, String code, String message, String projectFile) throws IOException {
+        diagnostic(ERROR, file, line, column, code, message, projectFile);
+    }
+
+    void warning(String file, int line, int column, String code, String message, String projectFile)
+            throws IOException {
+        diagnostic(WARNING, file, line, column, code, message, projectFile);
+    }
+
+    void diagnostic(int kind, String file, int line, int column, String code, String message, String projectFile,
+            String... arguments) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        int flags = FLAG_MESSAGE | FLAG_BUILD_EVENT_CONTEXT | FLAG_SENDER_NAME | FLAG_TIMESTAMP;
+        if (arguments.length > 0) {
+            flags |= FLAG_ARGUMENTS;
+        }
+        fields(record, flags, message, 0, 0);
+        if (arguments.length > 0) {
+            write7BitEncodedInt(record, arguments.length);
+            for (String argument : arguments) {
+                string(record, argument);
+            }
+        }
+        string(record, null); // subcategory
+        string(record, code);
+        string(record, file);
+        string(record, projectFile);
+        write7BitEncodedInt(record, line);
+        write7BitEncodedInt(record, column);
+        write7BitEncodedInt(record, 0);
+        write7BitEncodedInt(record, 0);
+        record(kind, record);
+    }
+
+    void projectStarted(String projectFile) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        fields(record, FLAG_BUILD_EVENT_CONTEXT | FLAG_TIMESTAMP, null, 0, 0);
+        record.write(0); // no parent
+        string(record, projectFile);
+        write7BitEncodedInt(record, 1); // project id
+        string(record, "Build");
+        record(PROJECT_STARTED, record);
+    }
+
+    void projectFinished(String projectFile, boolean succeeded) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        fields(record, FLAG_BUILD_EVENT_CONTEXT | FLAG_TIMESTAMP, null, 0, 0);
+        string(record, projectFile);
+        record.write(succeeded ? 1 : 0);
+        record(PROJECT_FINISHED, record);
+    }
+
+    void targetStarted(String projectFile, String target, int targetId, long millis) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        fields(record, FLAG_BUILD_EVENT_CONTEXT | FLAG_TIMESTAMP, null, targetId, millis);
+        string(record, target);
+        string(record, projectFile);
+        string(record, "Microsoft.Common.targets");
+        string(record, null); // parent target
+        write7BitEncodedInt(record, 0); // build reason
+        record(TARGET_STARTED, record);
+    }
+
+    void targetFinished(String projectFile, String target, int targetId, long millis, boolean succeeded)
+            throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        fields(record, FLAG_BUILD_EVENT_CONTEXT | FLAG_TIMESTAMP, null, targetId, millis);
+        record.write(succeeded ? 1 : 0);
+        string(record, projectFile);
+        string(record, "Microsoft.Common.targets");
+        string(record, target);
+        write7BitEncodedInt(record, 0); // no target outputs
+        record(TARGET_FINISHED, record);
+    }
+
+    /** A message, which the reader does not need. */
+    void message(String message) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        fields(record, FLAG_MESSAGE | FLAG_TIMESTAMP, message, 0, 0);
+        write7BitEncodedInt(record, 1); // importance
+        record(11, record);
+    }
+
+    /** A record of a kind unknown to the reader. */
+    void unknown(int kind, int length) throws IOException {
+        record(kind, new ByteArrayOutputStream() {
+            {
+                write(new byte[length], 0, length);
+            }
+        });
+    }
+
+    void end() throws IOException {
+        write7BitEncodedInt(out, END_OF_FILE);
+    }
+
+    private void fields(ByteArrayOutputStream record, int flags, String message, int targetId, long millis)
+            throws IOException {
+        write7BitEncodedInt(record, flags);
+        if ((flags & FLAG_MESSAGE) != 0) {
+            string(record, message);
+        }
+        if ((flags & FLAG_BUILD_EVENT_CONTEXT) != 0) {
+            for (int id : new int[] { 1, 2, targetId, -1, 0, 3, -1 }) {
+                write7BitEncodedInt(record, id);
+            }
+        }
+        if ((flags & FLAG_SENDER_NAME) != 0) {
+            string(record, "Csc");
+        }
+        if ((flags & FLAG_TIMESTAMP) != 0) {
+            long ticks = TICKS + millis * 10000;
+            for (int shift = 0; shift < 64; shift += 8) {
+                record.write((int) (ticks >>> shift));
+            }
+            write7BitEncodedInt(record, 1); // DateTimeKind.Utc
+        }
+    }
+
+    /** Write the index of a string, writing its record first if needed. */
+    private void string(ByteArrayOutputStream record, String value) throws IOException {
+        if (value == null) {
+            write7BitEncodedInt(record, 0);
+        } else if (value.isEmpty()) {
+            write7BitEncodedInt(record, 1);
+        } else {
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = STRING_START_INDEX + strings.size();
+                strings.put(value, index);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                write7BitEncodedInt(out, STRING);
+                write7BitEncodedInt(out, bytes.length);
+                out.write(bytes);
+            }
+            write7BitEncodedInt(record, index);
+        }
+    }
+
+    private void record(int kind, ByteArrayOutputStream record) throws IOException {
+        write7BitEncodedInt(out, kind);
+        write7BitEncodedInt(out, record.size());
+        record.writeTo(out);
+    }
+
+    static void write7BitEncodedInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeInt32(OutputStream out, int value) throws IOException {
+        for (int shift = 0; shift < 32; shift += 8) {
+            out.write(value >>> shift);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,205 @@
+package hudson.plugins.msbuild;
+
+import hudson.plugins.msbuild.MsBuildBinaryLogReader.Event;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildBinaryLogReaderTest {
+
+    private static final String PROJECT = "C:\\src\\App\\App.csproj";
+
+    @Test
+    void testSampleBinaryLog() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("sample.binlog")) {
+            assertNotNull(in);
+            MsBuildDiagnostics diagnostics = MsBuildBinaryLogReader.readDiagnostics(in);
+
+            assertEquals(3, diagnostics.size());
+            assertEquals(2, diagnostics.count(MsBuildDiagnostics.Severity.WARNING));
+            assertEquals(1, diagnostics.count(MsBuildDiagnostics.Severity.ERROR));
+            assertEquals("C:\\src\\App\\Program.cs", diagnostics.getFile(0));
+            assertEquals(12, diagnostics.getLine(0));
+            assertEquals(17, diagnostics.getColumn(0));
+            assertEquals("CS0168", diagnostics.getCode(0));
+            assertEquals("The variable 'e' is declared but never used", diagnostics.getMessage(0));
+            assertEquals(PROJECT, diagnostics.getProject(0));
+        }
+    }
+
+    @Test
+    void testEvents() throws IOException {
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog)) {
+            writer.projectStarted(PROJECT);
+            writer.targetStarted(PROJECT, "CoreCompile", 7, 1000);
+            writer.message("CoreCompile is running");
+            writer.warning("Program.cs", 12, 17, "CS0168", "The variable 'e' is declared but never used", PROJECT);
+            writer.error("Program.cs", 20, 1, "CS0103", "The name 'x' does not exist in the current context",
+                    PROJECT);
+            writer.targetFinished(PROJECT, "CoreCompile", 7, 3500, false);
+            writer.projectFinished(PROJECT, false);
+            writer.end();
+        }
+
+        List<Event> events = read(binlog.toByteArray());
+
+        assertEquals(6, events.size());
+        assertEquals(Event.Kind.PROJECT_STARTED, events.get(0).getKind());
+        assertEquals(PROJECT, events.get(0).getProjectFile());
+        assertEquals(1704067200000L, events.get(0).getTimestamp());
+
+        Event started = events.get(1);
+        assertEquals(Event.Kind.TARGET_STARTED, started.getKind());
+        assertEquals("CoreCompile", started.getTargetName());
+        assertEquals(1704067201000L, started.getTimestamp());
+
+        Event warning = events.get(2);
+        assertEquals(Event.Kind.WARNING, warning.getKind());
+        assertEquals("Program.cs", warning.getFile());
+        assertEquals(12, warning.getLine());
+        assertEquals(17, warning.getColumn());
+        assertEquals("CS0168", warning.getCode());
+        assertEquals(PROJECT, warning.getProjectFile());
+        assertEquals(1, warning.getNodeId());
+
+        assertEquals(Event.Kind.ERROR, events.get(3).getKind());
+        assertEquals("The name 'x' does not exist in the current context", events.get(3).getMessage());
+
+        Event finished = events.get(4);
+        assertEquals(Event.Kind.TARGET_FINISHED, finished.getKind());
+        assertEquals("CoreCompile", finished.getTargetName());
+        assertEquals(PROJECT, finished.getProjectFile());
+        assertFalse(finished.isSucceeded());
+        assertEquals(2500, finished.getDuration());
+
+        assertEquals(Event.Kind.PROJECT_FINISHED, events.get(5).getKind());
+        assertFalse(events.get(5).isSucceeded());
+    }
+
+    @Test
+    void testUnknownRecordsAreSkipped() throws IOException {
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog)) {
+            writer.unknown(MsBuildBinaryLogReader.NAME_VALUE_LIST, 100);
+            writer.unknown(17, 100_000); // embedded project files
+            writer.unknown(200, 3);
+            writer.warning("Program.cs", 1, 1, "CS0168", "unused", PROJECT);
+            writer.end();
+        }
+
+        List<Event> events = read(binlog.toByteArray());
+
+        assertEquals(1, events.size());
+        assertEquals("unused", events.get(0).getMessage());
+    }
+
+    @Test
+    void testMessageArguments() throws IOException {
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog)) {
+            writer.diagnostic(MsBuildBinaryLogReader.WARNING, "App.csproj", 0, 0, "MSB3277",
+                    "Found conflicts between different versions of \"{0}\" that could not be resolved. {1}", PROJECT,
+                    "System.Text.Json", "{0}");
+            writer.end();
+        }
+
+        assertEquals("Found conflicts between different versions of \"System.Text.Json\" that could not be "
+                + "resolved. {0}", read(binlog.toByteArray()).get(0).getMessage());
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("a {b} {} {2} c", MsBuildBinaryLogReader.format("{0} {b} {} {2} {1}", Arrays.asList("a", "c")));
+        assertNull(MsBuildBinaryLogReader.format(null, Arrays.asList("a")));
+    }
+
+    @Test
+    void testLongStringsAreTruncated() throws IOException {
+        char[] chars = new char[1_000_000];
+        Arrays.fill(chars, '\u00e9');
+        String message = new String(chars);
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog)) {
+            writer.warning("Program.cs", 1, 1, "CS0168", message, PROJECT);
+            writer.warning("Program.cs", 2, 1, "CS0168", "short", PROJECT);
+            writer.end();
+        }
+
+        List<Event> events = read(binlog.toByteArray());
+
+        assertEquals(message.substring(0, MsBuildDiagnostics.MAX_MESSAGE_LENGTH), events.get(0).getMessage());
+        assertEquals("short", events.get(1).getMessage());
+    }
+
+    @Test
+    void testManyRecords() throws IOException {
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog)) {
+            for (int i = 0; i < 100_000; i++) {
+                writer.message("Copying file " + i);
+                if (i % 100 == 0) {
+                    writer.warning("Program.cs", i, 1, "CS0168", "unused", PROJECT);
+                }
+            }
+            writer.end();
+        }
+
+        MsBuildDiagnostics diagnostics = MsBuildBinaryLogReader
+                .readDiagnostics(new ByteArrayInputStream(binlog.toByteArray()));
+
+        assertEquals(1000, diagnostics.size());
+    }
+
+    @Test
+    void testTruncatedLog() throws IOException {
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        // no end of file record, as when MSBuild was killed
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog)) {
+            writer.warning("Program.cs", 1, 1, "CS0168", "unused", PROJECT);
+        }
+
+        assertEquals(1, read(binlog.toByteArray()).size());
+    }
+
+    @Test
+    void testUnsupportedVersion() throws IOException {
+        ByteArrayOutputStream binlog = new ByteArrayOutputStream();
+        try (BinaryLogWriter writer = new BinaryLogWriter(binlog, 14)) {
+            writer.end();
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> new MsBuildBinaryLogReader(new ByteArrayInputStream(binlog.toByteArray())));
+        assertTrue(e.getMessage().contains("14"));
+    }
+
+    @Test
+    void testNotABinaryLog() {
+        byte[] text = "Build succeeded.".getBytes();
+        assertThrows(IOException.class, () -> new MsBuildBinaryLogReader(new ByteArrayInputStream(text)));
+    }
+
+    private static List<Event> read(byte[] binlog) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (MsBuildBinaryLogReader reader = new MsBuildBinaryLogReader(new ByteArrayInputStream(binlog))) {
+            for (Event e = reader.next(); e != null; e = reader.next()) {
+                events.add(e);
+            }
+        }
+        return events;
+    }
+}
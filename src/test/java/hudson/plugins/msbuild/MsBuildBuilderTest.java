@@ -1,5 +1,6 @@
 package hudson.plugins.msbuild;
 
+import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -54,6 +55,33 @@ class MsBuildBuilderTest {
         assertDoesNotThrow(() -> r.configRoundtrip(project));
     }
 
+    @Test
+    void globalConfigRoundtrip(JenkinsRule r) throws Exception {
+        MsBuildBuilder.DescriptorImpl descriptor = r.jenkins.getDescriptorByType(MsBuildBuilder.DescriptorImpl.class);
+        descriptor.setParseOnAgent(true);
+        descriptor.setConsoleBufferSize(256);
+        descriptor.setConsoleOverflow(MsBuildConsolePump.Overflow.SPILL);
+        descriptor.setMaxLineLength(16);
+        descriptor.setAnnotateWhenRendered(true);
+        r.configRoundtrip();
+        assertTrue(descriptor.isParseOnAgent());
+        assertEquals(256, descriptor.getConsoleBufferSize());
+        assertEquals(MsBuildConsolePump.Overflow.SPILL, descriptor.getConsoleOverflow());
+        assertEquals(16, descriptor.getMaxLineLength());
+        assertTrue(descriptor.isAnnotateWhenRendered());
+    }
+
+    @Test
+    void parseOnAgentHighlightsWhenRendered(JenkinsRule r) throws Exception {
+        MsBuildBuilder.DescriptorImpl descriptor = r.jenkins.getDescriptorByType(MsBuildBuilder.DescriptorImpl.class);
+        descriptor.setParseOnAgent(true);
+        FreeStyleProject project = r.createFreeStyleProject();
+        FreeStyleBuild build = r.buildAndAssertSuccess(project);
+        MsBuildBuilder builder = new MsBuildBuilder("", "", "", false, false, false, false);
+        assertFalse(builder.getConsoleOptions(build).isWriteNotes());
+        assertNotNull(build.getAction(MsBuildConsoleAnnotatorFactory.Marker.class));
+    }
+
     @Test
     void testValidCharset() {
         // Assuming CHARSET_CODE_MAP is populated with UTF-8 -> 65001
@@ -0,0 +1,120 @@
+package hudson.plugins.msbuild;
+
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildConcurrentLaunchTest {
+
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private final PrintStream logger = new PrintStream(log, true, StandardCharsets.UTF_8);
+    private final TaskListener listener = () -> logger;
+
+    private static MsBuildLaunchResult result(int exitCode, int warnings) {
+        return new MsBuildLaunchResult(exitCode, warnings, 0, new MsBuildDiagnostics(),
+                new MsBuildPerformanceSummary(), new MsBuildLogIndex());
+    }
+
+    @Test
+    void boundedConcurrency() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Callable<MsBuildLaunchResult>> launches = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int warnings = i;
+            launches.add(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                running.decrementAndGet();
+                return result(0, warnings);
+            });
+        }
+
+        List<MsBuildLaunchResult> results = MsBuildConcurrentLaunch.run(launches, 2, false,
+                List.of("1", "2", "3", "4", "5", "6"), listener);
+
+        assertEquals(2, peak.get());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, results.get(i).getNumberOfWarnings());
+        }
+        MsBuildLaunchResult merged = MsBuildLaunchResult.merge(results);
+        assertEquals(15, merged.getNumberOfWarnings());
+        assertEquals(0, merged.getExitCode());
+        assertNull(merged.getLogIndex());
+    }
+
+    @Test
+    void failureStopsTheOthers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        List<Callable<MsBuildLaunchResult>> launches = new ArrayList<>();
+        launches.add(() -> {
+            started.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return result(0, 0);
+        });
+        launches.add(() -> {
+            started.await();
+            return result(1, 0);
+        });
+        launches.add(() -> result(0, 0));
+
+        long start = System.nanoTime();
+        List<MsBuildLaunchResult> results = MsBuildConcurrentLaunch.run(launches, 2, true,
+                List.of("Debug", "Release", "Other"), listener);
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+        assertNull(results.get(0));
+        assertEquals(1, results.get(1).getExitCode());
+        assertNull(results.get(2));
+        assertEquals(1, MsBuildLaunchResult.merge(results).getExitCode());
+        assertTrue(log.toString(StandardCharsets.UTF_8).contains("because Release failed"));
+    }
+
+    @Test
+    void failureWithoutStoppingTheOthers() throws Exception {
+        List<Callable<MsBuildLaunchResult>> launches = List.of(() -> result(2, 0), () -> result(0, 3));
+
+        List<MsBuildLaunchResult> results = MsBuildConcurrentLaunch.run(launches, 2, false, List.of("a", "b"),
+                listener);
+
+        MsBuildLaunchResult merged = MsBuildLaunchResult.merge(results);
+        assertEquals(2, merged.getExitCode());
+        assertEquals(3, merged.getNumberOfWarnings());
+    }
+
+    @Test
+    void exceptionsAreRethrown() {
+        List<Callable<MsBuildLaunchResult>> launches = List.of(() -> result(0, 0), () -> {
+            throw new IOException("broken");
+        });
+
+        IOException e = assertThrows(IOException.class, () -> MsBuildConcurrentLaunch.run(launches, 2, false,
+                List.of("a", "b"), listener));
+        assertEquals("broken", e.getMessage());
+    }
+
+    @Test
+    void maxProcesses() {
+        long gb = 1024L * 1024 * 1024;
+        assertEquals(4, new MsBuildAgentResources(8, 64 * gb, 32 * gb).getMaxProcesses(4));
+        assertEquals(8, new MsBuildAgentResources(8, 64 * gb, 32 * gb).getMaxProcesses(16));
+        assertEquals(3, new MsBuildAgentResources(8, 16 * gb, 7 * gb).getMaxProcesses(16));
+        assertEquals(1, new MsBuildAgentResources(8, 16 * gb, gb).getMaxProcesses(16));
+        assertEquals(2, new MsBuildAgentResources(2, 0, 0).getMaxProcesses(16));
+    }
+}
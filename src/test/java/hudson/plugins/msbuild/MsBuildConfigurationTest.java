@@ -0,0 +1,54 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildConfigurationTest {
+
+    @Test
+    void configurationsAndPlatforms() {
+        List<MsBuildConfiguration> configurations = MsBuildConfiguration.parse(
+                "Debug|x86\n  Release|Any CPU  \r\n\n# comment\nRelease\n");
+
+        assertEquals(3, configurations.size());
+        assertEquals(List.of("/p:Configuration=Debug", "/p:Platform=x86"), configurations.get(0).toArguments());
+        assertEquals("Any CPU", configurations.get(1).getPlatform());
+        assertEquals("Release|Any CPU", configurations.get(1).toString());
+        assertEquals(List.of("/p:Configuration=Release"), configurations.get(2).toArguments());
+        assertNull(configurations.get(2).getProject());
+    }
+
+    @Test
+    void projects() {
+        List<MsBuildConfiguration> configurations = MsBuildConfiguration.parse(
+                "src/My Tools.sln Debug|x64\nsrc/Lib/Lib.csproj\nApp.vcxproj |Win32");
+
+        assertEquals("src/My Tools.sln", configurations.get(0).getProject());
+        assertEquals("Debug", configurations.get(0).getConfiguration());
+        assertEquals("x64", configurations.get(0).getPlatform());
+        assertEquals("src/Lib/Lib.csproj", configurations.get(1).getProject());
+        assertTrue(configurations.get(1).toArguments().isEmpty());
+        assertEquals("App.vcxproj", configurations.get(2).getProject());
+        assertNull(configurations.get(2).getConfiguration());
+        assertEquals(List.of("/p:Platform=Win32"), configurations.get(2).toArguments());
+    }
+
+    @Test
+    void invalidLines() {
+        assertThrows(IllegalArgumentException.class, () -> MsBuildConfiguration.parse("Release Candidate"));
+        assertThrows(IllegalArgumentException.class, () -> MsBuildConfiguration.parse("Release|"));
+        assertThrows(IllegalArgumentException.class, () -> MsBuildConfiguration.parse("Release|x64|x86"));
+    }
+
+    @Test
+    void none() {
+        assertTrue(MsBuildConfiguration.parse(null).isEmpty());
+        assertTrue(MsBuildConfiguration.parse("\n# nothing\n").isEmpty());
+    }
+}
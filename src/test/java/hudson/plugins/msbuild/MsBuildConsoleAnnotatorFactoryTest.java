@@ -0,0 +1,60 @@
+package hudson.plugins.msbuild;
+
+import hudson.MarkupText;
+import hudson.console.ConsoleAnnotator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MsBuildConsoleAnnotatorFactoryTest {
+
+    private final ConsoleAnnotator<Object> annotator = new MsBuildConsoleAnnotatorFactory.Annotator();
+
+    private String annotate(String line) {
+        MarkupText text = new MarkupText(line);
+        assertSame(annotator, annotator.annotate(null, text));
+        return text.toString(false);
+    }
+
+    @Test
+    void testErrorLine() {
+        String line = "C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n";
+        assertEquals("<span class=error-inline>" + line + "</span>", annotate(line));
+    }
+
+    @Test
+    void testWarningLine() {
+        String line = "C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message\n";
+        assertEquals("<span class=warning-inline>" + line + "</span>", annotate(line));
+    }
+
+    @Test
+    void testOtherLines() {
+        assertEquals("Build succeeded.\r\n", annotate("Build succeeded.\r\n"));
+        assertEquals("    0 Warning(s)\n", annotate("    0 Warning(s)\n"));
+        assertEquals("", annotate(""));
+    }
+
+    @Test
+    void testOnlyLinesOfMsBuildSteps() {
+        String msbuild = "C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message";
+        String other = "C:\\path\\to\\other.cs(12,20): error CS5678: This is an error message";
+        MsBuildFingerprintSet lines = new MsBuildFingerprintSet();
+        lines.add(MsBuildLogIndex.fingerprint(msbuild));
+        ConsoleAnnotator<Object> annotator = new MsBuildConsoleAnnotatorFactory.Annotator(lines);
+
+        MarkupText text = new MarkupText(msbuild + "\r\n");
+        annotator.annotate(null, text);
+        assertEquals("<span class=error-inline>" + msbuild + "\r\n</span>", text.toString(false));
+        text = new MarkupText(other + "\n");
+        annotator.annotate(null, text);
+        assertEquals(other + "\n", text.toString(false));
+    }
+
+    @Test
+    void testNotUsedWithoutMarker() {
+        assertNull(new MsBuildConsoleAnnotatorFactory().newInstance("not a build"));
+    }
+}
@@ -56,6 +56,20 @@ class MsBuildConsoleAnnotatorTest {
         assertEquals(1, annotator.getNumberOfErrors());
     }
 
+    @Test
+    void testLongLineWithManyKeywords() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            line.append("error ABCDEFGHIJKLMNOPQRSTUVWXYZ (1): warning ABCDEFGHIJKLMNOPQRSTUVWXYZ ");
+        }
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        annotator.eol(bytes, bytes.length);
+
+        assertEquals(0, annotator.getNumberOfWarnings());
+        assertEquals(0, annotator.getNumberOfErrors());
+        assertEquals(line.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
     @Test
     void testMultipleCloseCalls() throws IOException {
         ByteArrayOutputStream mockOutputStream = new ByteArrayOutputStream();
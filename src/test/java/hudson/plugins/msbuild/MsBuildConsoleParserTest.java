@@ -63,6 +63,47 @@ class MsBuildConsoleParserTest {
         assertEquals(-1, parser.getNumberOfErrors(), "Number of errors should be -1");
     }
 
+    @Test
+    void testSummaryWithLineTerminator() throws Exception {
+        String line = "    12 Warning(s)\r\n";
+        parser.eol(line.getBytes(StandardCharsets.UTF_8), line.length());
+
+        assertEquals(12, parser.getNumberOfWarnings(), "Number of warnings should match");
+    }
+
+    @Test
+    void testSummaryWithOtherIndentation() throws Exception {
+        String line = "\t\t42 Error(s)";
+        parser.eol(line.getBytes(StandardCharsets.UTF_8), line.length());
+
+        assertEquals(42, parser.getNumberOfErrors(), "Number of errors should match");
+    }
+
+    @Test
+    void testKeywordWithoutCount() throws Exception {
+        String line = "The Warning(s) section follows";
+        parser.eol(line.getBytes(StandardCharsets.UTF_8), line.length());
+
+        assertEquals(-1, parser.getNumberOfWarnings(), "Number of warnings should be -1");
+    }
+
+    @Test
+    void testCountOverflow() throws Exception {
+        String line = "    99999999999 Warning(s)";
+        parser.eol(line.getBytes(StandardCharsets.UTF_8), line.length());
+
+        assertEquals(-1, parser.getNumberOfWarnings(), "Number of warnings should be -1");
+    }
+
+    @Test
+    void testNonAsciiCompatibleCharset() throws Exception {
+        MsBuildConsoleParser utf16Parser = new MsBuildConsoleParser(mockOutputStream, StandardCharsets.UTF_16LE);
+        byte[] line = "    3 Warning(s)".getBytes(StandardCharsets.UTF_16LE);
+        utf16Parser.eol(line, line.length);
+
+        assertEquals(3, utf16Parser.getNumberOfWarnings(), "Number of warnings should match");
+    }
+
     @Test
     void testClose() throws Exception {
         parser.close();
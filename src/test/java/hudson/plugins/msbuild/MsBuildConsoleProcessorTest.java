@@ -0,0 +1,210 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildConsoleProcessorTest {
+
+    private ByteArrayOutputStream out;
+    private MsBuildConsoleProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        out = new ByteArrayOutputStream();
+        processor = new MsBuildConsoleProcessor(out, StandardCharsets.UTF_8);
+    }
+
+    private void write(String text) throws IOException {
+        processor.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCountsDiagnosticLinesWithoutSummary() throws IOException {
+        write("C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message\r\n");
+        write("C:\\path\\to\\file.cs(11,20): warning CS1234: This is another warning message\r\n");
+        write("C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n");
+        processor.finish();
+
+        assertEquals(2, processor.getNumberOfWarnings());
+        assertEquals(1, processor.getNumberOfErrors());
+    }
+
+    @Test
+    void testSummaryTakesPrecedence() throws IOException {
+        write("C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message\r\n");
+        write("Build succeeded.\r\n");
+        write("    3 Warning(s)\r\n");
+        write("    0 Error(s)\r\n");
+        processor.finish();
+
+        assertEquals(3, processor.getNumberOfWarnings());
+        assertEquals(0, processor.getNumberOfErrors());
+    }
+
+    @Test
+    void testOutputIsPassedThrough() throws IOException {
+        String text = "Build started.\r\nDone Building Project.\r\n";
+        write(text);
+        processor.finish();
+
+        assertEquals(text, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNotesAreWrittenBeforeDiagnosticLines() throws IOException {
+        String warning = "C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message";
+        write(warning + "\r\n");
+        processor.finish();
+
+        String log = out.toString(StandardCharsets.UTF_8);
+        assertTrue(log.endsWith(warning + "\r\n"));
+        assertTrue(log.length() > warning.length() + 2, "A console note should precede the line");
+    }
+
+    @Test
+    void testFailFastAfterDistinctErrors() throws IOException {
+        List<String> reasons = new ArrayList<>();
+        processor.setFailFast(MsBuildFailFast.of(2, null), reasons::add);
+
+        write("C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n");
+        write("C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n");
+        assertTrue(reasons.isEmpty(), "A repeated error should not count");
+
+        write("C:\\path\\to\\file.cs(13,20): error CS5678: This is an error message\r\n");
+        write("C:\\path\\to\\file.cs(14,20): error CS5678: This is an error message\r\n");
+        processor.finish();
+
+        assertEquals(List.of("2 error(s)"), reasons);
+    }
+
+    @Test
+    void testFailFastOnErrorCode() throws IOException {
+        List<String> reasons = new ArrayList<>();
+        processor.setFailFast(MsBuildFailFast.of(0, "CS0006"), reasons::add);
+
+        write("C:\\path\\to\\file.cs(10,20): warning CS0006: This is a warning message\r\n");
+        write("C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n");
+        assertTrue(reasons.isEmpty());
+
+        write("CSC : error CS0006: Metadata file 'Lib.dll' could not be found\r\n");
+        processor.finish();
+
+        assertEquals(List.of("error CS0006"), reasons);
+    }
+
+    @Test
+    void testLongLineIsScannedUpToTheLimit() throws IOException {
+        processor = new MsBuildConsoleProcessor(out, StandardCharsets.UTF_8, 100);
+        String error = "C:\\path\\to\\file.cs(12,20): error CS5678: " + "x".repeat(1000);
+        String warning = "x".repeat(200) + " C:\\path\\to\\file.cs(10,20): warning CS1234: hidden";
+        write(error + "\r\n" + warning + "\r\n    1 Warning(s)\r\n");
+        processor.finish();
+
+        assertEquals(1, processor.getNumberOfErrors());
+        assertEquals(1, processor.getNumberOfWarnings());
+        assertEquals(0, processor.getDiagnostics().count(MsBuildDiagnostics.Severity.WARNING));
+        assertEquals(2, processor.getLongLines());
+        String log = out.toString(StandardCharsets.UTF_8);
+        assertTrue(log.endsWith(error + "\r\n" + warning + "\r\n    1 Warning(s)\r\n"));
+    }
+
+    @Test
+    void testWithoutNotes() throws IOException {
+        processor.setWriteNotes(false);
+        String text = "C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message\r\n"
+                + "C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n";
+        write(text);
+        processor.finish();
+
+        assertEquals(text, out.toString(StandardCharsets.UTF_8));
+        assertEquals(1, processor.getNumberOfWarnings());
+        assertEquals(1, processor.getNumberOfErrors());
+    }
+
+    @Test
+    void testFinishProcessesPendingLine() throws IOException {
+        write("    7 Warning(s)");
+        assertEquals(0, processor.getNumberOfWarnings());
+
+        processor.finish();
+        assertEquals(7, processor.getNumberOfWarnings());
+    }
+
+    @Test
+    void testCollectsDiagnostics() throws IOException {
+        write("  1>C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message [C:\\path\\to\\app.csproj]\r\n");
+        write("MSBUILD : error MSB1009: Project file does not exist.\r\n");
+        processor.finish();
+
+        MsBuildDiagnostics diagnostics = processor.getDiagnostics();
+        assertEquals(2, diagnostics.size());
+        assertEquals("C:\\path\\to\\file.cs", diagnostics.getFile(0));
+        assertEquals(10, diagnostics.getLine(0));
+        assertEquals(20, diagnostics.getColumn(0));
+        assertEquals("CS1234", diagnostics.getCode(0));
+        assertEquals("C:\\path\\to\\app.csproj", diagnostics.getProject(0));
+        assertEquals(MsBuildDiagnostics.Severity.ERROR, diagnostics.getSeverity(1));
+        assertEquals("MSBUILD", diagnostics.getFile(1));
+        assertEquals("MSB1009", diagnostics.getCode(1));
+    }
+
+    @Test
+    void testRepeatedDiagnosticsCountOnceWithoutSummary() throws IOException {
+        String warning = "C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message";
+        write("  1>" + warning + " [C:\\path\\to\\app.csproj::TargetFramework=net48]\r\n");
+        write("  2>" + warning + " [C:\\path\\to\\app.csproj::TargetFramework=net8.0]\r\n");
+        write(warning + " [C:\\path\\to\\app.csproj::TargetFramework=net48]\r\n");
+        processor.finish();
+
+        assertEquals(1, processor.getNumberOfWarnings());
+        assertEquals(1, processor.getDiagnostics().size());
+        assertEquals(3, processor.getDiagnostics().rawCount(MsBuildDiagnostics.Severity.WARNING));
+    }
+
+    @Test
+    void testPerformanceSummary() throws IOException {
+        write("Target Performance Summary:\r\n");
+        write("     2345 ms  CoreCompile                                2 calls\r\n");
+        write("\r\n");
+        write("Task Performance Summary:\r\n");
+        write("     2300 ms  Csc                                        2 calls\r\n");
+        processor.finish();
+
+        assertEquals("CoreCompile", processor.getPerformanceSummary().getTargets().get(0).getName());
+        assertEquals(2300, processor.getPerformanceSummary().getTasks().get(0).getMillis());
+    }
+
+    @Test
+    void testNoteIsWrittenWithItsLine() throws IOException {
+        List<String> writes = new ArrayList<>();
+        processor = new MsBuildConsoleProcessor(new OutputStream() {
+            @Override
+            public void write(int b) {
+                writes.add(String.valueOf((char) b));
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes.add(new String(b, off, len, StandardCharsets.UTF_8));
+            }
+        }, StandardCharsets.UTF_8);
+        String error = "C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message\r\n";
+        write("Build started.\r\n" + error);
+        processor.finish();
+
+        assertEquals(2, writes.size());
+        assertEquals("Build started.\r\n", writes.get(0));
+        assertTrue(writes.get(1).endsWith(error));
+        assertTrue(writes.get(1).length() > error.length());
+    }
+}
@@ -0,0 +1,194 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildConsolePumpTest {
+
+    @Test
+    void testOutputIsWrittenInOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MsBuildConsolePump pump = new MsBuildConsolePump(out, 1000, MsBuildConsolePump.Overflow.BLOCK, "test");
+        byte[] expected = write(pump, 10_000);
+        pump.finish();
+
+        assertArrayEquals(expected, out.toByteArray());
+        assertTrue(pump.getPeakSize() <= 1000);
+    }
+
+    @Test
+    void testSlowLogBlocks() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MsBuildConsolePump pump = new MsBuildConsolePump(new SlowOutputStream(out), 100,
+                MsBuildConsolePump.Overflow.BLOCK, "test");
+        byte[] expected = write(pump, 200);
+        pump.finish();
+
+        assertArrayEquals(expected, out.toByteArray());
+        assertTrue(pump.getStallTime() > 0);
+        assertEquals(0, pump.getSpilledBytes());
+    }
+
+    @Test
+    void testSlowLogSpills() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MsBuildConsolePump pump = new MsBuildConsolePump(new SlowOutputStream(out), 100,
+                MsBuildConsolePump.Overflow.SPILL, "test");
+        byte[] expected = write(pump, 200);
+        pump.finish();
+
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(0, pump.getStallTime());
+        assertTrue(pump.getSpilledBytes() > 0);
+    }
+
+    @Test
+    void testOutputIsFlushedWithoutFinishing() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushed.countDown();
+            }
+        };
+        MsBuildConsolePump pump = new MsBuildConsolePump(out, 1000, MsBuildConsolePump.Overflow.BLOCK, "test");
+        pump.write("Build started.\r\n".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(flushed.await(10, TimeUnit.SECONDS));
+        assertEquals("Build started.\r\n", out.toString(StandardCharsets.UTF_8));
+        pump.finish();
+    }
+
+    @Test
+    void testFailureIsReported() throws Exception {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("channel closed");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("channel closed");
+            }
+        };
+        MsBuildConsolePump pump = new MsBuildConsolePump(broken, 10, MsBuildConsolePump.Overflow.BLOCK, "test");
+        // the writer must not wait forever for the failed drainer
+        assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 1000; i++) {
+                pump.write("  Line\r\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        assertThrows(IOException.class, pump::finish);
+    }
+
+    @Test
+    void testSharedLogHasWholeLines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream log = new OutputStream() {
+            @Override
+            public synchronized void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                out.write(b, off, len);
+            }
+        };
+        MsBuildConsolePump first = new MsBuildConsolePump(log, 100, MsBuildConsolePump.Overflow.BLOCK, "first");
+        MsBuildConsolePump second = new MsBuildConsolePump(log, 100, MsBuildConsolePump.Overflow.SPILL, "second");
+        Thread other = new Thread(() -> {
+            try {
+                writeInPieces(second, "second");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        other.start();
+        writeInPieces(first, "first");
+        other.join();
+        first.finish();
+        second.finish();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(2000, lines.length);
+        for (String line : lines) {
+            assertTrue(line.matches("  (first|second) line \\d+ of the MSBuild output"), line);
+        }
+    }
+
+    @Test
+    void testLastLineIsWrittenOnFinish() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MsBuildConsolePump pump = new MsBuildConsolePump(out, 1000, MsBuildConsolePump.Overflow.BLOCK, "test");
+        pump.write("Build succeeded.\r\n    0 Warning(s)".getBytes(StandardCharsets.UTF_8));
+        pump.finish();
+
+        assertEquals("Build succeeded.\r\n    0 Warning(s)", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteAfterFinish() throws Exception {
+        MsBuildConsolePump pump = new MsBuildConsolePump(new ByteArrayOutputStream(), 10,
+                MsBuildConsolePump.Overflow.BLOCK, "test");
+        pump.finish();
+        assertThrows(IOException.class, () -> pump.write(1));
+    }
+
+    private static byte[] write(OutputStream pump, int lines) throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < lines; i++) {
+            byte[] line = ("  Line " + i + " of the MSBuild output\r\n").getBytes(StandardCharsets.UTF_8);
+            pump.write(line);
+            expected.write(line);
+        }
+        return expected.toByteArray();
+    }
+
+    /** Write lines in pieces that do not end with them, as a process does. */
+    private static void writeInPieces(OutputStream pump, String name) throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            byte[] line = ("  " + name + " line " + i + " of the MSBuild output\r\n").getBytes(StandardCharsets.UTF_8);
+            int split = i % line.length;
+            pump.write(line, 0, split);
+            pump.write(line, split, line.length - split);
+        }
+    }
+
+    /** A build log that takes 1 ms per write. */
+    private static final class SlowOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        SlowOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package hudson.plugins.msbuild;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.plugins.msbuild.MsBuildDiagnostics.Severity;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@WithJenkins
+class MsBuildDiagnosticsActionTest {
+
+    @Test
+    void testDiagnosticsOfSeveralStepsAreMerged(JenkinsRule r) throws Exception {
+        FreeStyleProject project = r.createFreeStyleProject();
+        FreeStyleBuild build = r.buildAndAssertSuccess(project);
+
+        MsBuildDiagnostics first = new MsBuildDiagnostics();
+        first.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", null, "unused");
+        MsBuildDiagnostics second = new MsBuildDiagnostics();
+        second.add(Severity.ERROR, "Bar.cs", 3, 4, "CS0103", null, "missing");
+
+        MsBuildDiagnosticsAction action = MsBuildDiagnosticsAction.addTo(build, first);
+        assertSame(action, MsBuildDiagnosticsAction.addTo(build, second));
+        build.save();
+
+        assertTrue(new File(build.getRootDir(), MsBuildDiagnosticsAction.FILE_NAME).isFile());
+        assertEquals(1, action.getErrors());
+        assertEquals(1, action.getWarnings());
+
+        build.reload();
+        MsBuildDiagnostics loaded = build.getAction(MsBuildDiagnosticsAction.class).getDiagnostics();
+        assertEquals(2, loaded.size());
+        assertEquals("Foo.cs", loaded.getFile(0));
+        assertEquals("Bar.cs", loaded.getFile(1));
+    }
+
+    private static final String ERROR = "C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message";
+    private static final String OTHER = "C:\\path\\to\\other.cs(12,20): error CS5678: This is an error message";
+
+    /**
+     * @return the index of the output of an MSBuild step writing a line
+     */
+    private static MsBuildLogIndex index(String line) throws Exception {
+        MsBuildConsoleProcessor processor = new MsBuildConsoleProcessor(new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8);
+        processor.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        processor.finish();
+        return processor.getLogIndex();
+    }
+
+    private static MsBuildDiagnosticsAction indexedBuild(FreeStyleBuild build) throws Exception {
+        Files.writeString(build.getLogFile().toPath(), "Started\n" + ERROR + "\r\n" + OTHER + "\r\n",
+                StandardCharsets.UTF_8);
+        MsBuildDiagnosticsAction action = MsBuildDiagnosticsAction.addTo(build, new MsBuildDiagnostics());
+        assertTrue(action.addLogIndex(index(ERROR), 0));
+        return action;
+    }
+
+    @Test
+    void onlyIndexedLinesAreHighlighted(JenkinsRule r) throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        MsBuildDiagnosticsAction action = indexedBuild(build);
+
+        MsBuildFingerprintSet lines = MsBuildConsoleAnnotatorFactory.getLineFingerprints(build);
+        assertTrue(lines.contains(MsBuildLogIndex.fingerprint(ERROR)));
+        assertFalse(lines.contains(MsBuildLogIndex.fingerprint(OTHER)));
+        assertSame(lines, action.getLineFingerprints());
+    }
+
+    @Test
+    void allLinesAreHighlightedWithoutDiagnostics(JenkinsRule r) throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+
+        assertNull(MsBuildConsoleAnnotatorFactory.getLineFingerprints(build));
+        MsBuildDiagnosticsAction.addTo(build, new MsBuildDiagnostics());
+        assertNull(MsBuildConsoleAnnotatorFactory.getLineFingerprints(build));
+    }
+
+    @Test
+    void allLinesAreHighlightedWhenTheOutputIsNotLocated(JenkinsRule r) throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        MsBuildDiagnosticsAction action = indexedBuild(build);
+
+        assertFalse(action.addLogIndex(index("C:\\missing.cs(1,1): error CS0103: Not in the log"), 0));
+        assertNull(MsBuildConsoleAnnotatorFactory.getLineFingerprints(build));
+        build.save();
+        build.reload();
+        assertNull(MsBuildConsoleAnnotatorFactory.getLineFingerprints(build));
+    }
+
+    @Test
+    void allLinesAreHighlightedAfterConcurrentLaunches(JenkinsRule r) throws Exception {
+        FreeStyleBuild build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+        MsBuildDiagnosticsAction action = indexedBuild(build);
+
+        assertTrue(action.addLogIndex(null, -1));
+        assertNull(MsBuildConsoleAnnotatorFactory.getLineFingerprints(build));
+    }
+}
@@ -0,0 +1,254 @@
+package hudson.plugins.msbuild;
+
+import hudson.plugins.msbuild.MsBuildDiagnostics.Severity;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildDiagnosticsTest {
+
+    @Test
+    void testFileLineAndColumn() {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.WARNING, "  2>C:\\src\\Foo.cs(12,5): ", "CS0168",
+                "The variable 'e' is declared but never used [C:\\src\\Foo.csproj]");
+
+        assertEquals(1, diagnostics.size());
+        assertEquals(Severity.WARNING, diagnostics.getSeverity(0));
+        assertEquals("C:\\src\\Foo.cs", diagnostics.getFile(0));
+        assertEquals(12, diagnostics.getLine(0));
+        assertEquals(5, diagnostics.getColumn(0));
+        assertEquals("CS0168", diagnostics.getCode(0));
+        assertEquals("The variable 'e' is declared but never used", diagnostics.getMessage(0));
+        assertEquals("C:\\src\\Foo.csproj", diagnostics.getProject(0));
+    }
+
+    @Test
+    void testLineWithoutColumnAndSubcategory() {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.ERROR, "C:\\src\\x.cpp(10): fatal ", "C1083", "Cannot open include file");
+
+        assertEquals("C:\\src\\x.cpp", diagnostics.getFile(0));
+        assertEquals(10, diagnostics.getLine(0));
+        assertEquals(0, diagnostics.getColumn(0));
+        assertNull(diagnostics.getProject(0));
+    }
+
+    @Test
+    void testToolOrigin() {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.ERROR, "MSBUILD : ", "MSB1009", "Project file does not exist.");
+
+        assertEquals("MSBUILD", diagnostics.getFile(0));
+        assertEquals(0, diagnostics.getLine(0));
+    }
+
+    @Test
+    void testNoOrigin() {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.ERROR, "Build ", null, "something went wrong");
+
+        assertNull(diagnostics.getFile(0));
+        assertNull(diagnostics.getCode(0));
+        assertEquals("something went wrong", diagnostics.getMessage(0));
+    }
+
+    @Test
+    void testGrowthAndCounts() {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        for (int i = 0; i < 100; i++) {
+            diagnostics.add(i % 3 == 0 ? Severity.ERROR : Severity.WARNING, "Foo.cs", i, 1, "CS" + i, null, "m");
+        }
+
+        assertEquals(100, diagnostics.size());
+        assertEquals(34, diagnostics.count(Severity.ERROR));
+        assertEquals(66, diagnostics.count(Severity.WARNING));
+        assertEquals(99, diagnostics.getLine(99));
+        assertEquals("CS99", diagnostics.getCode(99));
+        assertThrows(IndexOutOfBoundsException.class, () -> diagnostics.getLine(100));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", "Foo.csproj", "unused");
+        diagnostics.add(Severity.ERROR, null, 0, 0, null, null, "failed");
+
+        MsBuildDiagnostics read = roundTrip(diagnostics);
+
+        assertEquals(2, read.size());
+        assertEquals("Foo.cs", read.getFile(0));
+        assertEquals(2, read.getColumn(0));
+        assertEquals("Foo.csproj", read.getProject(0));
+        assertEquals(Severity.ERROR, read.getSeverity(1));
+        assertNull(read.getFile(1));
+        assertEquals("failed", read.getMessage(1));
+
+        read.add(Severity.WARNING, "Foo.cs", 3, 4, "CS0168", "Foo.csproj", "unused");
+        assertEquals(3, read.size());
+        assertEquals(3, read.getLine(2));
+        assertEquals("unused", read.getMessage(2));
+    }
+
+    @Test
+    void testRoundTripEmpty() throws IOException {
+        MsBuildDiagnostics read = roundTrip(new MsBuildDiagnostics());
+
+        assertEquals(0, read.size());
+        read.add(Severity.ERROR, null, 0, 0, null, null, "failed");
+        assertEquals(1, read.size());
+    }
+
+    @Test
+    void testRoundTripStringsLongerThan64KB() throws IOException {
+        String project = "C:\\src\\" + "caf\u00e9\\".repeat(20_000) + "App.csproj";
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", project, "unused");
+
+        MsBuildDiagnostics read = roundTrip(diagnostics);
+
+        assertEquals(project, read.getProject(0));
+        assertEquals("Foo.cs", read.getFile(0));
+    }
+
+    @Test
+    void testReadVersion1() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(new GZIPOutputStream(out))) {
+            data.writeInt(0x4D534244);
+            data.writeInt(1);
+            data.writeInt(2);
+            data.writeUTF("Foo.cs");
+            data.writeUTF("unused");
+            data.writeInt(1);
+            data.writeUTF("CS0168");
+            for (int i = 0; i < Severity.values().length; i++) {
+                data.writeInt(i == Severity.WARNING.ordinal() ? 1 : 0);
+            }
+            data.writeInt(1);
+            data.writeByte(Severity.WARNING.ordinal());
+            for (int value : new int[] { 0, 1, 2, 0, -1, 1 }) {
+                data.writeInt(value);
+            }
+        }
+
+        MsBuildDiagnostics read = MsBuildDiagnostics.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1, read.size());
+        assertEquals("Foo.cs", read.getFile(0));
+        assertEquals(2, read.getColumn(0));
+        assertEquals("CS0168", read.getCode(0));
+        assertNull(read.getProject(0));
+        assertEquals("unused", read.getMessage(0));
+    }
+
+    @Test
+    void testReadInvalidFile() {
+        byte[] garbage = "not gzip".getBytes();
+        assertThrows(IOException.class, () -> MsBuildDiagnostics.readFrom(new ByteArrayInputStream(garbage)));
+    }
+
+    @Test
+    void testRepeatedDiagnosticsAreKeptOnce() {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        assertTrue(diagnostics.add(Severity.WARNING, "Foo.cs(1,2): ", "CS0168", "unused [Foo.csproj]"));
+        // summary block, then another target framework
+        assertFalse(diagnostics.add(Severity.WARNING, "Foo.cs(1,2): ", "CS0168", "unused [Foo.csproj]"));
+        assertFalse(diagnostics.add(Severity.WARNING, "Foo.cs(1,2): ", "CS0168",
+                "unused [Foo.csproj::TargetFramework=net8.0]"));
+        assertTrue(diagnostics.add(Severity.WARNING, "Foo.cs(1,3): ", "CS0168", "unused [Foo.csproj]"));
+        assertTrue(diagnostics.add(Severity.ERROR, "Foo.cs(1,2): ", "CS0168", "unused [Foo.csproj]"));
+
+        assertEquals(3, diagnostics.size());
+        assertEquals(2, diagnostics.count(Severity.WARNING));
+        assertEquals(4, diagnostics.rawCount(Severity.WARNING));
+        assertEquals(1, diagnostics.count(Severity.ERROR));
+        assertEquals(1, diagnostics.rawCount(Severity.ERROR));
+    }
+
+    @Test
+    void testFingerprintFields() {
+        long fingerprint = MsBuildDiagnostics.fingerprint(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", "unused");
+        assertEquals(fingerprint, MsBuildDiagnostics.fingerprint(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", "unused"));
+        assertNotEquals(fingerprint, MsBuildDiagnostics.fingerprint(Severity.WARNING, "Foo.cs", 2, 1, "CS0168", "unused"));
+        assertNotEquals(fingerprint, MsBuildDiagnostics.fingerprint(Severity.WARNING, "Foo.c", 1, 2, "sCS0168", "unused"));
+        assertNotEquals(fingerprint, MsBuildDiagnostics.fingerprint(Severity.WARNING, "Foo.cs", 1, 2, null, "unused"));
+        assertNotEquals(fingerprint, MsBuildDiagnostics.fingerprint(Severity.ERROR, "Foo.cs", 1, 2, "CS0168", "unused"));
+        assertNotEquals(MsBuildDiagnostics.fingerprint(Severity.WARNING, null, 0, 0, null, "x"),
+                MsBuildDiagnostics.fingerprint(Severity.WARNING, "", 0, 0, null, "x"));
+    }
+
+    @Test
+    void testMergeKeepsRawCountsAndRemovesRepetitions() throws IOException {
+        MsBuildDiagnostics first = new MsBuildDiagnostics();
+        first.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", null, "unused");
+        first.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", null, "unused");
+        MsBuildDiagnostics second = new MsBuildDiagnostics();
+        second.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", null, "unused");
+        second.add(Severity.WARNING, "Bar.cs", 1, 2, "CS0168", null, "unused");
+
+        MsBuildDiagnostics all = roundTrip(first);
+        all.addAll(second);
+
+        assertEquals(2, all.size());
+        assertEquals(4, all.rawCount(Severity.WARNING));
+        assertEquals(4, roundTrip(all).rawCount(Severity.WARNING));
+    }
+
+    @Test
+    void testJavaSerialization() throws IOException, ClassNotFoundException {
+        MsBuildDiagnostics diagnostics = new MsBuildDiagnostics();
+        diagnostics.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", "Foo.csproj", "unused");
+        diagnostics.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", "Foo.csproj", "unused");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(diagnostics);
+        }
+        MsBuildDiagnostics read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (MsBuildDiagnostics) in.readObject();
+        }
+
+        assertEquals(1, read.size());
+        assertEquals(2, read.rawCount(Severity.WARNING));
+        assertEquals("Foo.csproj", read.getProject(0));
+        assertFalse(read.add(Severity.WARNING, "Foo.cs", 1, 2, "CS0168", "Foo.csproj", "unused"));
+        assertTrue(read.add(Severity.WARNING, "Bar.cs", 1, 2, "CS0168", "Foo.csproj", "unused"));
+        assertEquals("Bar.cs", read.getFile(1));
+    }
+
+    @Test
+    void testStableFingerprintsIgnorePositions() {
+        MsBuildDiagnostics before = new MsBuildDiagnostics();
+        before.add(Severity.WARNING, "Foo.cs", 10, 2, "CS0168", null, "unused");
+        before.add(Severity.WARNING, "Foo.cs", 20, 2, "CS0168", null, "unused");
+        before.add(Severity.ERROR, "Foo.cs", 30, 2, "CS0103", null, "missing");
+        MsBuildDiagnostics after = new MsBuildDiagnostics();
+        after.add(Severity.WARNING, "Foo.cs", 15, 4, "CS0168", null, "unused");
+        after.add(Severity.WARNING, "Foo.cs", 16, 2, "CS0219", null, "assigned");
+
+        long[] reference = before.getStableFingerprints(Severity.WARNING);
+        assertEquals(1, reference.length);
+        assertEquals(1, MsBuildFingerprints.countNew(after.getStableFingerprints(Severity.WARNING), reference));
+    }
+
+    private static MsBuildDiagnostics roundTrip(MsBuildDiagnostics diagnostics) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        diagnostics.writeTo(out);
+        return MsBuildDiagnostics.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
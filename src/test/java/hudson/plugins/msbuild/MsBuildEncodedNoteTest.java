@@ -0,0 +1,28 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MsBuildEncodedNoteTest {
+
+    @Test
+    void testSameBytesAsEncodingTheNote() throws IOException {
+        MsBuildEncodedNote encoded = new MsBuildEncodedNote(new MSBuildWarningNote());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoded.writeTo(out);
+
+        assertArrayEquals(new MSBuildWarningNote().encodeToBytes().toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    void testEncodedOnce() throws IOException {
+        MsBuildEncodedNote encoded = new MsBuildEncodedNote(new MSBuildErrorNote());
+
+        assertSame(encoded.get(), encoded.get());
+    }
+}
@@ -0,0 +1,42 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MsBuildFailFastTest {
+
+    @Test
+    void testDisabled() {
+        assertNull(MsBuildFailFast.of(0, null));
+        assertNull(MsBuildFailFast.of(-1, " , ;"));
+    }
+
+    @Test
+    void testErrorCodesAreSplitAndUpperCased() {
+        MsBuildFailFast failFast = MsBuildFailFast.of(0, "cs0006, MSB3073;\tLNK1104 ");
+
+        assertEquals(Set.of("CS0006", "LNK1104", "MSB3073"), failFast.getErrorCodes());
+        assertEquals(0, failFast.getMaxErrors());
+    }
+
+    @Test
+    void testStopAfterErrors() {
+        MsBuildFailFast failFast = MsBuildFailFast.of(3, null);
+
+        assertNull(failFast.check(2, "CS0103"));
+        assertEquals("3 error(s)", failFast.check(3, "CS0103"));
+    }
+
+    @Test
+    void testStopOnErrorCode() {
+        MsBuildFailFast failFast = MsBuildFailFast.of(0, "CS0006");
+
+        assertNull(failFast.check(10, "CS0103"));
+        assertNull(failFast.check(10, null));
+        assertEquals("error cs0006", failFast.check(1, "cs0006"));
+    }
+}
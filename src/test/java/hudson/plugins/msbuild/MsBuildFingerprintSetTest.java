@@ -0,0 +1,68 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildFingerprintSetTest {
+
+    @Test
+    void testAdd() {
+        MsBuildFingerprintSet set = new MsBuildFingerprintSet();
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.add(-42));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(43));
+    }
+
+    @Test
+    void testZero() {
+        MsBuildFingerprintSet set = new MsBuildFingerprintSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertEquals(1, set.size());
+        assertArrayEquals(new long[] { 0 }, set.toArray());
+    }
+
+    @Test
+    void testCollidingSlots() {
+        MsBuildFingerprintSet set = new MsBuildFingerprintSet();
+        // same low bits, so the same initial slot
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(set.add(i << 40));
+        }
+        for (long i = 1; i <= 1000; i++) {
+            assertFalse(set.add(i << 40));
+        }
+        assertEquals(1000, set.size());
+    }
+
+    @Test
+    void testMatchesHashSet() {
+        Random random = new Random(0);
+        MsBuildFingerprintSet set = new MsBuildFingerprintSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // draw from a small range to get duplicates
+            long value = random.nextInt(100_000) * 0x9E3779B97F4A7C15L;
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), values);
+    }
+}
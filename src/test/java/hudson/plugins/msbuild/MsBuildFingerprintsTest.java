@@ -0,0 +1,75 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MsBuildFingerprintsTest {
+
+    @TempDir
+    private File dir;
+
+    @Test
+    void testSortDistinct() {
+        assertArrayEquals(new long[] { -5, 0, 3, 7 },
+                MsBuildFingerprints.sortDistinct(new long[] { 7, 3, -5, 3, 0, 7, 42 }, 6));
+        assertArrayEquals(new long[0], MsBuildFingerprints.sortDistinct(new long[0], 0));
+    }
+
+    @Test
+    void testCountNew() {
+        long[] reference = { -9, 1, 4, 8 };
+
+        assertEquals(0, MsBuildFingerprints.countNew(new long[0], reference));
+        assertEquals(0, MsBuildFingerprints.countNew(new long[] { -9, 8 }, reference));
+        assertEquals(3, MsBuildFingerprints.countNew(new long[] { -10, 1, 5, 9 }, reference));
+        assertEquals(2, MsBuildFingerprints.countNew(new long[] { 2, 3 }, new long[0]));
+    }
+
+    @Test
+    void testCountNewMatchesNaiveDifference() {
+        Random random = new Random(1);
+        long[] current = new long[5000];
+        long[] reference = new long[5000];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = random.nextInt(10000);
+            reference[i] = random.nextInt(10000);
+        }
+        current = MsBuildFingerprints.sortDistinct(current, current.length);
+        reference = MsBuildFingerprints.sortDistinct(reference, reference.length);
+
+        int expected = 0;
+        for (long value : current) {
+            if (Arrays.binarySearch(reference, value) < 0) {
+                expected++;
+            }
+        }
+        assertEquals(expected, MsBuildFingerprints.countNew(current, reference));
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        File file = new File(dir, MsBuildDiagnosticsAction.FINGERPRINTS_FILE_NAME);
+        long[] sorted = { Long.MIN_VALUE, -1, 0, 12345678901L, Long.MAX_VALUE };
+        MsBuildFingerprints.write(file, sorted);
+
+        assertArrayEquals(sorted, MsBuildFingerprints.read(file));
+    }
+
+    @Test
+    void testReadInvalidFile() throws IOException {
+        File file = new File(dir, MsBuildDiagnosticsAction.FINGERPRINTS_FILE_NAME);
+        Files.write(file.toPath(), new byte[] { 0x4D, 0x53, 0x42, 0x46, 1, 0x7f, 0, 0, 0 });
+
+        assertThrows(IOException.class, () -> MsBuildFingerprints.read(file));
+    }
+}
@@ -0,0 +1,231 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildInputsTest {
+
+    @TempDir
+    Path workspace;
+
+    private Path cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = workspace.resolve("tmp/inputs.txt");
+        Files.createDirectories(workspace.resolve("src/App/obj"));
+        Files.createDirectories(workspace.resolve("lib/Core"));
+        Files.writeString(workspace.resolve("src/App.sln"),
+                "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"App\", \"App\\App.csproj\", \"{1}\"\n"
+                        + "EndProject\n");
+        Files.writeString(workspace.resolve("src/App/App.csproj"),
+                "<Project><ItemGroup><ProjectReference Include=\"..\\..\\lib\\Core\\Core.csproj\" />"
+                        + "</ItemGroup></Project>");
+        Files.writeString(workspace.resolve("src/App/Program.cs"), "class Program {}");
+        Files.writeString(workspace.resolve("src/App/obj/App.dll"), "output");
+        Files.writeString(workspace.resolve("lib/Core/Core.csproj"), "<Project />");
+        Files.writeString(workspace.resolve("lib/Core/Core.cs"), "class Core {}");
+        Files.writeString(workspace.resolve("Directory.Build.props"), "<Project />");
+        Files.writeString(workspace.resolve("unrelated.txt"), "not an input");
+    }
+
+    private static void touch(Path file, String content) throws Exception {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+    }
+
+    private MsBuildInputs.Result check(String commandLine) throws Exception {
+        return new MsBuildInputs("src/App.sln", commandLine, cache.toString(), Set.of())
+                .invoke(workspace.toFile(), null);
+    }
+
+    @Test
+    void collectsTheProjectsAndTheirImports() throws Exception {
+        MsBuildInputs.Result result = check("msbuild.exe");
+
+        // App.sln, App.csproj, Program.cs, Core.csproj, Core.cs, Directory.Build.props
+        assertEquals(6, result.getFiles());
+        assertEquals(6, result.getHashed());
+    }
+
+    @Test
+    void onlyChangedFilesAreReadAgain() throws Exception {
+        String first = check("msbuild.exe").getFingerprint();
+
+        MsBuildInputs.Result same = check("msbuild.exe");
+        assertEquals(first, same.getFingerprint());
+        assertEquals(0, same.getHashed());
+
+        Path source = workspace.resolve("lib/Core/Core.cs");
+        Files.writeString(source, "class Core { }");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 2000));
+        MsBuildInputs.Result changed = check("msbuild.exe");
+        assertNotEquals(first, changed.getFingerprint());
+        assertEquals(1, changed.getHashed());
+    }
+
+    @Test
+    void outputsAndOtherFilesAreIgnored() throws Exception {
+        String first = check("msbuild.exe").getFingerprint();
+
+        Files.writeString(workspace.resolve("src/App/obj/App.dll"), "other output");
+        Files.writeString(workspace.resolve("unrelated.txt"), "changed");
+
+        assertEquals(first, check("msbuild.exe").getFingerprint());
+    }
+
+    @Test
+    void commandLineIsPartOfTheFingerprint() throws Exception {
+        assertNotEquals(check("msbuild.exe /p:Configuration=Debug").getFingerprint(),
+                check("msbuild.exe /p:Configuration=Release").getFingerprint());
+    }
+
+    @Test
+    void damagedCacheIsIgnored() throws Exception {
+        String first = check("msbuild.exe").getFingerprint();
+        Files.writeString(cache, "garbage\tx\ty\tz\n");
+
+        MsBuildInputs.Result result = check("msbuild.exe");
+        assertEquals(first, result.getFingerprint());
+        assertEquals(6, result.getHashed());
+    }
+
+    private void record(MsBuildInputs.Result result) throws Exception {
+        new MsBuildInputs.Record(cache.toString(), result.getFingerprint(), "job #1", result.getOutputs())
+                .invoke(workspace.toFile(), null);
+    }
+
+    @Test
+    void unchangedSinceTheLastSuccessfulBuildInTheWorkspace() throws Exception {
+        assertNull(check("msbuild.exe").getUnchangedSince());
+        record(check("msbuild.exe"));
+
+        assertEquals("job #1", check("msbuild.exe").getUnchangedSince());
+        assertNull(check("msbuild.exe /p:Configuration=Release").getUnchangedSince());
+    }
+
+    @Test
+    void cleanedWorkspaceIsNotUnchanged() throws Exception {
+        record(check("msbuild.exe"));
+
+        // Same sources checked out again, without the outputs of the previous build
+        Path output = workspace.resolve("src/App/obj/App.dll");
+        Files.delete(output);
+        Files.delete(output.getParent());
+        assertNull(check("msbuild.exe").getUnchangedSince());
+
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, "output");
+        assertEquals("job #1", check("msbuild.exe").getUnchangedSince());
+    }
+
+    @Test
+    void buildWithoutOutputsIsNeverUnchanged() throws Exception {
+        Files.delete(workspace.resolve("src/App/obj/App.dll"));
+        record(check("msbuild.exe"));
+
+        assertNull(check("msbuild.exe").getUnchangedSince());
+    }
+
+    @Test
+    void filesImportedOrIncludedFromElsewhereAreInputs() throws Exception {
+        Files.createDirectories(workspace.resolve("shared/Shared/Sub"));
+        Files.writeString(workspace.resolve("shared/common.targets"),
+                "<Project><Import Project=\"$(MSBuildThisFileDirectory)more.props\" /></Project>");
+        Files.writeString(workspace.resolve("shared/more.props"), "<Project />");
+        Files.writeString(workspace.resolve("shared/Shared/Sub/Util.cs"), "class Util {}");
+        Files.writeString(workspace.resolve("shared/Shared/readme.txt"), "not compiled");
+        Files.writeString(workspace.resolve("src/App/App.csproj"), "<Project Sdk=\"Microsoft.NET.Sdk\">"
+                + "<Import Project=\"..\\..\\shared\\common.targets\" />"
+                + "<Import Project=\"$(MSBuildToolsPath)\\Microsoft.CSharp.targets\" />"
+                + "<ItemGroup><Compile Include=\"..\\..\\shared\\Shared\\**\\*.cs\" />"
+                + "<Compile Include=\"*.cs\" />"
+                + "<ProjectReference Include=\"..\\..\\lib\\Core\\Core.csproj\" /></ItemGroup></Project>");
+
+        MsBuildInputs.Result result = check("msbuild.exe");
+        // the 6 files of the solution, common.targets, more.props and Util.cs
+        assertEquals(9, result.getFiles());
+        assertNull(result.getUnresolved());
+
+        String first = result.getFingerprint();
+        touch(workspace.resolve("shared/Shared/readme.txt"), "changed");
+        assertEquals(first, check("msbuild.exe").getFingerprint());
+        touch(workspace.resolve("shared/more.props"), "<Project><PropertyGroup /></Project>");
+        String second = check("msbuild.exe").getFingerprint();
+        assertNotEquals(first, second);
+        touch(workspace.resolve("shared/Shared/Sub/Util.cs"), "class Util { }");
+        assertNotEquals(second, check("msbuild.exe").getFingerprint());
+    }
+
+    @Test
+    void unresolvedPathsAreNeverUnchanged() throws Exception {
+        Files.writeString(workspace.resolve("lib/Core/Core.csproj"),
+                "<Project><ItemGroup><Compile Include=\"$(SharedDir)\\Util.cs\" /></ItemGroup></Project>");
+        record(check("msbuild.exe"));
+
+        MsBuildInputs.Result result = check("msbuild.exe");
+        assertNotNull(result.getUnresolved());
+        assertNull(result.getUnchangedSince());
+    }
+
+    @Test
+    void wildcards() {
+        assertTrue(MsBuildInputs.toPattern("**\\*.cs").matcher("a/b/C.cs").matches());
+        assertTrue(MsBuildInputs.toPattern("**\\*.cs").matcher("C.cs").matches());
+        assertTrue(MsBuildInputs.toPattern("Sub\\**").matcher("Sub/a/b.txt").matches());
+        assertFalse(MsBuildInputs.toPattern("*.cs").matcher("a/C.cs").matches());
+        assertFalse(MsBuildInputs.toPattern("?.cs").matcher("ab.cs").matches());
+    }
+
+    @Test
+    void outputsOfCppProjectsAreIgnored() throws Exception {
+        Files.createDirectories(workspace.resolve("cpp/Tool"));
+        Files.writeString(workspace.resolve("cpp/Tool.sln"),
+                "Project(\"{8BC9CEB8-8B4A-11D0-8D11-00A0C91BC942}\") = \"Tool\", \"Tool\\Tool.vcxproj\", \"{2}\"\n"
+                        + "EndProject\n");
+        Files.writeString(workspace.resolve("cpp/Tool/Tool.vcxproj"), "<Project><ItemGroup>"
+                + "<ProjectConfiguration Include=\"Debug|Win32\" />"
+                + "<ProjectConfiguration Include=\"Release|x64\" /></ItemGroup>"
+                + "<PropertyGroup Condition=\"'$(Platform)'=='x64'\">"
+                + "<OutDir>$(SolutionDir)out\\$(Platform)\\$(Configuration)\\</OutDir></PropertyGroup>"
+                + "<ItemGroup><ClCompile Include=\"main.cpp\" /></ItemGroup></Project>");
+        Files.writeString(workspace.resolve("cpp/Tool/main.cpp"), "int main() {}");
+        String[] outputs = {"cpp/Debug/Tool.exe", "cpp/x64/Release/Tool.exe", "cpp/out/x64/Release/Tool.exe",
+            "cpp/Tool/Debug/main.obj", "cpp/Tool/x64/Release/main.obj",
+            "cpp/Tool/x64/Release/Tool.tlog/CL.read.1.tlog", "cpp/Tool/x64/Release/Tool.tlog/Tool.lastbuildstate",
+            "cpp/Tool/vc143.pdb", "cpp/Tool.VC.db"};
+        for (String output : outputs) {
+            Files.createDirectories(workspace.resolve(output).getParent());
+            Files.writeString(workspace.resolve(output), "output");
+        }
+        MsBuildInputs inputs = new MsBuildInputs("cpp/Tool.sln", "msbuild.exe", cache.toString(), Set.of());
+
+        MsBuildInputs.Result result = inputs.invoke(workspace.toFile(), null);
+        // Tool.sln, Tool.vcxproj, main.cpp and Directory.Build.props
+        assertEquals(4, result.getFiles());
+        assertTrue(result.getOutputs().contains(workspace.resolve("cpp/x64/Release").toString()));
+        assertTrue(result.getOutputs().contains(workspace.resolve("cpp/out/x64/Release").toString()));
+        new MsBuildInputs.Record(cache.toString(), result.getFingerprint(), "job #1", result.getOutputs())
+                .invoke(workspace.toFile(), null);
+
+        for (String output : outputs) {
+            touch(workspace.resolve(output), "other output");
+        }
+        assertEquals("job #1", inputs.invoke(workspace.toFile(), null).getUnchangedSince());
+        touch(workspace.resolve("cpp/Tool/main.cpp"), "int main() { return 0; }");
+        assertNull(inputs.invoke(workspace.toFile(), null).getUnchangedSince());
+    }
+}
@@ -0,0 +1,60 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildKeywordFilterTest {
+
+    @Test
+    void testErrorLine() {
+        assertEquals(MsBuildKeywordFilter.ERROR,
+                MsBuildKeywordFilter.scan("SomeFile.cs(123,45): error CS1234: Some error message"));
+        assertEquals(MsBuildKeywordFilter.ERROR,
+                MsBuildKeywordFilter.scan("MSBUILD : Error\tMSB1009: Project file does not exist."));
+    }
+
+    @Test
+    void testWarningLine() {
+        assertEquals(MsBuildKeywordFilter.WARNING,
+                MsBuildKeywordFilter.scan("SomeFile.cs(123,45): warning CS1234: Some warning message"));
+        assertEquals(MsBuildKeywordFilter.WARNING,
+                MsBuildKeywordFilter.scan("SomeFile.cs(123): Warning C4996: Some warning message"));
+    }
+
+    @Test
+    void testBothKeywords() {
+        assertEquals(MsBuildKeywordFilter.ERROR | MsBuildKeywordFilter.WARNING,
+                MsBuildKeywordFilter.scan("file.cs(1,1): warning CS0618: 'Foo' is obsolete: 'error prone'"));
+    }
+
+    @Test
+    void testOrdinaryLines() {
+        assertEquals(0, MsBuildKeywordFilter.scan(""));
+        assertEquals(0, MsBuildKeywordFilter.scan("  Lib -> C:\\src\\Lib\\bin\\Release\\Lib.dll"));
+        assertEquals(0, MsBuildKeywordFilter.scan("Target \"ErrorReport\" skipped."));
+        assertEquals(0, MsBuildKeywordFilter.scan("/errorreport:prompt /warnaserror- /nowarn:1701"));
+        assertEquals(0, MsBuildKeywordFilter.scan("ERROR WARNING"));
+        assertEquals(0, MsBuildKeywordFilter.scan("error"));
+    }
+
+    @Test
+    void testEveryPatternMatchIsFlagged() {
+        String[] lines = {
+            "SomeFile.cs(123,45): error CS1234: Some error message",
+            "error : no code",
+            "SomeFile.cs(123,45): warning CS1234: Some warning message",
+            "a(1): Warning 42: number only",
+        };
+        for (String line : lines) {
+            int keywords = MsBuildKeywordFilter.scan(line);
+            if (MSBuildErrorNote.PATTERN.matcher(line).matches()) {
+                assertTrue((keywords & MsBuildKeywordFilter.ERROR) != 0, line);
+            }
+            if (MSBuildWarningNote.PATTERN.matcher(line).matches()) {
+                assertTrue((keywords & MsBuildKeywordFilter.WARNING) != 0, line);
+            }
+        }
+    }
+}
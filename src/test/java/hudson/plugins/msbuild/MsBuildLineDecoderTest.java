@@ -0,0 +1,73 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildLineDecoderTest {
+
+    @Test
+    void testAsciiLine() {
+        MsBuildLineDecoder decoder = new MsBuildLineDecoder(StandardCharsets.UTF_8);
+        byte[] b = "Foo.cs(1,2): warning CS0168: unused\r\n".getBytes(StandardCharsets.UTF_8);
+
+        CharSequence line = decoder.decode(b, b.length);
+        assertEquals("Foo.cs(1,2): warning CS0168: unused", line.toString());
+        assertEquals('w', line.charAt(13));
+        assertEquals("warning", line.subSequence(13, 20).toString());
+        assertSame(line, decoder.decode(b, 5));
+        assertEquals("Foo.c", line.toString());
+    }
+
+    @Test
+    void testNonAsciiLines() {
+        MsBuildLineDecoder decoder = new MsBuildLineDecoder(StandardCharsets.UTF_8);
+        byte[] b = "Gr\u00f6\u00dfe: Warnung\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals("Gr\u00f6\u00dfe: Warnung", decoder.decode(b, b.length).toString());
+
+        byte[] longer = ("\u00e9" + "x".repeat(1000) + "\r\n").getBytes(StandardCharsets.UTF_8);
+        assertEquals("\u00e9" + "x".repeat(1000), decoder.decode(longer, longer.length).toString());
+        assertEquals("Gr\u00f6\u00dfe: Warnung", decoder.decode(b, b.length).toString());
+    }
+
+    @Test
+    void testMalformedBytesReplaced() {
+        MsBuildLineDecoder decoder = new MsBuildLineDecoder(StandardCharsets.UTF_8);
+        byte[] b = { 'a', (byte) 0xC3, 'b' };
+
+        assertEquals("a\ufffdb", decoder.decode(b, b.length).toString());
+    }
+
+    @Test
+    void testSingleByteCharset() {
+        MsBuildLineDecoder decoder = new MsBuildLineDecoder(Charset.forName("windows-1252"));
+        byte[] b = { 'd', (byte) 0xE9, 'j', (byte) 0xE0, '\r', '\n' };
+
+        assertEquals("d\u00e9j\u00e0", decoder.decode(b, b.length).toString());
+    }
+
+    @Test
+    void testUtf16() {
+        MsBuildLineDecoder decoder = new MsBuildLineDecoder(StandardCharsets.UTF_16LE);
+        byte[] b = "error\r\n".getBytes(StandardCharsets.UTF_16LE);
+
+        assertEquals("error", decoder.decode(b, b.length).toString());
+    }
+
+    @Test
+    void testDecodesAsciiAsIs() {
+        assertTrue(MsBuildLineDecoder.decodesAsciiAsIs(StandardCharsets.UTF_8));
+        assertTrue(MsBuildLineDecoder.decodesAsciiAsIs(StandardCharsets.US_ASCII));
+        assertTrue(MsBuildLineDecoder.decodesAsciiAsIs(Charset.forName("windows-1252")));
+        assertTrue(MsBuildLineDecoder.decodesAsciiAsIs(Charset.forName("IBM850")));
+        assertFalse(MsBuildLineDecoder.decodesAsciiAsIs(StandardCharsets.UTF_16LE));
+        assertFalse(MsBuildLineDecoder.decodesAsciiAsIs(Charset.forName("ISO-2022-JP")));
+        assertFalse(MsBuildLineDecoder.decodesAsciiAsIs(Charset.forName("IBM037")));
+    }
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MsBuildLineSplitterTest {
+
+    private static final class Recorder extends MsBuildLineSplitter {
+        final List<String> lines = new ArrayList<>();
+        final ByteArrayOutputStream tail = new ByteArrayOutputStream();
+
+        Recorder(int maxLineLength) {
+            super(maxLineLength);
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) {
+            lines.add(new String(b, 0, len, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        protected void tail(byte[] b, int off, int len) {
+            tail.write(b, off, len);
+        }
+    }
+
+    @Test
+    void testSplitsLines() throws IOException {
+        Recorder recorder = new Recorder(0);
+        recorder.write("a\r\nbc\n\ndef".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(List.of("a\r\n", "bc\n", "\n"), recorder.lines);
+
+        recorder.close();
+        assertEquals(List.of("a\r\n", "bc\n", "\n", "def"), recorder.lines);
+        assertEquals(0, recorder.getLongLines());
+    }
+
+    @Test
+    void testLinesSpanningWrites() throws IOException {
+        Recorder recorder = new Recorder(0);
+        for (byte b : "one\ntwo\n".getBytes(StandardCharsets.US_ASCII)) {
+            recorder.write(b);
+        }
+        recorder.write("thr".getBytes(StandardCharsets.US_ASCII));
+        recorder.write("ee\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(List.of("one\n", "two\n", "three\n"), recorder.lines);
+    }
+
+    @Test
+    void testLongLinesAreCut() throws IOException {
+        Recorder recorder = new Recorder(4);
+        recorder.write("abcd\nabcdefgh".getBytes(StandardCharsets.US_ASCII));
+        recorder.write("ij\nab".getBytes(StandardCharsets.US_ASCII));
+        recorder.write('\n');
+        recorder.write("abcdef".getBytes(StandardCharsets.US_ASCII));
+        recorder.close();
+
+        assertEquals(List.of("abcd", "abcd", "ab\n", "abcd"), recorder.lines);
+        assertEquals("\nefghij\nef", recorder.tail.toString(StandardCharsets.US_ASCII));
+        assertEquals(3, recorder.getLongLines());
+    }
+}
@@ -0,0 +1,194 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildLogIndexTest {
+
+    private static final String ERROR = "C:\\path\\to\\file.cs(12,20): error CS5678: This is an error message";
+    private static final String WARNING = "C:\\path\\to\\file.cs(10,20): warning CS1234: This is a warning message";
+
+    @TempDir
+    private File dir;
+
+    @Test
+    void testEntries() {
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        index.add(0, MsBuildDiagnostics.Severity.WARNING);
+        index.add(1L << 40, MsBuildDiagnostics.Severity.ERROR);
+
+        assertEquals(2, index.size());
+        assertEquals(0, index.getOffset(0));
+        assertEquals(MsBuildDiagnostics.Severity.WARNING, index.getSeverity(0));
+        assertEquals(1L << 40, index.getOffset(1));
+        assertEquals(MsBuildDiagnostics.Severity.ERROR, index.getSeverity(1));
+        assertEquals(1, index.count(MsBuildDiagnostics.Severity.ERROR));
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add(i * 100L, i % 3 == 0 ? MsBuildDiagnostics.Severity.ERROR : MsBuildDiagnostics.Severity.WARNING);
+        }
+        File file = new File(dir, MsBuildLogIndex.FILE_NAME);
+        index.writeTo(file);
+
+        MsBuildLogIndex read = MsBuildLogIndex.readFrom(file);
+        assertEquals(100, read.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(index.getOffset(i), read.getOffset(i));
+            assertEquals(index.getSeverity(i), read.getSeverity(i));
+        }
+    }
+
+    @Test
+    void testSerializedWhileEntriesAreAdded() throws Exception {
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < MsBuildLogIndex.MAX_ENTRIES; i++) {
+                index.add(i, MsBuildDiagnostics.Severity.WARNING);
+            }
+        });
+        adder.start();
+        while (adder.isAlive()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(index);
+            }
+            MsBuildLogIndex read;
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                read = (MsBuildLogIndex) in.readObject();
+            }
+            for (int i = 0; i < read.size(); i++) {
+                assertEquals(i, read.getOffset(i));
+            }
+        }
+        adder.join();
+        assertEquals(MsBuildLogIndex.MAX_ENTRIES, index.size());
+        assertEquals(MsBuildLogIndex.MAX_ENTRIES - 1, index.getOffset(MsBuildLogIndex.MAX_ENTRIES - 1));
+    }
+
+    @Test
+    void testProcessorIndexLocatedInLog() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        log.write("Started by user admin\n[workspace] $ cmd.exe /C msbuild\n".getBytes(StandardCharsets.UTF_8));
+        long before = 22;
+        MsBuildConsoleProcessor processor = new MsBuildConsoleProcessor(log, StandardCharsets.UTF_8);
+        processor.write(("Build started.\r\n" + WARNING + "\r\nline 1\r\nline 2\r\n" + ERROR + "\r\nline 3\r\n"
+                + "line 4\r\nline 5\r\n").getBytes(StandardCharsets.UTF_8));
+        processor.finish();
+        log.write("Finished: FAILURE\n".getBytes(StandardCharsets.UTF_8));
+        File file = new File(dir, "log");
+        Files.write(file.toPath(), log.toByteArray());
+
+        MsBuildLogIndex output = processor.getLogIndex();
+        assertEquals(2, output.size());
+        long base = output.locate(file, before);
+        assertEquals(before + "[workspace] $ cmd.exe /C msbuild\n".length(), base);
+
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        index.addAll(output, base);
+        List<MsBuildDiagnosticsAction.Excerpt> errors = index.readExcerpts(file, StandardCharsets.UTF_8,
+                MsBuildDiagnostics.Severity.ERROR, 0, 10);
+        assertEquals(1, errors.size());
+        assertEquals(List.of("line 1", "line 2", ERROR, "line 3", "line 4"), errors.get(0).getLines());
+        assertEquals(2, errors.get(0).getLineIndex());
+
+        List<MsBuildDiagnosticsAction.Excerpt> warnings = index.readExcerpts(file, StandardCharsets.UTF_8,
+                MsBuildDiagnostics.Severity.WARNING, 0, 10);
+        assertEquals(List.of("[workspace] $ cmd.exe /C msbuild", "Build started.", WARNING, "line 1", "line 2"),
+                warnings.get(0).getLines());
+    }
+
+    @Test
+    void testContextAtTheStartAndEndOfTheLog() throws IOException {
+        File file = new File(dir, "log");
+        Files.writeString(file.toPath(), ERROR + "\nline 1", StandardCharsets.UTF_8);
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        index.add(0, MsBuildDiagnostics.Severity.ERROR);
+
+        MsBuildDiagnosticsAction.Excerpt excerpt = index.readExcerpts(file, StandardCharsets.UTF_8,
+                MsBuildDiagnostics.Severity.ERROR, 0, 10).get(0);
+        assertEquals(List.of(ERROR, "line 1"), excerpt.getLines());
+        assertEquals(0, excerpt.getLineIndex());
+    }
+
+    @Test
+    void testChangedLogIsDetected() throws IOException {
+        File file = new File(dir, "log");
+        Files.writeString(file.toPath(), "line 1\nline 2\n" + ERROR + "\n", StandardCharsets.UTF_8);
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        index.add(3, MsBuildDiagnostics.Severity.ERROR);
+        index.add(7, MsBuildDiagnostics.Severity.ERROR);
+        index.add(1000, MsBuildDiagnostics.Severity.ERROR);
+
+        List<MsBuildDiagnosticsAction.Excerpt> excerpts = index.readExcerpts(file, StandardCharsets.UTF_8,
+                MsBuildDiagnostics.Severity.ERROR, 0, 10);
+        assertEquals(3, excerpts.size());
+        for (MsBuildDiagnosticsAction.Excerpt excerpt : excerpts) {
+            assertFalse(excerpt.isFound());
+        }
+    }
+
+    @Test
+    void testPaging() throws IOException {
+        StringBuilder log = new StringBuilder();
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        for (int i = 0; i < 5; i++) {
+            index.add(log.length(), MsBuildDiagnostics.Severity.WARNING);
+            log.append(WARNING).append(i).append('\n');
+        }
+        File file = new File(dir, "log");
+        Files.writeString(file.toPath(), log, StandardCharsets.UTF_8);
+
+        List<MsBuildDiagnosticsAction.Excerpt> excerpts = index.readExcerpts(file, StandardCharsets.UTF_8,
+                MsBuildDiagnostics.Severity.WARNING, 3, 10);
+        assertEquals(2, excerpts.size());
+        assertTrue(excerpts.get(0).isFound());
+        assertEquals(WARNING + "3", excerpts.get(0).getLines().get(excerpts.get(0).getLineIndex()));
+    }
+
+    @Test
+    void testLineFingerprints() throws IOException {
+        String log = "line 1\n" + WARNING + "\r\n" + ERROR;
+        File file = new File(dir, "log");
+        Files.writeString(file.toPath(), log, StandardCharsets.UTF_8);
+        MsBuildLogIndex index = new MsBuildLogIndex();
+        index.add(log.indexOf(WARNING), MsBuildDiagnostics.Severity.WARNING);
+        index.add(log.indexOf(ERROR), MsBuildDiagnostics.Severity.ERROR);
+        index.add(1000, MsBuildDiagnostics.Severity.ERROR);
+
+        MsBuildFingerprintSet lines = index.readLineFingerprints(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains(MsBuildLogIndex.fingerprint(WARNING)));
+        assertTrue(lines.contains(MsBuildLogIndex.fingerprint(ERROR)));
+        assertFalse(lines.contains(MsBuildLogIndex.fingerprint("line 1")));
+    }
+
+    @Test
+    void testNotLocatedWhenTheOutputIsMissing() throws IOException {
+        MsBuildConsoleProcessor processor = new MsBuildConsoleProcessor(new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8);
+        processor.write((ERROR + "\r\n").getBytes(StandardCharsets.UTF_8));
+        processor.finish();
+        File file = new File(dir, "log");
+        Files.writeString(file.toPath(), "Something else entirely\n", StandardCharsets.UTF_8);
+
+        assertEquals(-1, processor.getLogIndex().locate(file, 0));
+    }
+}
@@ -0,0 +1,64 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MsBuildParallelismTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    void fromTheProcessors() {
+        assertEquals(List.of("/m:4", "/p:CL_MPCount=2", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe"), Map.of(), new MsBuildAgentResources(8, 32 * GB,
+                        16 * GB), 1));
+        assertEquals(List.of("/m:32", "/p:CL_MPCount=2", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe"), Map.of(), new MsBuildAgentResources(64, 256 * GB,
+                        128 * GB), 1));
+        assertEquals(List.of("/m:2", "/p:CL_MPCount=1", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe"), Map.of(), new MsBuildAgentResources(2, 0, 0), 1));
+    }
+
+    @Test
+    void sharedByTheProcesses() {
+        assertEquals(List.of("/m:8", "/p:CL_MPCount=2", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe"), Map.of(), new MsBuildAgentResources(64, 256 * GB,
+                        128 * GB), 4));
+    }
+
+    @Test
+    void limitedByTheMemory() {
+        assertEquals(List.of("/m:3", "/p:CL_MPCount=5", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe"), Map.of(), new MsBuildAgentResources(16, 8 * GB,
+                        3 * GB), 1));
+    }
+
+    @Test
+    void argumentsAlreadySet() {
+        MsBuildAgentResources resources = new MsBuildAgentResources(8, 32 * GB, 16 * GB);
+        assertEquals(List.of("/p:CL_MPCount=2", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe", "/m"), Map.of(), resources, 1));
+        assertEquals(List.of("/p:CL_MPCount=2", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe", "-maxCpuCount:6"), Map.of(), resources, 1));
+        assertEquals(List.of("/m:4", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe", "/p:Configuration=Release;CL_MPCount=4"), Map.of(),
+                        resources, 1));
+        assertEquals(List.of("/m:4", "/p:CL_MPCount=2"),
+                MsBuildParallelism.tune(List.of("msbuild.exe", "/nr:true"), Map.of(), resources, 1));
+        assertEquals(List.of("/m:4", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe"), Map.of("cl_mpcount", "3"), resources, 1));
+        assertEquals(List.of(), MsBuildParallelism.tune(List.of("msbuild.exe", "/maxcpucount:2", "/nodeReuse:true",
+                "-property:CL_MPCount=1"), Map.of(), resources, 1));
+    }
+
+    @Test
+    void otherSwitchesAreNotMistaken() {
+        assertEquals(List.of("/m:4", "/p:CL_MPCount=2", "/nodeReuse:false"),
+                MsBuildParallelism.tune(List.of("msbuild.exe", "/maxServerCount", "/nologo", "/p:NotCL_MPCount=1"),
+                        Map.of(), new MsBuildAgentResources(8, 32 * GB, 16 * GB), 1));
+    }
+}
@@ -0,0 +1,95 @@
+package hudson.plugins.msbuild;
+
+import hudson.plugins.msbuild.MsBuildPerformanceSummary.Entry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildPerformanceParserTest {
+
+    private static final String[] LOG = {
+        "Build succeeded.",
+        "    0 Warning(s)",
+        "    0 Error(s)",
+        "",
+        "Project Evaluation Performance Summary:",
+        "       32 ms  C:\\src\\App\\App.csproj   1 calls",
+        "",
+        "Project Performance Summary:",
+        "     4521 ms  C:\\src\\App.sln   1 calls",
+        "",
+        "Target Performance Summary:",
+        "        0 ms  _CheckForInvalidConfigurationAndPlatform   2 calls",
+        "      310 ms  ResolveAssemblyReferences                  2 calls",
+        "     2345 ms  CoreCompile                                2 calls",
+        "",
+        "Task Performance Summary:",
+        "        1 ms  Message                                    4 calls",
+        "      290 ms  ResolveAssemblyReference                   2 calls",
+        "     2300 ms  Csc                                        2 calls",
+        "",
+        "Time Elapsed 00:00:04.52",
+    };
+
+    @Test
+    void testTargetsAndTasks() {
+        MsBuildPerformanceParser parser = new MsBuildPerformanceParser();
+        for (String line : LOG) {
+            parser.parseLine(line);
+        }
+        MsBuildPerformanceSummary summary = parser.getSummary();
+
+        List<Entry> targets = summary.getTargets();
+        assertEquals(3, targets.size());
+        assertEquals("CoreCompile", targets.get(0).getName());
+        assertEquals(2345, targets.get(0).getMillis());
+        assertEquals(2, targets.get(0).getCalls());
+        assertEquals("_CheckForInvalidConfigurationAndPlatform", targets.get(2).getName());
+        assertEquals(2655, summary.getTotalMillis(MsBuildPerformanceSummary.Kind.TARGET));
+
+        List<Entry> tasks = summary.getTasks();
+        assertEquals(3, tasks.size());
+        assertEquals("Csc", tasks.get(0).getName());
+        assertEquals("ResolveAssemblyReference", tasks.get(1).getName());
+        assertEquals(4, tasks.get(2).getCalls());
+    }
+
+    @Test
+    void testSectionEndsWithFirstOtherLine() {
+        MsBuildPerformanceParser parser = new MsBuildPerformanceParser();
+        parser.parseLine("Task Performance Summary:");
+        parser.parseLine("      120 ms  Csc   1 calls");
+        parser.parseLine("Time Elapsed 00:00:01.00");
+        parser.parseLine("      120 ms  Copy   1 calls");
+
+        assertEquals(1, parser.getSummary().getTasks().size());
+    }
+
+    @Test
+    void testNoSummary() {
+        MsBuildPerformanceParser parser = new MsBuildPerformanceParser();
+        parser.parseLine("      120 ms  Csc   1 calls");
+        parser.parseLine("  CoreCompile:");
+
+        assertTrue(parser.getSummary().isEmpty());
+    }
+
+    @Test
+    void testSummariesOfSeveralInvocationsAreMerged() {
+        MsBuildPerformanceSummary summary = new MsBuildPerformanceSummary();
+        MsBuildPerformanceSummary other = new MsBuildPerformanceSummary();
+        summary.add(MsBuildPerformanceSummary.Kind.TASK, "Csc", 100, 1);
+        other.add(MsBuildPerformanceSummary.Kind.TASK, "Csc", 50, 2);
+        other.add(MsBuildPerformanceSummary.Kind.TASK, "Copy", 10, 3);
+
+        summary.addAll(other);
+
+        assertEquals(150, summary.getTasks().get(0).getMillis());
+        assertEquals(3, summary.getTasks().get(0).getCalls());
+        assertEquals("Copy", summary.getTasks().get(1).getName());
+        assertTrue(summary.getTargets().isEmpty());
+    }
+}
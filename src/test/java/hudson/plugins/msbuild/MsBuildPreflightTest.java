@@ -0,0 +1,79 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildPreflightTest {
+
+    @TempDir
+    Path workspace;
+
+    @Test
+    void resolvesEverythingInOneCall() throws Exception {
+        Path moduleRoot = Files.createDirectories(workspace.resolve("module"));
+        Path tools = Files.createDirectories(workspace.resolve("tools"));
+        Files.createFile(tools.resolve("msbuild.exe"));
+        Files.createFile(moduleRoot.resolve("App.sln"));
+
+        MsBuildPreflight.Result result = new MsBuildPreflight(tools.toString(), "msbuild.exe", "App.sln",
+                workspace.toString(), workspace.resolve("tmp").toString(), "out/result.sarif")
+                .invoke(moduleRoot.toFile(), null);
+
+        assertEquals(tools + "\\msbuild.exe", result.getMsBuildPath());
+        assertEquals(moduleRoot.toString(), result.getPwd());
+        assertTrue(new File(result.getBinaryLog()).isFile());
+        assertEquals(workspace.resolve("tmp").toString(), new File(result.getBinaryLog()).getParent());
+        assertEquals(moduleRoot.resolve("out/result.sarif").toString(), result.getSarifFile());
+        assertTrue(Files.isDirectory(moduleRoot.resolve("out")));
+    }
+
+    @Test
+    void executableGivenDirectly() throws Exception {
+        Path exe = Files.createFile(workspace.resolve("MSBuild.exe"));
+
+        MsBuildPreflight.Result result = new MsBuildPreflight(exe.toString(), "msbuild.exe", null, null, null,
+                null).invoke(workspace.toFile(), null);
+
+        assertEquals(exe.toString(), result.getMsBuildPath());
+        assertTrue(result.isMsBuildFound());
+        assertNull(result.getBinaryLog());
+        assertNull(result.getSarifFile());
+    }
+
+    @Test
+    void missingExecutable() throws Exception {
+        MsBuildPreflight.Result result = new MsBuildPreflight(workspace.resolve("none.exe").toString(),
+                "msbuild.exe", null, null, null, null).invoke(workspace.toFile(), null);
+
+        assertFalse(result.isMsBuildFound());
+    }
+
+    @Test
+    void noInstallation() throws Exception {
+        MsBuildPreflight.Result result = new MsBuildPreflight(null, "msbuild.exe", null, null, null, null)
+                .invoke(workspace.toFile(), null);
+
+        assertNull(result.getMsBuildPath());
+        assertTrue(result.isMsBuildFound());
+    }
+
+    @Test
+    void fileOutsideOfTheModuleRootRunsFromTheWorkspace() throws Exception {
+        Path moduleRoot = Files.createDirectories(workspace.resolve("module"));
+        Files.createFile(workspace.resolve("App.sln"));
+
+        MsBuildPreflight.Result result = new MsBuildPreflight(null, "msbuild.exe", "App.sln", workspace.toString(),
+                null, null).invoke(moduleRoot.toFile(), null);
+
+        assertEquals(workspace.toString(), result.getPwd());
+    }
+}
@@ -0,0 +1,210 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildProjectGraphTest {
+
+    @TempDir
+    Path dir;
+
+    private Path project(String name, String... references) throws IOException {
+        StringBuilder xml = new StringBuilder("<Project Sdk=\"Microsoft.NET.Sdk\">\n  <ItemGroup>\n");
+        for (String reference : references) {
+            xml.append("    <ProjectReference Include=\"..\\").append(reference).append('\\').append(reference)
+                    .append(".csproj\" />\n");
+        }
+        xml.append("  </ItemGroup>\n</Project>\n");
+        Path project = dir.resolve(name).resolve(name + ".csproj");
+        Files.createDirectories(project.getParent());
+        Files.writeString(project, xml);
+        return project;
+    }
+
+    private Path solution(String... names) throws IOException {
+        StringBuilder sln = new StringBuilder("Microsoft Visual Studio Solution File, Format Version 12.00\n");
+        int guid = 0;
+        for (String name : names) {
+            sln.append("Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"").append(name).append("\", \"")
+                    .append(name).append('\\').append(name).append(".csproj\", \"{00000000-0000-0000-0000-")
+                    .append(String.format("%012d", guid++)).append("}\"\nEndProject\n");
+        }
+        sln.append("Project(\"{2150E333-8FDC-42A3-9474-1A3956D46DE8}\") = \"Folder\", \"Folder\", \"{F}\"\n")
+                .append("EndProject\n");
+        Path solution = dir.resolve("App.sln");
+        Files.writeString(solution, sln);
+        return solution;
+    }
+
+    @Test
+    void levelsAndCriticalPath() throws Exception {
+        Path core = project("Core");
+        Path data = project("Data", "Core");
+        Path web = project("Web", "Data", "Core");
+        Path tool = project("Tool");
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution("Web", "Data", "Core", "Tool"));
+
+        assertEquals(4, graph.getProjects().size());
+        List<List<Path>> levels = graph.getLevels();
+        assertEquals(3, levels.size());
+        assertTrue(levels.get(0).containsAll(List.of(core, tool)));
+        assertEquals(List.of(data), levels.get(1));
+        assertEquals(List.of(web), levels.get(2));
+        assertEquals(List.of(web, data, core), graph.getCriticalPath(p -> 1));
+        assertEquals(List.of(tool), graph.getCriticalPath(p -> p.equals(tool) ? 10 : 1));
+    }
+
+    @Test
+    void referencedProjectsOutsideOfTheSolution() throws Exception {
+        Path core = project("Core");
+        Path app = project("App", "Core");
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution("App"));
+
+        assertEquals(List.of(app, core), graph.getProjects());
+        assertEquals(List.of(core), graph.getReferences(app));
+    }
+
+    @Test
+    void changedProjectsAreParsedAgain() throws Exception {
+        Path core = project("Core");
+        Path app = project("App");
+        Path solution = solution("App");
+        assertEquals(List.of(app), MsBuildProjectGraph.load(solution).getProjects());
+
+        FileTime modified = Files.getLastModifiedTime(app);
+        project("App", "Core");
+        Files.setLastModifiedTime(app, FileTime.fromMillis(modified.toMillis() + 2000));
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution);
+        assertEquals(List.of(app, core), graph.getProjects());
+        assertEquals(List.of(core), graph.getReferences(app));
+    }
+
+    @Test
+    void dependenciesDeclaredInTheSolution() throws Exception {
+        Path a = project("A");
+        Path b = project("B");
+        Path solution = dir.resolve("App.sln");
+        Files.writeString(solution, ""
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"A\", \"A\\A.csproj\", \"{AAAA}\"\n"
+                + "\tProjectSection(ProjectDependencies) = postProject\n"
+                + "\t\t{BBBB} = {BBBB}\n"
+                + "\tEndProjectSection\n"
+                + "EndProject\n"
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"B\", \"B\\B.csproj\", \"{BBBB}\"\n"
+                + "EndProject\n");
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution);
+
+        assertEquals(List.of(b), graph.getReferences(a));
+        assertEquals(1, graph.getShards(2).size());
+    }
+
+    @Test
+    void shardsKeepReferencedProjectsTogether() throws Exception {
+        project("Core");
+        Path data = project("Data", "Core");
+        Path web = project("Web", "Data");
+        Path tool = project("Tool");
+        Path cli = project("Cli");
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution("Web", "Data", "Core", "Tool", "Cli"));
+
+        List<List<Path>> shards = graph.getShards(2);
+        assertEquals(2, shards.size());
+        assertEquals(3, shards.get(0).size());
+        assertEquals(List.of(web), graph.getRoots(shards.get(0)));
+        assertEquals(List.of(tool, cli), shards.get(1));
+        assertEquals(1, graph.getShards(1).size());
+        assertEquals(3, graph.getShards(10).size());
+        assertTrue(graph.getRoots(graph.getProjects()).containsAll(List.of(web, tool, cli)));
+        assertTrue(!graph.getRoots(graph.getProjects()).contains(data));
+    }
+
+    @Test
+    void unresolvableReferencesAreIgnored() throws Exception {
+        Path app = dir.resolve("App.csproj");
+        Files.writeString(app, "<Project><ItemGroup>"
+                + "<ProjectReference Include=\"$(SharedDir)\\Shared.csproj\" />"
+                + "<ProjectReference Include=\"..\\*\\*.csproj\" />"
+                + "</ItemGroup></Project>");
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(app);
+
+        assertEquals(List.of(app), graph.getProjects());
+    }
+
+    @Test
+    void projectsNotBuiltWithMsBuildAreIgnored() throws Exception {
+        Path app = project("App");
+        for (String file : new String[] { "Setup/Setup.vdproj", "Db/Db.sqlproj", "Shared/Shared.shproj" }) {
+            Files.createDirectories(dir.resolve(file).getParent());
+            Files.writeString(dir.resolve(file), "<Project />");
+        }
+        Path sdkDb = dir.resolve("SdkDb/SdkDb.sqlproj");
+        Files.createDirectories(sdkDb.getParent());
+        Files.writeString(sdkDb, "<Project Sdk=\"Microsoft.Build.Sql/0.1.12-preview\" />");
+        Path solution = dir.resolve("App.sln");
+        Files.writeString(solution, ""
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"App\", \"App\\App.csproj\", \"{1}\"\n"
+                + "EndProject\n"
+                + "Project(\"{54435603-DBB4-11D2-8724-00A0C9A8B90C}\") = \"Setup\", \"Setup\\Setup.vdproj\", \"{2}\"\n"
+                + "EndProject\n"
+                + "Project(\"{00D1A9C2-B5F0-4AF3-8072-F6C62B433612}\") = \"Db\", \"Db\\Db.sqlproj\", \"{3}\"\n"
+                + "EndProject\n"
+                + "Project(\"{D954291E-2A0B-460D-934E-DC6B0785DB48}\") = \"Shared\", \"Shared\\Shared.shproj\", "
+                + "\"{4}\"\n"
+                + "EndProject\n"
+                + "Project(\"{00D1A9C2-B5F0-4AF3-8072-F6C62B433612}\") = \"SdkDb\", \"SdkDb\\SdkDb.sqlproj\", \"{5}\"\n"
+                + "EndProject\n");
+
+        assertEquals(List.of(app, sdkDb), MsBuildProjectGraph.load(solution).getProjects());
+    }
+
+    @Test
+    void circularReferences() throws Exception {
+        project("A", "B");
+        project("B", "A");
+
+        assertThrows(IOException.class, () -> MsBuildProjectGraph.load(solution("A", "B")));
+    }
+
+    @Test
+    void largeSolution() throws Exception {
+        int count = 2000;
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "P" + i;
+            // chains of 10 projects
+            if (i % 10 == 0) {
+                project(names[i]);
+            } else {
+                project(names[i], names[i - 1]);
+            }
+        }
+
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution(names));
+
+        assertEquals(count, graph.getProjects().size());
+        assertEquals(10, graph.getLevels().size());
+        assertEquals(10, graph.getCriticalPath(p -> 1).size());
+        List<List<Path>> shards = graph.getShards(4);
+        assertEquals(4, shards.size());
+        for (List<Path> shard : shards) {
+            assertEquals(count / 4, shard.size());
+            assertEquals(count / 40, graph.getRoots(shard).size());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildSarifWriterTest {
+
+    private static final String START = "{\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"version\":"
+            + "\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{\"name\":\"MSBuild\",\"informationUri\":"
+            + "\"https://learn.microsoft.com/visualstudio/msbuild/msbuild\"}},\"results\":[";
+    private static final String END = "]}]}";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testNoResults() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MsBuildSarifWriter(out).close();
+
+        assertEquals(START + END, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testResults() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MsBuildSarifWriter sarif = new MsBuildSarifWriter(out)) {
+            sarif.added(MsBuildDiagnostics.Severity.WARNING, "C:\\src\\My App\\Foo.cs", 12, 5, "CS0168", "App.csproj",
+                    "The variable 'e' is declared but never used");
+            sarif.added(MsBuildDiagnostics.Severity.ERROR, "CSC", 0, 0, "CS0006", null,
+                    "Metadata file \"Lib.dll\" could not be found");
+            assertEquals(2, sarif.getResults());
+        }
+
+        assertEquals(START
+                + "{\"ruleId\":\"CS0168\",\"level\":\"warning\",\"message\":{\"text\":\"The variable 'e' is declared "
+                + "but never used\"},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":"
+                + "\"file:///C:/src/My%20App/Foo.cs\"},\"region\":{\"startLine\":12,\"startColumn\":5}}}],"
+                + "\"properties\":{\"project\":\"App.csproj\"}},"
+                + "{\"ruleId\":\"CS0006\",\"level\":\"error\",\"message\":{\"text\":\"Metadata file \\\"Lib.dll\\\" "
+                + "could not be found\"}}"
+                + END, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEscaping() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MsBuildSarifWriter sarif = new MsBuildSarifWriter(out)) {
+            sarif.added(MsBuildDiagnostics.Severity.WARNING, null, 0, 0, null, null,
+                    "back\\slash\ttab\u0001 caf\u00e9");
+        }
+
+        assertEquals(START + "{\"level\":\"warning\",\"message\":{\"text\":\"back\\\\slash\\ttab\\u0001 caf\u00e9\"}}"
+                + END, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testToUri() {
+        assertEquals("file:///C:/src/Foo.cs", MsBuildSarifWriter.toUri("C:\\src\\Foo.cs"));
+        assertEquals("src/Foo.cs", MsBuildSarifWriter.toUri("src\\Foo.cs"));
+        assertEquals("file://server/share/Foo.cs", MsBuildSarifWriter.toUri("\\\\server\\share\\Foo.cs"));
+        assertEquals("file:///D:/caf%C3%A9/a%23b.cs", MsBuildSarifWriter.toUri("D:\\caf\u00e9\\a#b.cs"));
+    }
+
+    @Test
+    void testWriteFailureIsReportedOnClose() throws IOException {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        MsBuildSarifWriter sarif = new MsBuildSarifWriter(failing);
+        for (int i = 0; i < 10000; i++) {
+            sarif.added(MsBuildDiagnostics.Severity.WARNING, "Foo.cs", i + 1, 1, "CS0168", null, "message " + i);
+        }
+
+        IOException e = assertThrows(IOException.class, sarif::close);
+        assertTrue(e.getMessage().contains("disk full"));
+    }
+
+    @Test
+    void testDiagnosticsAreStreamedOnce() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MsBuildConsoleProcessor processor = new MsBuildConsoleProcessor(OutputStream.nullOutputStream(),
+                StandardCharsets.UTF_8);
+        MsBuildSarifWriter sarif = new MsBuildSarifWriter(out);
+        processor.getDiagnostics().setListener(sarif);
+        String warning = "C:\\src\\Foo.cs(10,20): warning CS1234: This is a warning message [C:\\src\\App.csproj]\r\n";
+        processor.write((warning + warning).getBytes(StandardCharsets.UTF_8));
+        processor.finish();
+
+        assertEquals(1, sarif.getResults());
+        sarif.close();
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("\"project\":\"C:\\\\src\\\\App.csproj\""));
+    }
+
+    @Test
+    void testMergeRunsOfSeveralProcesses() throws IOException {
+        Path first = dir.resolve("msbuild-1.sarif");
+        try (MsBuildSarifWriter sarif = new MsBuildSarifWriter(Files.newOutputStream(first))) {
+            sarif.added(MsBuildDiagnostics.Severity.WARNING, null, 0, 0, "CS0168", null, "first");
+        }
+        Path second = dir.resolve("msbuild-2.sarif");
+        new MsBuildSarifWriter(Files.newOutputStream(second)).close();
+        // interrupted while writing
+        Path third = dir.resolve("msbuild-3.sarif");
+        Files.writeString(third, START + "{\"level\":\"error\"");
+        Path target = dir.resolve("msbuild.sarif");
+
+        int runs = new MsBuildSarifWriter.Merge(List.of(first.toString(), second.toString(), third.toString(),
+                dir.resolve("msbuild-4.sarif").toString()), List.of("Debug|x64", "Release \"x64\"", "", ""))
+                .invoke(target.toFile(), null);
+
+        assertEquals(2, runs);
+        String run = START.substring(START.indexOf("\"runs\":[") + 8 + 1);
+        assertEquals(START.substring(0, START.indexOf("\"runs\":[") + 8)
+                + "{\"automationDetails\":{\"id\":\"Debug|x64\"}," + run
+                + "{\"ruleId\":\"CS0168\",\"level\":\"warning\",\"message\":{\"text\":\"first\"}}]},"
+                + "{\"automationDetails\":{\"id\":\"Release \\\"x64\\\"\"}," + run + END,
+                Files.readString(target));
+        assertFalse(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertFalse(Files.exists(third));
+    }
+}
@@ -0,0 +1,162 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsBuildShardsTest {
+
+    @TempDir
+    Path dir;
+
+    private Path project(String dirName, String name) throws Exception {
+        Path project = dir.resolve(dirName).resolve(name + ".csproj");
+        Files.createDirectories(project.getParent());
+        Files.writeString(project, "<Project />");
+        return project;
+    }
+
+    @Test
+    void traversalProject() throws Exception {
+        Path a = project("A;B", "A");
+        Path c = project("C&D", "C");
+        Path solution = dir.resolve("My App.sln");
+        Files.writeString(solution, ""
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"A\", \"A;B\\A.csproj\", \"{A}\"\n"
+                + "EndProject\n"
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"C\", \"C&D\\C.csproj\", \"{C}\"\n"
+                + "EndProject\n");
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution);
+        String xml = MsBuildShards.traversal(graph, List.of(a, c), solution);
+
+        assertTrue(xml.contains("<ShardProject Include=\"" + dir.resolve("A%3BB").resolve("A.csproj") + "\" />"));
+        assertTrue(xml.contains("<ShardProject Include=\"" + dir.resolve("C&amp;D").resolve("C.csproj") + "\" />"));
+        assertTrue(xml.contains(";SolutionName=My App;"));
+        assertTrue(xml.contains("<Target Name=\"Rebuild\">"));
+        assertTrue(xml.contains("Targets=\"Rebuild\" Properties=\"$(ShardProperties)\""));
+    }
+
+    @Test
+    void projectsInTheConfigurationOfTheSolution() throws Exception {
+        Path app = project("App", "App");
+        Path tests = project("Tests", "Tests");
+        Path solution = dir.resolve("App.sln");
+        Files.writeString(solution, ""
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"App\", \"App\\App.csproj\", \"{A}\"\n"
+                + "EndProject\n"
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"Tests\", \"Tests\\Tests.csproj\", \"{T}\"\n"
+                + "EndProject\n"
+                + "Global\n"
+                + "\tGlobalSection(SolutionConfigurationPlatforms) = preSolution\n"
+                + "\t\tDebug|Any CPU = Debug|Any CPU\n"
+                + "\t\tShip|x64 = Ship|x64\n"
+                + "\tEndGlobalSection\n"
+                + "\tGlobalSection(ProjectConfigurationPlatforms) = postSolution\n"
+                + "\t\t{A}.Debug|Any CPU.ActiveCfg = Debug|Any CPU\n"
+                + "\t\t{A}.Debug|Any CPU.Build.0 = Debug|Any CPU\n"
+                + "\t\t{A}.Ship|x64.ActiveCfg = Release|x64\n"
+                + "\t\t{A}.Ship|x64.Build.0 = Release|x64\n"
+                + "\t\t{T}.Debug|Any CPU.ActiveCfg = Debug|Any CPU\n"
+                + "\t\t{T}.Debug|Any CPU.Build.0 = Debug|Any CPU\n"
+                + "\t\t{T}.Ship|x64.ActiveCfg = Release|Any CPU\n"
+                + "\tEndGlobalSection\n"
+                + "EndGlobal\n");
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution);
+        assertEquals("Debug|Any CPU", graph.getDefaultSolutionConfiguration());
+
+        String xml = MsBuildShards.traversal(graph, List.of(app, tests), solution);
+
+        assertTrue(xml.contains("<Configuration Condition=\"'$(Configuration)' == ''\">Debug</Configuration>"));
+        assertTrue(xml.contains("<Platform Condition=\"'$(Platform)' == ''\">Any CPU</Platform>"));
+        String debug = xml.substring(xml.indexOf("<ItemGroup Condition=\"'$(Configuration)|$(Platform)' == "
+                + "'Debug|Any CPU'\">"));
+        debug = debug.substring(0, debug.indexOf("</ItemGroup>"));
+        assertTrue(debug.contains("<ShardProject Include=\"" + app
+                + "\" AdditionalProperties=\"Configuration=Debug;Platform=AnyCPU\" />"));
+        assertTrue(debug.contains("<ShardProject Include=\"" + tests + "\""));
+        String ship = xml.substring(xml.indexOf("<ItemGroup Condition=\"'$(Configuration)|$(Platform)' == "
+                + "'Ship|x64'\">"));
+        ship = ship.substring(0, ship.indexOf("</ItemGroup>"));
+        assertTrue(ship.contains("<ShardProject Include=\"" + app
+                + "\" AdditionalProperties=\"Configuration=Release;Platform=x64\" />"));
+        // not built in this configuration of the solution
+        assertFalse(ship.contains(tests.toString()));
+        assertTrue(xml.contains("BuildProjectInSolution=&quot;False&quot;&gt;Release|AnyCPU&lt;"));
+        assertTrue(xml.contains("<Error Condition=\"'$(ShardConfiguration)' == ''\""));
+    }
+
+    @Test
+    void configurationsWithoutPlatform() throws Exception {
+        Path app = project("App", "App");
+        Path solution = dir.resolve("App.sln");
+        Files.writeString(solution, ""
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"App\", \"App\\App.csproj\", \"{A}\"\n"
+                + "EndProject\n"
+                + "Global\n"
+                + "\tGlobalSection(SolutionConfigurationPlatforms) = preSolution\n"
+                + "\t\tRelease = Release\n"
+                + "\t\tDebug|x64 = Debug|x64\n"
+                + "\tEndGlobalSection\n"
+                + "\tGlobalSection(ProjectConfigurationPlatforms) = postSolution\n"
+                + "\t\t{A}.Release.ActiveCfg = Release\n"
+                + "\t\t{A}.Release.Build.0 = Release\n"
+                + "\tEndGlobalSection\n"
+                + "EndGlobal\n");
+        MsBuildProjectGraph graph = MsBuildProjectGraph.load(solution);
+        assertEquals(List.of("Release|Any CPU", "Debug|x64"), graph.getSolutionConfigurations());
+        assertEquals("Any CPU", graph.getDefaultSolutionPlatform());
+
+        String xml = MsBuildShards.traversal(graph, List.of(app), solution);
+
+        assertTrue(xml.contains("<Configuration Condition=\"'$(Configuration)' == ''\">Debug</Configuration>"));
+        // /p:Configuration=Release alone builds Release|Any CPU
+        assertTrue(xml.contains("<Platform Condition=\"'$(Platform)' == ''\">Any CPU</Platform>"));
+        String release = xml.substring(xml.indexOf("<ItemGroup Condition=\"'$(Configuration)|$(Platform)' == "
+                + "'Release|Any CPU'\">"));
+        assertTrue(release.contains("<ShardProject Include=\"" + app
+                + "\" AdditionalProperties=\"Configuration=Release\" />"));
+    }
+
+    @Test
+    void unsupportedTargets() {
+        assertEquals(List.of(), MsBuildShards.getUnsupportedTargets(List.of("msbuild.exe", "/t:Clean;Build",
+                "-target:restore", "/p:Configuration=Release")));
+        assertEquals(List.of("Publish", "App:Rebuild"), MsBuildShards.getUnsupportedTargets(List.of("msbuild.exe",
+                "/t:Build,Publish", "--target:App:Rebuild", "/p:t:x")));
+    }
+
+    @Test
+    void writesOneProjectPerShard() throws Exception {
+        for (String name : new String[] { "A", "B" }) {
+            Files.createDirectories(dir.resolve(name));
+            Files.writeString(dir.resolve(name).resolve(name + ".csproj"), "<Project />");
+        }
+        Files.writeString(dir.resolve("App.sln"), ""
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"A\", \"A\\A.csproj\", \"{A}\"\n"
+                + "EndProject\n"
+                + "Project(\"{FAE04EC0-301F-11D3-BF4B-00C04F79EFBC}\") = \"B\", \"B\\B.csproj\", \"{B}\"\n"
+                + "EndProject\n");
+
+        MsBuildShards.Result result = new MsBuildShards("App.sln", 4, dir.resolve("tmp").toString())
+                .invoke(dir.toFile(), null);
+
+        assertEquals(2, result.getProjects().size());
+        assertEquals(List.of(1, 1), result.getSizes());
+        assertEquals(2, result.getProjectCount());
+        assertEquals(1, result.getLevels());
+        for (String project : result.getProjects()) {
+            assertTrue(Files.readString(Path.of(project)).contains("<ShardProject Include="));
+        }
+
+        MsBuildShards.Result single = new MsBuildShards("App.sln", 1, dir.resolve("tmp").toString())
+                .invoke(dir.toFile(), null);
+        assertTrue(single.getProjects().isEmpty());
+    }
+}
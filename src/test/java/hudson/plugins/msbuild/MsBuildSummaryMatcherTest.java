@@ -0,0 +1,126 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class MsBuildSummaryMatcherTest {
+
+    /** The console code page of each language. */
+    private static final Map<String, String> CODE_PAGES = new LinkedHashMap<>();
+
+    static {
+        CODE_PAGES.put("en", "IBM437");
+        CODE_PAGES.put("cs", "IBM852");
+        CODE_PAGES.put("de", "IBM850");
+        CODE_PAGES.put("es", "IBM850");
+        CODE_PAGES.put("fr", "IBM850");
+        CODE_PAGES.put("it", "IBM850");
+        CODE_PAGES.put("ja", "Shift_JIS");
+        CODE_PAGES.put("ko", "x-windows-949");
+        CODE_PAGES.put("pl", "IBM852");
+        CODE_PAGES.put("pt-BR", "IBM850");
+        CODE_PAGES.put("ru", "IBM866");
+        CODE_PAGES.put("tr", "IBM857");
+        CODE_PAGES.put("zh-Hans", "GBK");
+        CODE_PAGES.put("zh-Hant", "Big5");
+    }
+
+    @Test
+    void testEveryLanguageHasACorpus() {
+        assertEquals(CODE_PAGES.size(), MsBuildSummaryMatcher.TEMPLATES.length);
+        for (String[] language : MsBuildSummaryMatcher.TEMPLATES) {
+            assertNotNull(CODE_PAGES.get(language[0]), language[0]);
+            assertNotNull(getClass().getResource("summary/" + language[0] + ".txt"), language[0]);
+        }
+    }
+
+    @Test
+    void testCorpusInUtf8() throws IOException {
+        for (String language : CODE_PAGES.keySet()) {
+            assertCounts(language, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testCorpusInCodePage() throws IOException {
+        for (Map.Entry<String, String> e : CODE_PAGES.entrySet()) {
+            assertCounts(e.getKey(), Charset.forName(e.getValue()));
+        }
+    }
+
+    @Test
+    void testCorpusInUtf16() throws IOException {
+        for (String language : CODE_PAGES.keySet()) {
+            assertCounts(language, StandardCharsets.UTF_16LE);
+        }
+    }
+
+    @Test
+    void testOtherLanguageKeywordsInCodePage() {
+        // Japanese cannot be encoded in IBM850, the other languages still match
+        MsBuildSummaryMatcher matcher = MsBuildSummaryMatcher.forCharset(Charset.forName("IBM850"));
+        byte[] line = "    4 Warnung(en)".getBytes(StandardCharsets.US_ASCII);
+
+        long found = matcher.find(line, line.length);
+        assertEquals(MsBuildDiagnostics.Severity.WARNING, MsBuildSummaryMatcher.severity(found));
+        assertEquals(4, MsBuildSummaryMatcher.count(found));
+    }
+
+    @Test
+    void testNotSummaryLines() {
+        MsBuildSummaryMatcher matcher = MsBuildSummaryMatcher.utf8();
+        String[] lines = {
+            "3 Fehler in der Datei gefunden",
+            "Fehler 3",
+            "    Fehler",
+            "Ostrze\u017cenia: drei",
+            "\uacbd\uace0 3",
+            "Foo.cs(1,2): warning CS0168: 3 Warning(s) x",
+        };
+        for (String text : lines) {
+            byte[] line = text.getBytes(StandardCharsets.UTF_8);
+            assertEquals(MsBuildSummaryMatcher.NONE, matcher.find(line, line.length), text);
+        }
+    }
+
+    @Test
+    void testCountBeforeAndAfterKeyword() {
+        MsBuildSummaryMatcher matcher = MsBuildSummaryMatcher.utf8();
+        byte[] russian = "    \u041e\u0448\u0438\u0431\u043e\u043a: 12\r\n".getBytes(StandardCharsets.UTF_8);
+        long found = matcher.find(russian, russian.length);
+        assertEquals(MsBuildDiagnostics.Severity.ERROR, MsBuildSummaryMatcher.severity(found));
+        assertEquals(12, MsBuildSummaryMatcher.count(found));
+
+        byte[] korean = "    \uacbd\uace0 7\uac1c".getBytes(StandardCharsets.UTF_8);
+        found = matcher.find(korean, korean.length);
+        assertEquals(MsBuildDiagnostics.Severity.WARNING, MsBuildSummaryMatcher.severity(found));
+        assertEquals(7, MsBuildSummaryMatcher.count(found));
+    }
+
+    private void assertCounts(String language, Charset charset) throws IOException {
+        String corpus;
+        try (InputStream in = getClass().getResourceAsStream("summary/" + language + ".txt")) {
+            assertNotNull(in, language);
+            corpus = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        MsBuildConsoleParser parser = new MsBuildConsoleParser(OutputStream.nullOutputStream(), charset);
+        for (String line : corpus.split("(?<=\n)")) {
+            byte[] b = line.getBytes(charset);
+            parser.eol(b, b.length);
+        }
+
+        String message = language + " in " + charset;
+        assertEquals(3, parser.getNumberOfWarnings(), message);
+        assertEquals(2, parser.getNumberOfErrors(), message);
+    }
+}
@@ -0,0 +1,101 @@
+package hudson.plugins.msbuild;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MsBuildTrendTest {
+
+    @TempDir
+    private File dir;
+
+    @Test
+    void testPut() {
+        MsBuildTrend trend = new MsBuildTrend();
+        trend.put(1, 0, 3);
+        trend.put(2, 1, 2);
+
+        assertEquals(2, trend.size());
+        assertEquals(1, trend.getNumber(0));
+        assertEquals(3, trend.getWarnings(0));
+        assertEquals(2, trend.getNumber(1));
+        assertEquals(1, trend.getErrors(1));
+        assertEquals(3, trend.getMaxCount());
+    }
+
+    @Test
+    void testSameBuildReplaced() {
+        MsBuildTrend trend = new MsBuildTrend();
+        trend.put(1, 0, 3);
+        trend.put(1, 2, 5);
+
+        assertEquals(1, trend.size());
+        assertEquals(2, trend.getErrors(0));
+        assertEquals(5, trend.getWarnings(0));
+    }
+
+    @Test
+    void testBuildsFinishingOutOfOrder() {
+        MsBuildTrend trend = new MsBuildTrend();
+        trend.put(1, 0, 1);
+        trend.put(3, 0, 3);
+        trend.put(2, 0, 2);
+
+        assertEquals(3, trend.size());
+        for (int k = 0; k < 3; k++) {
+            assertEquals(k + 1, trend.getNumber(k));
+            assertEquals(k + 1, trend.getWarnings(k));
+        }
+    }
+
+    @Test
+    void testOldestBuildsDropped() {
+        MsBuildTrend trend = new MsBuildTrend();
+        for (int n = 1; n <= MsBuildTrend.CAPACITY + 10; n++) {
+            trend.put(n, 0, n);
+        }
+        // older than everything kept
+        trend.put(5, 0, 5);
+        // between kept builds once the buffer wrapped around
+        trend.put(MsBuildTrend.CAPACITY + 20, 0, 0);
+        trend.put(MsBuildTrend.CAPACITY + 15, 0, 0);
+
+        assertEquals(MsBuildTrend.CAPACITY, trend.size());
+        assertEquals(13, trend.getNumber(0));
+        assertEquals(MsBuildTrend.CAPACITY + 10, trend.getNumber(MsBuildTrend.CAPACITY - 3));
+        assertEquals(MsBuildTrend.CAPACITY + 15, trend.getNumber(MsBuildTrend.CAPACITY - 2));
+        assertEquals(MsBuildTrend.CAPACITY + 20, trend.getNumber(MsBuildTrend.CAPACITY - 1));
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        File file = new File(dir, MsBuildTrend.FILE_NAME);
+        MsBuildTrend trend = new MsBuildTrend();
+        for (int n = 1; n <= MsBuildTrend.CAPACITY + 5; n++) {
+            trend.put(n, n % 3, n);
+        }
+        trend.save(file);
+
+        MsBuildTrend loaded = MsBuildTrend.load(file);
+        assertEquals(MsBuildTrend.CAPACITY, loaded.size());
+        for (int k = 0; k < loaded.size(); k++) {
+            assertEquals(trend.getNumber(k), loaded.getNumber(k));
+            assertEquals(trend.getErrors(k), loaded.getErrors(k));
+            assertEquals(trend.getWarnings(k), loaded.getWarnings(k));
+        }
+    }
+
+    @Test
+    void testUnreadableFile() throws IOException {
+        File file = new File(dir, MsBuildTrend.FILE_NAME);
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+        assertEquals(0, MsBuildTrend.load(file).size());
+        assertEquals(0, MsBuildTrend.load(new File(dir, "missing")).size());
+    }
+}